@@ -0,0 +1,42 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.InstrumentstockApplication;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+//starts the real application for a benchmark trial, with its own in-memory database and ledger journal.
+//combining is off unless a trial turns it on: a benchmark hammering one id would otherwise measure the combiner
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    //the properties are passed as command line arguments, which take precedence over application.properties
+    //(default properties of the builder don't, so the locking mode of a trial would be ignored); a property
+    //of the trial replaces the one set here
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        //devtools is on the test classpath and would restart the context in another class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        String run = UUID.randomUUID().toString();
+        Map<String, String> arguments = new LinkedHashMap<>();
+        Stream.concat(Stream.of(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + run + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "instrument.stock.ledger.journal-directory=target/ledger-benchmark-" + run,
+                        "instrument.stock.combining.enabled=false",
+                        "server.port=0",
+                        "logging.level.root=WARN"),
+                Stream.of(properties))
+                .forEach(property -> arguments.put(property.substring(0, property.indexOf('=')), "--" + property));
+        return new SpringApplicationBuilder(InstrumentstockApplication.class)
+                .web(webApplicationType)
+                .bannerMode(Banner.Mode.OFF)
+                .run(arguments.values().toArray(new String[0]));
+    }
+}
@@ -0,0 +1,78 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+//full MockMvc round trip through the real controller, service and database:
+//request mapping, validation, JSON (de)serialization and the exception handling
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentControllerBenchmark {
+
+    private static final String INSTRUMENT_API_URL_PATH = "/api/v1/instruments";
+    private static final String INSTRUMENT_NAME = "Benchmark Lespaul";
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private Long id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start(WebApplicationType.SERVLET, "instrument.rate-limit.enabled=false");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        id = context.getBean(InstrumentService.class).createInstrument(new InstrumentDTO(null, INSTRUMENT_NAME, "Gibson",
+                Integer.MAX_VALUE, 0, Integer.MAX_VALUE / 2, InstrumentType.GUITAR)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult findByName() throws Exception {
+        return mockMvc.perform(get(INSTRUMENT_API_URL_PATH + "/" + INSTRUMENT_NAME)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult increment() throws Exception {
+        return mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + id + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"quantity\":1}"))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult listInstruments() throws Exception {
+        return mockMvc.perform(get(INSTRUMENT_API_URL_PATH)).andReturn();
+    }
+}
@@ -0,0 +1,97 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.enums.ExportFormat;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.service.InstrumentExportService;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+//reading the catalog at different sizes: first and last page of the keyset and offset listings,
+//and the full export that replaced the unpaged listAll, from the database or from the catalog snapshot.
+//run with -prof gc to compare the allocation per call of both
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class InstrumentListingBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    //ids are set from 1, so the last id is the number of rows (the benchmark never takes ids from the sequence)
+    private static final String INSERT_ROWS_SQL = "INSERT INTO instrument (id, name, brand, max, min, quantity, type, version) " +
+            "SELECT X, 'instrument-' || X, 'brand-' || MOD(X, 50), 500, 0, MOD(X, 100), 'GUITAR', 0 FROM SYSTEM_RANGE(1, ?)";
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean catalog;
+
+    private ConfigurableApplicationContext context;
+    private InstrumentService instrumentService;
+    private InstrumentExportService instrumentExportService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(WebApplicationType.NONE, "instrument.catalog.enabled=" + catalog);
+        context.getBean(JdbcTemplate.class).update(INSERT_ROWS_SQL, rows);
+        //the rows are inserted behind the service, the snapshot built at startup is empty
+        context.getBean(InstrumentCatalog.class).rebuild();
+        instrumentService = context.getBean(InstrumentService.class);
+        instrumentExportService = context.getBean(InstrumentExportService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public InstrumentPageDTO firstKeysetPage() {
+        return instrumentService.listAfter(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public InstrumentPageDTO lastKeysetPage() {
+        return instrumentService.listAfter((long) rows - PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public InstrumentPageDTO lastOffsetPage() {
+        return instrumentService.listPage(rows / PAGE_SIZE - 1, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public InstrumentDTO findByName() throws InstrumentNotFoundException {
+        return instrumentService.findByName("instrument-" + rows / 2);
+    }
+
+    @Benchmark
+    public void fullExport() throws IOException {
+        instrumentExportService.export(OutputStream.nullOutputStream(), ExportFormat.NDJSON);
+    }
+}
@@ -0,0 +1,49 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//cost of the MapStruct conversions done on every request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentMapperBenchmark {
+
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    private Instrument instrument;
+    private InstrumentDTO instrumentDTO;
+
+    @Setup
+    public void setUp() {
+        instrumentDTO = new InstrumentDTO(1L, "Slash Lespaul", "Gibson", 50, 1, 17, InstrumentType.GUITAR);
+        instrument = instrumentMapper.toModel(instrumentDTO);
+    }
+
+    @Benchmark
+    public InstrumentDTO toDTO() {
+        return instrumentMapper.toDTO(instrument);
+    }
+
+    @Benchmark
+    public Instrument toModel() {
+        return instrumentMapper.toModel(instrumentDTO);
+    }
+}
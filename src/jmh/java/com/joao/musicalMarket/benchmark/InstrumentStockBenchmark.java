@@ -0,0 +1,71 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+//InstrumentService.increment/decrement against H2 in every locking mode, and through the combining queue
+//(in the default atomic mode, the id is hot after the first sampling window of the warmup);
+//run it with -t <threads> to measure the contended case
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentStockBenchmark {
+
+    @Param({"atomic", "optimistic", "pessimistic", "ledger", "combining"})
+    public String stockPath;
+
+    private ConfigurableApplicationContext context;
+    private InstrumentService instrumentService;
+    private Long id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("combining".equals(stockPath)) {
+            context = BenchmarkApplication.start(WebApplicationType.NONE, "instrument.stock.combining.enabled=true");
+        } else {
+            //with every thread on one id, the optimistic mode would give up after the default 5 attempts
+            context = BenchmarkApplication.start(WebApplicationType.NONE, "instrument.stock.locking-mode=" + stockPath,
+                    "instrument.stock.retry.max-attempts=1000");
+        }
+        instrumentService = context.getBean(InstrumentService.class);
+        //far enough from the limits for any number of iterations
+        id = instrumentService.createInstrument(new InstrumentDTO(null, "Benchmark Lespaul", "Gibson",
+                Integer.MAX_VALUE, 0, Integer.MAX_VALUE / 2, InstrumentType.GUITAR)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public InstrumentDTO increment() throws Exception {
+        return instrumentService.increment(id, 1);
+    }
+
+    @Benchmark
+    public InstrumentDTO decrement() throws Exception {
+        return instrumentService.decrement(id, 1);
+    }
+}
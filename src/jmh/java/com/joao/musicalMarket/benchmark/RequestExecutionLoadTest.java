@@ -0,0 +1,112 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.enums.RequestExecutionMode;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//closed-loop load test of each request execution mode: every connection sends its requests one after
+//the other (mostly a listing page, one in ten an increment) and the throughput and latency percentiles
+//of the blocking and the async modes are printed side by side.
+//run with: mvn -P benchmark test-compile exec:exec@load-test -Dload.connections=10000 -Dload.requests=20
+//(10k connections need a file descriptor limit above it, e.g. ulimit -n 65536)
+public final class RequestExecutionLoadTest {
+
+    private static final String INSTRUMENT_NAME = "Load Test Lespaul";
+
+    private RequestExecutionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("load.connections", 10_000);
+        int requestsPerConnection = Integer.getInteger("load.requests", 20);
+        System.out.printf("%d connections x %d requests%n", connections, requestsPerConnection);
+        for (RequestExecutionMode mode : RequestExecutionMode.values()) {
+            run(mode, connections, requestsPerConnection);
+        }
+        System.exit(0);
+    }
+
+    private static void run(RequestExecutionMode mode, int connections, int requestsPerConnection) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(WebApplicationType.SERVLET,
+                "instrument.web.execution-mode=" + mode.name().toLowerCase(),
+                //every connection comes from the same address, the load test measures the execution modes
+                "instrument.rate-limit.enabled=false",
+                //keeps every connection open, the async mode sheds what its queue can't hold (counted as errors)
+                "server.tomcat.max-connections=" + (connections + 100))) {
+            long id = context.getBean(InstrumentService.class).createInstrument(new InstrumentDTO(null, INSTRUMENT_NAME, "Gibson",
+                    Integer.MAX_VALUE, 0, Integer.MAX_VALUE / 2, InstrumentType.GUITAR)).getId();
+            String baseUri = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/v1/instruments";
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            HttpRequest listRequest = HttpRequest.newBuilder(URI.create(baseUri + "?size=20")).GET().build();
+            HttpRequest incrementRequest = HttpRequest.newBuilder(URI.create(baseUri + "/" + id + "/increment"))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"quantity\":1}"))
+                    .build();
+
+            long[] latencies = new long[connections * requestsPerConnection];
+            AtomicInteger recorded = new AtomicInteger();
+            AtomicLong errors = new AtomicLong();
+            long start = System.nanoTime();
+            CompletableFuture<?>[] clients = new CompletableFuture<?>[connections];
+            for (int connection = 0; connection < connections; connection++) {
+                clients[connection] = send(httpClient, connection, 0, requestsPerConnection, listRequest, incrementRequest,
+                        latencies, recorded, errors);
+            }
+            CompletableFuture.allOf(clients).join();
+            long elapsed = System.nanoTime() - start;
+
+            long[] sorted = Arrays.copyOf(latencies, recorded.get());
+            Arrays.sort(sorted);
+            System.out.printf("%-8s %10.0f req/s  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms  errors %d%n",
+                    mode, sorted.length / (elapsed / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6, errors.get());
+        }
+    }
+
+    //sends the next request of a connection once the previous one has answered
+    private static CompletableFuture<Void> send(HttpClient httpClient, int connection, int request, int requestsPerConnection,
+                                                HttpRequest listRequest, HttpRequest incrementRequest,
+                                                long[] latencies, AtomicInteger recorded, AtomicLong errors) {
+        if (request == requestsPerConnection) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest httpRequest = (connection + request) % 10 == 0 ? incrementRequest : listRequest;
+        long sent = System.nanoTime();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    if (failure != null || response.statusCode() >= 400) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies[recorded.getAndIncrement()] = System.nanoTime() - sent;
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> send(httpClient, connection, request + 1, requestsPerConnection,
+                        listRequest, incrementRequest, latencies, recorded, errors));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,83 @@
+package com.joao.musicalMarket.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.enums.WireFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//serialization cost of a 10k instruments listing in each wire format, in both directions.
+//the payload size of each format is printed by the setup, next to the results of its fork
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final int INSTRUMENTS = 10_000;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private WireFormat format;
+
+    private ObjectMapper objectMapper;
+    private ObjectReader listReader;
+    private List<InstrumentDTO> instrumentDTOs;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper(factory(format));
+        listReader = objectMapper.readerFor(new TypeReference<List<InstrumentDTO>>() {
+        });
+        InstrumentType[] types = InstrumentType.values();
+        instrumentDTOs = new ArrayList<>(INSTRUMENTS);
+        for (int i = 1; i <= INSTRUMENTS; i++) {
+            instrumentDTOs.add(new InstrumentDTO((long) i, "Instrument " + i, "Brand " + i % 50, 100, 0, i % 100, types[i % types.length]));
+        }
+        payload = objectMapper.writeValueAsBytes(instrumentDTOs);
+        System.out.printf("%s payload of %d instruments: %d bytes%n", format, INSTRUMENTS, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(instrumentDTOs);
+    }
+
+    @Benchmark
+    public List<InstrumentDTO> deserialize() throws IOException {
+        return listReader.readValue(payload);
+    }
+
+    private static JsonFactory factory(WireFormat format) {
+        switch (format) {
+            case SMILE:
+                return new SmileFactory();
+            case CBOR:
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
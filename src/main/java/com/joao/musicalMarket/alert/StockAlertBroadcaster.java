@@ -0,0 +1,56 @@
+package com.joao.musicalMarket.alert;
+
+import com.joao.musicalMarket.config.AlertProperties;
+import com.joao.musicalMarket.dto.StockAlertDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//keeps the SSE subscriptions of GET /api/v1/instruments/alerts/stream and sends them every stock alert
+@Slf4j
+@Component
+public class StockAlertBroadcaster {
+
+    private final AlertProperties alertProperties;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public StockAlertBroadcaster(AlertProperties alertProperties) {
+        this.alertProperties = alertProperties;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(alertProperties.getStreamTimeout().toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    //runs on the task executor after the mutation is committed (right away when there is no transaction),
+    //so slow subscribers never hold a request thread or a database transaction
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockAlert(StockAlertDTO stockAlertDTO) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(stockAlertDTO.getType().name())
+                        .data(stockAlertDTO, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                //disconnected subscriber
+                emitters.remove(emitter);
+                log.debug("Dropped a stock alert subscriber", e);
+            }
+        }
+    }
+}
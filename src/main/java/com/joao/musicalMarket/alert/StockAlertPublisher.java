@@ -0,0 +1,44 @@
+package com.joao.musicalMarket.alert;
+
+import com.joao.musicalMarket.config.AlertProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.StockAlertDTO;
+import com.joao.musicalMarket.enums.StockAlertType;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+//checks a stock mutation against the alert thresholds; only the mutation that crosses a threshold
+//publishes an alert, the next ones on the same side of it don't
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockAlertPublisher {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final AlertProperties alertProperties;
+
+    //the listeners are asynchronous, publishing only hands the alert over
+    public void publishIfCrossed(InstrumentDTO instrumentDTO, int previousQuantity) {
+        int quantity = instrumentDTO.getQuantity();
+        int lowStockThreshold = instrumentDTO.getMin() + alertProperties.getLowStockMargin();
+        int highStockThreshold = instrumentDTO.getMax() - alertProperties.getHighStockMargin();
+        if (previousQuantity > lowStockThreshold && quantity <= lowStockThreshold) {
+            publish(StockAlertType.LOW_STOCK, instrumentDTO, previousQuantity);
+        } else if (previousQuantity < highStockThreshold && quantity >= highStockThreshold) {
+            publish(StockAlertType.HIGH_STOCK, instrumentDTO, previousQuantity);
+        }
+    }
+
+    private void publish(StockAlertType type, InstrumentDTO instrumentDTO, int previousQuantity) {
+        applicationEventPublisher.publishEvent(StockAlertDTO.builder()
+                .type(type)
+                .id(instrumentDTO.getId())
+                .name(instrumentDTO.getName())
+                .previousQuantity(previousQuantity)
+                .quantity(instrumentDTO.getQuantity())
+                .min(instrumentDTO.getMin())
+                .max(instrumentDTO.getMax())
+                .build());
+    }
+}
@@ -0,0 +1,70 @@
+package com.joao.musicalMarket.cache;
+
+import com.joao.musicalMarket.enums.WireFormat;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//strong ETags of the instrument reads, kept in memory so a conditional GET is answered without the database:
+//every mutation takes the next value of a catalog-wide modification counter after its commit, and that value
+//becomes the version of the instruments it changed. the tags carry the start time of this run, so a tag
+//of a previous run never matches, and the wire format, so every representation has its own tag.
+//a tag must be taken before the data it describes is read
+@Component
+public class InstrumentETags {
+
+    private final String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final ConcurrentMap<String, Long> instrumentVersions = new ConcurrentHashMap<>();
+
+    //listings and searches: any mutation changes it
+    public String catalog(WireFormat format) {
+        return tag(catalogVersion.get(), format);
+    }
+
+    public String catalog() {
+        return catalog(WireFormat.JSON);
+    }
+
+    //one instrument, by name: only the mutations of that name change it
+    public String instrument(String name, WireFormat format) {
+        return tag(instrumentVersions.getOrDefault(name, 0L), format);
+    }
+
+    public String instrument(String name) {
+        return instrument(name, WireFormat.JSON);
+    }
+
+    public void modified(String name) {
+        modified(Collections.singletonList(name));
+    }
+
+    //inside a transaction the new versions are visible after the commit, so a tag is never paired with uncommitted data
+    public void modified(Collection<String> names) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stamp(names);
+                }
+            });
+        } else {
+            stamp(names);
+        }
+    }
+
+    private void stamp(Collection<String> names) {
+        long version = catalogVersion.incrementAndGet();
+        names.forEach(name -> instrumentVersions.merge(name, version, Math::max));
+    }
+
+    private String tag(long version, WireFormat format) {
+        return "\"" + runId + "-" + version + format.getETagSuffix() + "\"";
+    }
+}
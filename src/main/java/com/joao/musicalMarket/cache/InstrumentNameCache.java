@@ -0,0 +1,58 @@
+package com.joao.musicalMarket.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.joao.musicalMarket.config.InstrumentCacheProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+//read-through cache of InstrumentDTO by name, bounded by size and TTL.
+//hits, misses and evictions are published as the cache.* metrics of "instrumentsByName"
+@Component
+public class InstrumentNameCache {
+
+    static final String CACHE_NAME = "instrumentsByName";
+
+    private final Cache<String, InstrumentDTO> cache;
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    @Autowired
+    public InstrumentNameCache(InstrumentCacheProperties instrumentCacheProperties, MeterRegistry meterRegistry) {
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(instrumentCacheProperties.getMaximumSize())
+                .expireAfterWrite(instrumentCacheProperties.getTimeToLive())
+                .recordStats()
+                .build(), CACHE_NAME);
+    }
+
+    //the loader runs while the key is locked, so an eviction waits for a load in progress and removes
+    //its result: once a write has evicted a name, no value read before that write can be returned.
+    //callers get a copy, the cached instance is never exposed
+    public Optional<InstrumentDTO> get(String name, Function<String, InstrumentDTO> loader) {
+        return Optional.ofNullable(cache.get(name, loader))
+                .map(instrumentMapper::copy);
+    }
+
+    //inside a transaction the eviction waits for the commit, otherwise a load could cache the old row again
+    public void evict(String name) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(name);
+                }
+            });
+        } else {
+            cache.invalidate(name);
+        }
+    }
+}
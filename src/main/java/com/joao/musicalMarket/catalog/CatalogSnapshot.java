@@ -0,0 +1,289 @@
+package com.joao.musicalMarket.catalog;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+//immutable, column-oriented copy of the catalog: one primitive array per field with the rows ordered by id,
+//the type as its ordinal, one String instance per brand and an open-addressing name -> row table, so a lookup
+//or a page allocates nothing but the DTOs it returns.
+//quantities and versions are split in chunks of 1024 rows: a stock change copies the chunk of its row and the
+//chunk table instead of the whole column. new and deleted rows shift the others, so they copy every column
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CatalogSnapshot {
+
+    static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final InstrumentType[] TYPES = InstrumentType.values();
+
+    private final int size;
+    private final long[] ids;
+    private final String[] names;
+    private final String[] brands;
+    private final int[] max;
+    private final int[] min;
+    private final byte[] types;
+    private final int[][] quantityChunks;
+    private final long[][] versionChunks;
+    //row + 1 of each name at its hash slot (linear probing), 0 for an empty slot; at most half full
+    private final int[] nameTable;
+    //the single instance of each brand, also used to compare the brand filter by reference
+    private final Map<String, String> internedBrands;
+
+    //the rows of a full load come ordered by id and are merged as they are, any other order is sorted first
+    public static CatalogSnapshot of(Collection<Instrument> instruments) {
+        long previousId = Long.MIN_VALUE;
+        for (Instrument instrument : instruments) {
+            if (instrument.getId() <= previousId) {
+                return empty().with(instruments);
+            }
+            previousId = instrument.getId();
+        }
+        return merge(empty(), instruments, Collections.emptySet());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //row of the instrument with this name, -1 when there is none
+    public int indexOf(String name) {
+        int mask = nameTable.length - 1;
+        for (int slot = hash(name) & mask; nameTable[slot] != 0; slot = (slot + 1) & mask) {
+            int row = nameTable[slot] - 1;
+            if (names[row].equals(name)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    //first row with an id greater than the given one (size when there is none), the start of a keyset page
+    public int indexAfter(long id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    public int quantity(int row) {
+        return quantityChunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    public InstrumentDTO toDTO(int row) {
+        return new InstrumentDTO(ids[row], names[row], brands[row], max[row], min[row], quantity(row), TYPES[types[row]]);
+    }
+
+    //rows after the given id matching every filter that is set, at most limit of them, in id order;
+    //the same conditions as InstrumentFilterRepository, evaluated on the columns
+    public int[] search(InstrumentFilterDTO filter, long afterId, int limit) {
+        String brand = null;
+        if (filter.getBrand() != null) {
+            brand = internedBrands.get(filter.getBrand());
+            if (brand == null) {
+                return new int[0];
+            }
+        }
+        int type = filter.getType() != null ? filter.getType().ordinal() : -1;
+        boolean maxQuantitySet = filter.getMaxQuantity() != null;
+        int maxQuantity = maxQuantitySet ? filter.getMaxQuantity() : 0;
+        boolean lowStockMarginSet = filter.getLowStockMargin() != null;
+        int lowStockMargin = lowStockMarginSet ? filter.getLowStockMargin() : 0;
+
+        int[] found = new int[limit];
+        int count = 0;
+        for (int row = indexAfter(afterId); row < size && count < limit; row++) {
+            if ((brand == null || brands[row] == brand)
+                    && (type < 0 || types[row] == type)
+                    && (!maxQuantitySet || quantity(row) <= maxQuantity)
+                    && (!lowStockMarginSet || quantity(row) < min[row] + lowStockMargin)) {
+                found[count++] = row;
+            }
+        }
+        return count == limit ? found : Arrays.copyOf(found, count);
+    }
+
+    //the given instruments added or replaced; a state that isn't newer than the one in the snapshot
+    //(by @Version) is ignored, so patches applied out of order never bring an old quantity back
+    public CatalogSnapshot with(Collection<Instrument> instruments) {
+        int[][] patchedQuantityChunks = quantityChunks;
+        long[][] patchedVersionChunks = versionChunks;
+        Map<Long, Instrument> structuralChanges = new TreeMap<>();
+        for (Instrument instrument : instruments) {
+            int row = rowOf(instrument.getId());
+            if (row < 0 || !sameDescription(row, instrument)) {
+                structuralChanges.merge(instrument.getId(), instrument,
+                        (current, other) -> other.getVersion() > current.getVersion() ? other : current);
+                continue;
+            }
+            int chunk = row >>> CHUNK_SHIFT;
+            if (instrument.getVersion() <= patchedVersionChunks[chunk][row & CHUNK_MASK]) {
+                continue;
+            }
+            if (patchedQuantityChunks == quantityChunks) {
+                patchedQuantityChunks = quantityChunks.clone();
+                patchedVersionChunks = versionChunks.clone();
+            }
+            if (patchedQuantityChunks[chunk] == quantityChunks[chunk]) {
+                patchedQuantityChunks[chunk] = quantityChunks[chunk].clone();
+                patchedVersionChunks[chunk] = versionChunks[chunk].clone();
+            }
+            patchedQuantityChunks[chunk][row & CHUNK_MASK] = instrument.getQuantity();
+            patchedVersionChunks[chunk][row & CHUNK_MASK] = instrument.getVersion();
+        }
+        CatalogSnapshot patched = patchedQuantityChunks == quantityChunks ? this : new CatalogSnapshot(size, ids, names, brands,
+                max, min, types, patchedQuantityChunks, patchedVersionChunks, nameTable, internedBrands);
+        structuralChanges.values().removeIf(instrument -> {
+            int row = patched.rowOf(instrument.getId());
+            return row >= 0 && instrument.getVersion() <= patched.version(row);
+        });
+        return structuralChanges.isEmpty() ? patched : merge(patched, structuralChanges.values(), Collections.emptySet());
+    }
+
+    public CatalogSnapshot without(Set<Long> removedIds) {
+        for (Long removedId : removedIds) {
+            if (rowOf(removedId) >= 0) {
+                return merge(this, Collections.emptyList(), removedIds);
+            }
+        }
+        return this;
+    }
+
+    private int rowOf(long id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row >= 0 ? row : -1;
+    }
+
+    private long version(int row) {
+        return versionChunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    //only the stock changes after creation, anything else is replaced as a new row
+    private boolean sameDescription(int row, Instrument instrument) {
+        return names[row].equals(instrument.getName()) && brands[row].equals(instrument.getBrand())
+                && max[row] == instrument.getMax() && min[row] == instrument.getMin()
+                && types[row] == instrument.getType().ordinal();
+    }
+
+    //the rows of the snapshot and the upserts (ordered by id) merged in id order, without the removed ids
+    private static CatalogSnapshot merge(CatalogSnapshot snapshot, Collection<Instrument> upserts, Set<Long> removedIds) {
+        Columns columns = new Columns(snapshot.size + upserts.size(), new HashMap<>(snapshot.internedBrands));
+        int row = 0;
+        for (Instrument upsert : upserts) {
+            for (; row < snapshot.size && snapshot.ids[row] < upsert.getId(); row++) {
+                columns.addRow(snapshot, row, removedIds);
+            }
+            if (row < snapshot.size && snapshot.ids[row] == upsert.getId()) {
+                row++;
+            }
+            columns.add(upsert);
+        }
+        for (; row < snapshot.size; row++) {
+            columns.addRow(snapshot, row, removedIds);
+        }
+        return columns.toSnapshot();
+    }
+
+    private static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, new long[0], new String[0], new String[0], new int[0], new int[0], new byte[0],
+                new int[0][], new long[0][], new int[2], Collections.emptyMap());
+    }
+
+    private static int hash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    //flat columns filled in id order by a merge, then chunked and indexed into a snapshot
+    private static final class Columns {
+
+        private final long[] ids;
+        private final String[] names;
+        private final String[] brands;
+        private final int[] max;
+        private final int[] min;
+        private final byte[] types;
+        private final int[] quantities;
+        private final long[] versions;
+        private final Map<String, String> internedBrands;
+        private int size;
+
+        Columns(int capacity, Map<String, String> internedBrands) {
+            this.ids = new long[capacity];
+            this.names = new String[capacity];
+            this.brands = new String[capacity];
+            this.max = new int[capacity];
+            this.min = new int[capacity];
+            this.types = new byte[capacity];
+            this.quantities = new int[capacity];
+            this.versions = new long[capacity];
+            this.internedBrands = internedBrands;
+        }
+
+        void add(Instrument instrument) {
+            ids[size] = instrument.getId();
+            names[size] = instrument.getName();
+            brands[size] = internedBrands.computeIfAbsent(instrument.getBrand(), brand -> brand);
+            max[size] = instrument.getMax();
+            min[size] = instrument.getMin();
+            types[size] = (byte) instrument.getType().ordinal();
+            quantities[size] = instrument.getQuantity();
+            versions[size] = instrument.getVersion();
+            size++;
+        }
+
+        void addRow(CatalogSnapshot snapshot, int row, Set<Long> removedIds) {
+            if (!removedIds.isEmpty() && removedIds.contains(snapshot.ids[row])) {
+                return;
+            }
+            ids[size] = snapshot.ids[row];
+            names[size] = snapshot.names[row];
+            brands[size] = snapshot.brands[row];
+            max[size] = snapshot.max[row];
+            min[size] = snapshot.min[row];
+            types[size] = snapshot.types[row];
+            quantities[size] = snapshot.quantity(row);
+            versions[size] = snapshot.version(row);
+            size++;
+        }
+
+        CatalogSnapshot toSnapshot() {
+            int chunks = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+            int[][] quantityChunks = new int[chunks][];
+            long[][] versionChunks = new long[chunks][];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                quantityChunks[chunk] = Arrays.copyOfRange(quantities, chunk << CHUNK_SHIFT, (chunk + 1) << CHUNK_SHIFT);
+                versionChunks[chunk] = Arrays.copyOfRange(versions, chunk << CHUNK_SHIFT, (chunk + 1) << CHUNK_SHIFT);
+            }
+            int tableSize = 2;
+            while (tableSize < size * 2) {
+                tableSize <<= 1;
+            }
+            int[] nameTable = new int[tableSize];
+            int mask = tableSize - 1;
+            for (int row = 0; row < size; row++) {
+                int slot = hash(names[row]) & mask;
+                while (nameTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                nameTable[slot] = row + 1;
+            }
+            return new CatalogSnapshot(size, ids, names, brands, max, min, types,
+                    quantityChunks, versionChunks, nameTable, Collections.unmodifiableMap(internedBrands));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.joao.musicalMarket.catalog;
+
+import com.joao.musicalMarket.config.CatalogProperties;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+//holds the CatalogSnapshot served by the reads of InstrumentService when instrument.catalog.enabled is set.
+//it is built from the database at startup and rebuilt on a schedule, and InstrumentService patches it after
+//every commit. patches are serialized and each one swaps in a new snapshot; readers take the current one
+//without locking
+@Slf4j
+@Component
+public class InstrumentCatalog {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final InstrumentRepository instrumentRepository;
+    private final CatalogProperties catalogProperties;
+
+    //null until the first build, and always when the catalog is disabled
+    private volatile CatalogSnapshot snapshot;
+    //guarded by this: the patches of the commits made while a rebuild reads the database, replayed on its result
+    private List<UnaryOperator<CatalogSnapshot>> patchesDuringRebuild;
+    //guarded by this: ids come from a sequence and are never reused, so a late patch of a deleted instrument is dropped
+    private final Set<Long> deletedIds = new HashSet<>();
+
+    @Autowired
+    public InstrumentCatalog(InstrumentRepository instrumentRepository, CatalogProperties catalogProperties) {
+        this.instrumentRepository = instrumentRepository;
+        this.catalogProperties = catalogProperties;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (catalogProperties.isEnabled()) {
+            rebuild();
+        }
+    }
+
+    //null when the reads must go to the database
+    public CatalogSnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${instrument.catalog.rebuild-interval-millis:300000}",
+            initialDelayString = "${instrument.catalog.rebuild-interval-millis:300000}")
+    public void rebuild() {
+        if (!catalogProperties.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (patchesDuringRebuild != null) {
+                return;
+            }
+            patchesDuringRebuild = new ArrayList<>();
+        }
+        CatalogSnapshot rebuilt = null;
+        try {
+            rebuilt = CatalogSnapshot.of(loadAll());
+        } finally {
+            synchronized (this) {
+                if (rebuilt != null) {
+                    for (UnaryOperator<CatalogSnapshot> patch : patchesDuringRebuild) {
+                        rebuilt = patch.apply(rebuilt);
+                    }
+                    snapshot = rebuilt;
+                }
+                patchesDuringRebuild = null;
+            }
+        }
+        log.info("Rebuilt the instrument catalog snapshot with {} instruments", rebuilt.size());
+    }
+
+    public void put(Instrument instrument) {
+        put(Collections.singletonList(instrument));
+    }
+
+    //created instruments and new stock quantities, visible to the reads once the transaction commits
+    public void put(Collection<Instrument> instruments) {
+        if (!catalogProperties.isEnabled() || instruments.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                List<Instrument> liveInstruments = instruments.stream()
+                        .filter(instrument -> !deletedIds.contains(instrument.getId()))
+                        .collect(Collectors.toList());
+                if (!liveInstruments.isEmpty()) {
+                    patch(current -> current.with(liveInstruments));
+                }
+            }
+        });
+    }
+
+    public void remove(Long id) {
+        if (!catalogProperties.isEnabled()) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                deletedIds.add(id);
+                patch(current -> current.without(Collections.singleton(id)));
+            }
+        });
+    }
+
+    private synchronized void patch(UnaryOperator<CatalogSnapshot> patch) {
+        if (patchesDuringRebuild != null) {
+            patchesDuringRebuild.add(patch);
+        }
+        if (snapshot != null) {
+            snapshot = patch.apply(snapshot);
+        }
+    }
+
+    //keyset pages, so the persistence context of each query stays small
+    private List<Instrument> loadAll() {
+        List<Instrument> instruments = new ArrayList<>();
+        long afterId = 0L;
+        List<Instrument> page;
+        do {
+            page = instrumentRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            instruments.addAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        return instruments;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
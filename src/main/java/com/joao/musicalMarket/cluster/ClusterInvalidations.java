@@ -0,0 +1,107 @@
+package com.joao.musicalMarket.cluster;
+
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.cache.InstrumentNameCache;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+//keeps the in-memory state of the other nodes in step with the writes of this one: every write that
+//moves an ETag also broadcasts the ids and names it changed, after its commit. a node receiving them
+//moves the same ETags, evicts the names from its cache, reloads the ids into its catalog snapshot and
+//sums its gauges again. a lost message is covered by the cache TTL and the scheduled catalog rebuild
+@Component
+public class ClusterInvalidations {
+
+    private final ClusterNode clusterNode;
+    private final InstrumentETags instrumentETags;
+    private final InstrumentNameCache instrumentNameCache;
+    private final InstrumentCatalog instrumentCatalog;
+    private final InstrumentQuantityGauges instrumentQuantityGauges;
+    private final InstrumentRepository instrumentRepository;
+    private final AtomicBoolean gaugesStale = new AtomicBoolean();
+
+    @Autowired
+    public ClusterInvalidations(ClusterNode clusterNode,
+                                InstrumentETags instrumentETags,
+                                InstrumentNameCache instrumentNameCache,
+                                InstrumentCatalog instrumentCatalog,
+                                InstrumentQuantityGauges instrumentQuantityGauges,
+                                InstrumentRepository instrumentRepository) {
+        this.clusterNode = clusterNode;
+        this.instrumentETags = instrumentETags;
+        this.instrumentNameCache = instrumentNameCache;
+        this.instrumentCatalog = instrumentCatalog;
+        this.instrumentQuantityGauges = instrumentQuantityGauges;
+        this.instrumentRepository = instrumentRepository;
+        clusterNode.on(ClusterMessageType.INVALIDATE, message -> apply(message.getIds(), message.getNames()));
+    }
+
+    public void publish(Long id, String name) {
+        publish(Collections.singletonList(id), Collections.singletonList(name));
+    }
+
+    //inside a transaction it is sent after the commit, so the other nodes reload the committed rows
+    public void publish(Collection<Long> ids, Collection<String> names) {
+        if (!clusterNode.isEnabled()) {
+            return;
+        }
+        afterCommit(() -> clusterNode.broadcast(ClusterMessage.builder()
+                .type(ClusterMessageType.INVALIDATE)
+                .ids(new ArrayList<>(ids))
+                .names(new ArrayList<>(names))
+                .build()));
+    }
+
+    //the changes of another node; also called by the node that forwarded a mutation, before it answers,
+    //so its client reads its own write there too
+    public void apply(Collection<Long> ids, Collection<String> names) {
+        instrumentETags.modified(names);
+        names.forEach(instrumentNameCache::evict);
+        if (instrumentCatalog.snapshot() != null) {
+            List<Instrument> instruments = instrumentRepository.findAllById(ids);
+            Set<Long> deletedIds = new HashSet<>(ids);
+            deletedIds.removeAll(instruments.stream().map(Instrument::getId).collect(Collectors.toSet()));
+            instrumentCatalog.put(instruments);
+            deletedIds.forEach(instrumentCatalog::remove);
+        }
+        gaugesStale.set(true);
+    }
+
+    //the gauges only follow the deltas of this node, so once another one has written they are summed again
+    @Scheduled(fixedDelayString = "${instrument.cluster.gauge-refresh-interval-millis:1000}")
+    public void refreshGauges() {
+        if (gaugesStale.getAndSet(false)) {
+            instrumentQuantityGauges.refresh();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.joao.musicalMarket.cluster;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//what the nodes send each other, one JSON object per message on the socket transport.
+//only the fields of its type are set
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterMessage {
+
+    private ClusterMessageType type;
+
+    //node that sent the message, where a MUTATE is answered
+    private String origin;
+
+    //pairs a MUTATE_RESULT with its MUTATE
+    private String correlationId;
+
+    //INVALIDATE: the changed instruments
+    private List<Long> ids;
+    private List<String> names;
+
+    //MUTATE: an increment (positive delta) or a decrement (negative delta)
+    private Long id;
+    private Integer delta;
+
+    //MUTATE_RESULT
+    private MutationOutcome outcome;
+    private InstrumentDTO instrument;
+    private String error;
+}
@@ -0,0 +1,185 @@
+package com.joao.musicalMarket.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import com.joao.musicalMarket.enums.ClusterTransportType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//this instance as a member of the cluster (instrument.cluster.*): sends the messages of the coordination
+//components through the configured transport, hands the received ones to the handler of their type and
+//pairs the answers with the requests waiting for them. it also knows the owner of each instrument id.
+//when the cluster is disabled nothing is sent and this node owns every instrument, so it can always be injected
+@Slf4j
+@Component
+public class ClusterNode implements DisposableBean {
+
+    private final ClusterProperties clusterProperties;
+    private final ClusterTransport transport;
+    private final Map<ClusterMessageType, Consumer<ClusterMessage>> handlers = new EnumMap<>(ClusterMessageType.class);
+    private final Map<String, CompletableFuture<ClusterMessage>> pendingRequests = new ConcurrentHashMap<>();
+    private volatile boolean started;
+    //the ring of the last members seen, built again when they change
+    private volatile OwnershipRing ownershipRing;
+
+    @Autowired
+    public ClusterNode(ClusterProperties clusterProperties, ObjectMapper objectMapper) {
+        this(clusterProperties, transport(clusterProperties, objectMapper));
+    }
+
+    ClusterNode(ClusterProperties clusterProperties, ClusterTransport transport) {
+        this.clusterProperties = clusterProperties;
+        this.transport = transport;
+    }
+
+    private static ClusterTransport transport(ClusterProperties clusterProperties, ObjectMapper objectMapper) {
+        if (!clusterProperties.isEnabled()) {
+            return null;
+        }
+        if (clusterProperties.getTransport() == ClusterTransportType.SOCKET) {
+            return new SocketTransport(clusterProperties.getSocket(), objectMapper);
+        }
+        String nodeId = clusterProperties.getNodeId();
+        return new LoopbackTransport(clusterProperties.getGroup(),
+                nodeId == null || nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId);
+    }
+
+    //handlers are registered by the components constructed before the node starts
+    public synchronized void on(ClusterMessageType type, Consumer<ClusterMessage> handler) {
+        handlers.put(type, handler);
+    }
+
+    //once every bean is ready, a message received earlier could reach a half-built context
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() throws IOException {
+        if (transport == null || started) {
+            return;
+        }
+        transport.start(this::receive);
+        started = true;
+        log.info("Cluster node {} started, members {}", transport.localNode(), transport.members());
+    }
+
+    public boolean isEnabled() {
+        return transport != null;
+    }
+
+    public String localNode() {
+        return transport != null ? transport.localNode() : null;
+    }
+
+    //this node when ownership is off
+    public String ownerOf(Long id) {
+        if (transport == null || !clusterProperties.getOwnership().isEnabled()) {
+            return localNode();
+        }
+        Set<String> members = transport.members();
+        OwnershipRing current = ownershipRing;
+        if (current == null || !current.members.equals(members)) {
+            current = new OwnershipRing(members,
+                    new ConsistentHashRing(members, clusterProperties.getOwnership().getVirtualNodes()));
+            ownershipRing = current;
+        }
+        return current.ring.ownerOf(id);
+    }
+
+    public boolean isOwner(Long id) {
+        String owner = ownerOf(id);
+        return owner == null || owner.equals(localNode());
+    }
+
+    public void broadcast(ClusterMessage message) {
+        if (!started) {
+            return;
+        }
+        message.setOrigin(transport.localNode());
+        transport.broadcast(message);
+    }
+
+    //the answer of the node, or an exception when it can't be reached or doesn't answer in the request timeout
+    public CompletableFuture<ClusterMessage> request(String node, ClusterMessage message) {
+        CompletableFuture<ClusterMessage> answer = new CompletableFuture<>();
+        if (!started) {
+            answer.completeExceptionally(new IllegalStateException("Cluster node not started."));
+            return answer;
+        }
+        String correlationId = UUID.randomUUID().toString();
+        message.setOrigin(transport.localNode());
+        message.setCorrelationId(correlationId);
+        pendingRequests.put(correlationId, answer);
+        answer.whenComplete((reply, failure) -> pendingRequests.remove(correlationId));
+        if (!transport.send(node, message)) {
+            answer.completeExceptionally(new ConnectException("Cluster node " + node + " unreachable."));
+            return answer;
+        }
+        return answer.orTimeout(clusterProperties.getOwnership().getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void reply(ClusterMessage request, ClusterMessage reply) {
+        reply.setOrigin(transport.localNode());
+        reply.setCorrelationId(request.getCorrelationId());
+        if (!transport.send(request.getOrigin(), reply)) {
+            log.warn("Cluster node {} could not answer {}, it is unreachable", transport.localNode(), request.getOrigin());
+        }
+    }
+
+    //runs on a transport thread; a failing handler loses its message but not the next ones
+    private void receive(ClusterMessage message) {
+        if (message.getType() == ClusterMessageType.MUTATE_RESULT) {
+            CompletableFuture<ClusterMessage> answer = pendingRequests.get(message.getCorrelationId());
+            //null when the request already timed out
+            if (answer != null) {
+                answer.complete(message);
+            }
+            return;
+        }
+        Consumer<ClusterMessage> handler;
+        synchronized (this) {
+            handler = handlers.get(message.getType());
+        }
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.accept(message);
+        } catch (RuntimeException e) {
+            log.error("Cluster node {} failed to handle a {} message from {}",
+                    transport.localNode(), message.getType(), message.getOrigin(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (transport != null) {
+            transport.close();
+        }
+        started = false;
+    }
+
+    private static class OwnershipRing {
+
+        private final Set<String> members;
+        private final ConsistentHashRing ring;
+
+        private OwnershipRing(Set<String> members, ConsistentHashRing ring) {
+            this.members = members;
+            this.ring = ring;
+        }
+    }
+}
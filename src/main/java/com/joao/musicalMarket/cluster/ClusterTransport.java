@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.cluster;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+//how the messages of ClusterNode reach the other nodes. delivery is best effort: a message to a node
+//that is down is lost, and the messages of one sender are received in the order they were sent
+public interface ClusterTransport {
+
+    String localNode();
+
+    //every node of the cluster, this one included
+    Set<String> members();
+
+    //the receiver is called on the transport's threads
+    void start(Consumer<ClusterMessage> receiver) throws IOException;
+
+    //to every other member
+    void broadcast(ClusterMessage message);
+
+    //false when the node can't be reached
+    boolean send(String node, ClusterMessage message);
+
+    void close();
+}
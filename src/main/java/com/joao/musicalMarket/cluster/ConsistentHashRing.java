@@ -0,0 +1,53 @@
+package com.joao.musicalMarket.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+//owner of each instrument id among the members of the cluster: every member takes virtualNodes points of a
+//64-bit ring and an id belongs to the first point at or after its hash. when a member joins or leaves only
+//the ids next to its points change owner. the hashes don't depend on the JVM, so nodes with the same members agree
+public class ConsistentHashRing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one member.");
+        }
+        for (String member : members) {
+            for (int virtualNode = 0; virtualNode < Math.max(virtualNodes, 1); virtualNode++) {
+                //on a collision the smallest name keeps the point, whatever the order of the members
+                points.merge(hash(member + "#" + virtualNode), member, (current, other) -> current.compareTo(other) <= 0 ? current : other);
+            }
+        }
+    }
+
+    public String ownerOf(long id) {
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(id));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    //FNV-1a, then mixed, the plain FNV hashes of similar names are too close to each other
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    //finalizer of SplitMix64: consecutive ids land far apart on the ring
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
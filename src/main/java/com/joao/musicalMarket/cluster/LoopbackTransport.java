@@ -0,0 +1,88 @@
+package com.joao.musicalMarket.cluster;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+//nodes of the same JVM, registered by group: several application contexts (or plain ClusterNodes in a test)
+//form a cluster without any network. each node receives on its own thread, in the order the messages were sent
+public class LoopbackTransport implements ClusterTransport {
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, LoopbackTransport>> GROUPS = new ConcurrentHashMap<>();
+
+    private final String group;
+    private final String node;
+    private final ThreadPoolTaskExecutor deliveryExecutor = new ThreadPoolTaskExecutor();
+    private volatile Consumer<ClusterMessage> receiver;
+
+    public LoopbackTransport(String group, String node) {
+        this.group = group;
+        this.node = node;
+        deliveryExecutor.setCorePoolSize(1);
+        deliveryExecutor.setMaxPoolSize(1);
+        deliveryExecutor.setThreadNamePrefix("cluster-loopback-" + node + "-");
+        deliveryExecutor.initialize();
+    }
+
+    @Override
+    public String localNode() {
+        return node;
+    }
+
+    //the nodes started in the group, so a closed node stops owning instruments
+    @Override
+    public Set<String> members() {
+        Set<String> members = new TreeSet<>(GROUPS.getOrDefault(group, new ConcurrentHashMap<>()).keySet());
+        members.add(node);
+        return members;
+    }
+
+    @Override
+    public void start(Consumer<ClusterMessage> receiver) {
+        this.receiver = receiver;
+        if (GROUPS.computeIfAbsent(group, key -> new ConcurrentHashMap<>()).putIfAbsent(node, this) != null) {
+            throw new IllegalStateException(String.format("Node %s already started in the cluster group %s.", node, group));
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterMessage message) {
+        GROUPS.getOrDefault(group, new ConcurrentHashMap<>()).forEach((member, transport) -> {
+            if (!member.equals(node)) {
+                transport.deliver(message);
+            }
+        });
+    }
+
+    @Override
+    public boolean send(String member, ClusterMessage message) {
+        LoopbackTransport transport = GROUPS.getOrDefault(group, new ConcurrentHashMap<>()).get(member);
+        if (transport == null) {
+            return false;
+        }
+        transport.deliver(message);
+        return true;
+    }
+
+    private void deliver(ClusterMessage message) {
+        try {
+            deliveryExecutor.execute(() -> receiver.accept(message));
+        } catch (TaskRejectedException e) {
+            //closed meanwhile, the message is lost like the ones sent to a node that is down
+        }
+    }
+
+    @Override
+    public void close() {
+        ConcurrentMap<String, LoopbackTransport> members = GROUPS.get(group);
+        if (members != null) {
+            members.remove(node, this);
+        }
+        deliveryExecutor.shutdown();
+    }
+}
@@ -0,0 +1,13 @@
+package com.joao.musicalMarket.cluster;
+
+//how the owner of an instrument answered a forwarded mutation, turned back into the exception
+//the mutation would have thrown on the node that received it
+public enum MutationOutcome {
+
+    APPLIED,
+    NOT_FOUND,
+    MAX_EXCEEDED,
+    MIN_EXCEEDED,
+    CONFLICT,
+    FAILED
+}
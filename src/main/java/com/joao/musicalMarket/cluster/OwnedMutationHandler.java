@@ -0,0 +1,63 @@
+package com.joao.musicalMarket.cluster;
+
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.service.InstrumentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+//the owner's side of StockOwnership: applies the mutations forwarded by the other nodes and answers each one
+//with its outcome. they run on their own pool, a slow write must not hold the transport thread that also
+//delivers the invalidations. the pool isn't a bean on purpose, like the one of AsyncExecutionConfig
+@Slf4j
+@Component
+public class OwnedMutationHandler implements DisposableBean {
+
+    private final ClusterNode clusterNode;
+    private final InstrumentService instrumentService;
+    private final ThreadPoolTaskExecutor mutationExecutor = new ThreadPoolTaskExecutor();
+
+    @Autowired
+    public OwnedMutationHandler(ClusterNode clusterNode, InstrumentService instrumentService, ClusterProperties clusterProperties) {
+        this.clusterNode = clusterNode;
+        this.instrumentService = instrumentService;
+        mutationExecutor.setCorePoolSize(clusterProperties.getOwnership().getThreads());
+        mutationExecutor.setMaxPoolSize(clusterProperties.getOwnership().getThreads());
+        mutationExecutor.setThreadNamePrefix("cluster-mutation-");
+        mutationExecutor.initialize();
+        clusterNode.on(ClusterMessageType.MUTATE, request -> mutationExecutor.execute(() -> handle(request)));
+    }
+
+    private void handle(ClusterMessage request) {
+        ClusterMessage.ClusterMessageBuilder reply = ClusterMessage.builder().type(ClusterMessageType.MUTATE_RESULT);
+        try {
+            InstrumentDTO instrumentDTO = instrumentService.applyForwarded(request.getId(), request.getDelta());
+            reply.outcome(MutationOutcome.APPLIED).instrument(instrumentDTO);
+        } catch (InstrumentNotFoundException e) {
+            reply.outcome(MutationOutcome.NOT_FOUND);
+        } catch (InstrumentStockExceededException e) {
+            reply.outcome(MutationOutcome.MAX_EXCEEDED);
+        } catch (InstrumentNegativeStockExceededException e) {
+            reply.outcome(MutationOutcome.MIN_EXCEEDED);
+        } catch (InstrumentConcurrentUpdateException e) {
+            reply.outcome(MutationOutcome.CONFLICT);
+        } catch (RuntimeException e) {
+            log.error("Forwarded mutation of the instrument with id {} failed", request.getId(), e);
+            reply.outcome(MutationOutcome.FAILED).error(e.getMessage());
+        }
+        clusterNode.reply(request, reply.build());
+    }
+
+    @Override
+    public void destroy() {
+        mutationExecutor.shutdown();
+    }
+}
@@ -0,0 +1,245 @@
+package com.joao.musicalMarket.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+//the configured peers over TCP, one JSON message per line. every node listens on its bind address and
+//keeps one outgoing connection per peer, opened on the first message and again after a failure, so a
+//node sends on its own connections and receives on the ones its peers opened. on one machine every node
+//binds its own port of 127.0.0.1. every node also sends a heartbeat to its peers, and a peer is a member
+//only while its messages keep arriving. the threads aren't beans on purpose, like the pool of AsyncExecutionConfig
+@Slf4j
+public class SocketTransport implements ClusterTransport {
+
+    private final ClusterProperties.Socket properties;
+    private final ObjectMapper objectMapper;
+    private final String node;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    //the accept loop and one reader per incoming connection, all of them blocked on a socket
+    private final ThreadPoolTaskExecutor readerExecutor = new ThreadPoolTaskExecutor();
+    private final ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+    private volatile Consumer<ClusterMessage> receiver;
+    private volatile ServerSocket serverSocket;
+
+    public SocketTransport(ClusterProperties.Socket properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.node = properties.getBindHost() + ":" + properties.getPort();
+        for (String peer : properties.getPeers()) {
+            if (!peer.equals(node)) {
+                peers.put(peer, new Peer(peer));
+            }
+        }
+        readerExecutor.setCorePoolSize(0);
+        readerExecutor.setMaxPoolSize(Integer.MAX_VALUE);
+        readerExecutor.setQueueCapacity(0);
+        readerExecutor.setThreadNamePrefix("cluster-socket-");
+        readerExecutor.initialize();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("cluster-heartbeat-");
+        heartbeatScheduler.initialize();
+    }
+
+    @Override
+    public String localNode() {
+        return node;
+    }
+
+    //the peers heard from within the failure timeout: the instruments of a node that is down move to the
+    //others, and come back once its heartbeats do. a node that just started owns everything until it hears them
+    @Override
+    public Set<String> members() {
+        long heardSince = System.currentTimeMillis() - properties.getFailureTimeout().toMillis();
+        Set<String> members = new TreeSet<>();
+        peers.forEach((address, peer) -> {
+            if (peer.lastHeardAt >= heardSince) {
+                members.add(address);
+            }
+        });
+        members.add(node);
+        return Collections.unmodifiableSet(members);
+    }
+
+    @Override
+    public void start(Consumer<ClusterMessage> receiver) throws IOException {
+        this.receiver = receiver;
+        ServerSocket listening = new ServerSocket();
+        listening.setReuseAddress(true);
+        listening.bind(new InetSocketAddress(properties.getBindHost(), properties.getPort()));
+        serverSocket = listening;
+        readerExecutor.execute(this::accept);
+        String heartbeat = toLine(ClusterMessage.builder().type(ClusterMessageType.HEARTBEAT).origin(node).build());
+        heartbeatScheduler.scheduleAtFixedRate(() -> peers.values().forEach(peer -> peer.send(heartbeat)),
+                properties.getHeartbeatInterval());
+        log.info("Cluster node {} listening, peers {}", node, peers.keySet());
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                inboundSockets.add(socket);
+                readerExecutor.execute(() -> read(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Cluster node {} failed to accept a connection", node, e);
+                }
+            }
+        }
+    }
+
+    //until the peer closes the connection; a line that isn't a message is skipped. any message keeps its
+    //sender a member, the heartbeats aren't passed on
+    private void read(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ClusterMessage message;
+                try {
+                    message = objectMapper.readValue(line, ClusterMessage.class);
+                } catch (JsonProcessingException e) {
+                    log.warn("Cluster node {} skipped an unreadable message: {}", node, e.getOriginalMessage());
+                    continue;
+                }
+                Peer peer = message.getOrigin() != null ? peers.get(message.getOrigin()) : null;
+                if (peer != null) {
+                    peer.lastHeardAt = System.currentTimeMillis();
+                }
+                if (message.getType() != ClusterMessageType.HEARTBEAT) {
+                    receiver.accept(message);
+                }
+            }
+        } catch (IOException e) {
+            //connection closed by either side
+        } finally {
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    @Override
+    public void broadcast(ClusterMessage message) {
+        String line = toLine(message);
+        peers.values().forEach(peer -> peer.send(line));
+    }
+
+    @Override
+    public boolean send(String member, ClusterMessage message) {
+        Peer peer = peers.get(member);
+        return peer != null && peer.send(toLine(message));
+    }
+
+    private String toLine(ClusterMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cluster message could not be written as JSON.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+        }
+        heartbeatScheduler.shutdown();
+        peers.values().forEach(Peer::disconnect);
+        inboundSockets.forEach(SocketTransport::closeQuietly);
+        readerExecutor.shutdown();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            //nothing left to do with it
+        }
+    }
+
+    //the outgoing connection to a peer, written by one sender at a time
+    private class Peer {
+
+        private final String host;
+        private final int port;
+        private Socket socket;
+        private Writer writer;
+        //no connection is tried before this time after a refused one, so a peer that is down doesn't slow every send
+        private long reconnectAt;
+        //written by the readers of the connections it opened, read by members()
+        private volatile long lastHeardAt;
+
+        private Peer(String address) {
+            int separator = address.lastIndexOf(':');
+            this.host = address.substring(0, separator);
+            this.port = Integer.parseInt(address.substring(separator + 1));
+        }
+
+        //a connection the peer closed is only noticed on a write, so a failed write is tried once more on a new one
+        private synchronized boolean send(String line) {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                if (writer == null && !connect()) {
+                    return false;
+                }
+                try {
+                    writer.write(line);
+                    writer.write('\n');
+                    writer.flush();
+                    return true;
+                } catch (IOException e) {
+                    disconnect();
+                }
+            }
+            return false;
+        }
+
+        private boolean connect() {
+            if (System.currentTimeMillis() < reconnectAt) {
+                return false;
+            }
+            Socket connecting = new Socket();
+            try {
+                connecting.setTcpNoDelay(true);
+                connecting.connect(new InetSocketAddress(host, port), (int) properties.getConnectTimeout().toMillis());
+                writer = new BufferedWriter(new OutputStreamWriter(connecting.getOutputStream(), StandardCharsets.UTF_8));
+                socket = connecting;
+                return true;
+            } catch (IOException e) {
+                closeQuietly(connecting);
+                reconnectAt = System.currentTimeMillis() + properties.getReconnectBackoff().toMillis();
+                log.debug("Cluster node {} could not connect to {}:{}", node, host, port);
+                return false;
+            }
+        }
+
+        private synchronized void disconnect() {
+            if (socket != null) {
+                closeQuietly(socket);
+            }
+            socket = null;
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.joao.musicalMarket.cluster;
+
+import com.joao.musicalMarket.config.StockProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import com.joao.musicalMarket.enums.StockLockingMode;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+//single writer per instrument across the cluster (instrument.cluster.ownership.enabled): the increments and
+//decrements of an instrument owned by another node are sent to it, so only one node contends on its row.
+//the caller gets the owner's result, or the exception the mutation threw there.
+//the ledger mode is refused in a cluster: batches and holds aren't forwarded, and every node would check the
+//limits against its own in-memory counter, which lags the unflushed deltas of the others
+@Component
+public class StockOwnership {
+
+    private final ClusterNode clusterNode;
+    private final ClusterInvalidations clusterInvalidations;
+    private final StockProperties stockProperties;
+
+    @Autowired
+    public StockOwnership(ClusterNode clusterNode, ClusterInvalidations clusterInvalidations, StockProperties stockProperties) {
+        this.clusterNode = clusterNode;
+        this.clusterInvalidations = clusterInvalidations;
+        this.stockProperties = stockProperties;
+        if (clusterNode.isEnabled() && stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            throw new IllegalStateException("instrument.stock.locking-mode=ledger can't be used with instrument.cluster.enabled=true.");
+        }
+    }
+
+    //null when the mutations of the instrument are applied by this node
+    public String remoteOwnerOf(Long id) {
+        String owner = clusterNode.ownerOf(id);
+        return owner == null || owner.equals(clusterNode.localNode()) ? null : owner;
+    }
+
+    //without an answer in the request timeout the mutation may still have been applied by the owner:
+    //a client retrying the 503 should send an Idempotency-Key
+    public <E extends Exception> InstrumentDTO forward(String owner, Long id, int delta, Class<E> rejectionType)
+            throws E, InstrumentNotFoundException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        ClusterMessage reply;
+        try {
+            reply = clusterNode.request(owner, ClusterMessage.builder()
+                    .type(ClusterMessageType.MUTATE)
+                    .id(id)
+                    .delta(delta)
+                    .build()).join();
+        } catch (CompletionException | CancellationException e) {
+            throw new InstrumentOwnerUnavailableException(id, owner);
+        }
+        switch (reply.getOutcome()) {
+            case APPLIED:
+                InstrumentDTO instrumentDTO = reply.getInstrument();
+                //the owner's invalidation may still be on its way, a read here right after must not miss the write
+                clusterInvalidations.apply(Collections.singletonList(id), Collections.singletonList(instrumentDTO.getName()));
+                return instrumentDTO;
+            case NOT_FOUND:
+                throw new InstrumentNotFoundException(id);
+            case MAX_EXCEEDED:
+                throw rejectionType.cast(new InstrumentStockExceededException(id, delta));
+            case MIN_EXCEEDED:
+                throw rejectionType.cast(new InstrumentNegativeStockExceededException(id, -delta));
+            case CONFLICT:
+                throw new InstrumentConcurrentUpdateException(id, stockProperties.getRetry().getMaxAttempts());
+            default:
+                throw new IllegalStateException(String.format("Owner node %s failed to update the instrument with id %s: %s",
+                        owner, id, reply.getError()));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.joao.musicalMarket.combining;
+
+import com.joao.musicalMarket.entity.Instrument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//result of a combined batch: the instrument after the merged delta, and for each operation of the batch
+//whether it was applied and the quantity right after it (as a serial execution would have returned)
+@Getter
+@AllArgsConstructor
+public class CombinedStockUpdate {
+
+    private final Instrument instrument;
+    private final boolean[] applied;
+    private final int[] quantities;
+}
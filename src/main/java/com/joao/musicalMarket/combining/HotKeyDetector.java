@@ -0,0 +1,65 @@
+package com.joao.musicalMarket.combining;
+
+import com.joao.musicalMarket.config.StockProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+//finds the instruments that receive most of the stock mutations: one mutation in sampleRate is counted
+//per id, and at the end of each window the ids whose sampled rate passed the threshold become hot.
+//an id that is already hot only goes cold below half the threshold, so it doesn't flap between the paths
+@Component
+public class HotKeyDetector {
+
+    private final StockProperties stockProperties;
+    private volatile Map<Long, LongAdder> sampledCounts = new ConcurrentHashMap<>();
+    private volatile Set<Long> hotIds = Set.of();
+
+    @Autowired
+    public HotKeyDetector(StockProperties stockProperties) {
+        this.stockProperties = stockProperties;
+    }
+
+    //counts the mutation when it is sampled; the answer is the one of the last window
+    public boolean isHot(Long id) {
+        StockProperties.Combining combining = stockProperties.getCombining();
+        if (!combining.isEnabled()) {
+            return false;
+        }
+        if (combining.getSampleRate() <= 1 || ThreadLocalRandom.current().nextInt(combining.getSampleRate()) == 0) {
+            sampledCounts.computeIfAbsent(id, key -> new LongAdder()).increment();
+        }
+        return hotIds.contains(id);
+    }
+
+    //a sample counted while the map is swapped goes to the old window or to the new one, either is fine
+    @Scheduled(fixedRateString = "${instrument.stock.combining.window-millis:1000}")
+    public void rotate() {
+        Map<Long, LongAdder> counts = sampledCounts;
+        sampledCounts = new ConcurrentHashMap<>();
+        long threshold = sampledThreshold();
+        Set<Long> previousHotIds = hotIds;
+        Set<Long> newHotIds = new HashSet<>();
+        counts.forEach((id, count) -> {
+            long sampled = count.sum();
+            if (sampled >= threshold || (previousHotIds.contains(id) && sampled * 2 >= threshold)) {
+                newHotIds.add(id);
+            }
+        });
+        hotIds = Set.copyOf(newHotIds);
+    }
+
+    //the threshold in sampled mutations per window
+    long sampledThreshold() {
+        StockProperties.Combining combining = stockProperties.getCombining();
+        return Math.max(1, combining.getHotThresholdPerSecond() * combining.getWindowMillis()
+                / 1000 / Math.max(combining.getSampleRate(), 1));
+    }
+}
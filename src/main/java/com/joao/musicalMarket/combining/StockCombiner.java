@@ -0,0 +1,86 @@
+package com.joao.musicalMarket.combining;
+
+import com.joao.musicalMarket.config.StockProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+//per-instrument combining queues: the mutations of a hot instrument are queued, and a single drain task per
+//instrument takes up to maxBatchSize of them and hands them to the applier, which writes their merged delta
+//and completes each operation. while a batch is being written the next one fills up behind it.
+//the pool isn't a bean on purpose, like the one of AsyncExecutionConfig
+@Component
+public class StockCombiner implements DisposableBean {
+
+    private final Map<Long, CombiningQueue> queues = new ConcurrentHashMap<>();
+    private final ThreadPoolTaskExecutor combinerExecutor = new ThreadPoolTaskExecutor();
+    private final int maxBatchSize;
+
+    @Autowired
+    public StockCombiner(StockProperties stockProperties) {
+        StockProperties.Combining combining = stockProperties.getCombining();
+        maxBatchSize = Math.max(combining.getMaxBatchSize(), 1);
+        combinerExecutor.setCorePoolSize(combining.getThreads());
+        combinerExecutor.setMaxPoolSize(combining.getThreads());
+        combinerExecutor.setThreadNamePrefix("stock-combiner-");
+        combinerExecutor.initialize();
+    }
+
+    //the caller waits on the returned operation; the applier must complete or fail every operation it gets
+    public StockOperation submit(Long id, int delta, BiConsumer<Long, List<StockOperation>> applier) {
+        StockOperation operation = new StockOperation(delta);
+        CombiningQueue queue = queues.computeIfAbsent(id, key -> new CombiningQueue());
+        queue.operations.add(operation);
+        schedule(id, queue, applier);
+        return operation;
+    }
+
+    private void schedule(Long id, CombiningQueue queue, BiConsumer<Long, List<StockOperation>> applier) {
+        if (queue.draining.compareAndSet(false, true)) {
+            combinerExecutor.execute(() -> drain(id, queue, applier));
+        }
+    }
+
+    //an operation queued after the last poll but before the flag is cleared is picked up by the check after it
+    private void drain(Long id, CombiningQueue queue, BiConsumer<Long, List<StockOperation>> applier) {
+        List<StockOperation> batch = new ArrayList<>();
+        try {
+            StockOperation operation;
+            while (batch.size() < maxBatchSize && (operation = queue.operations.poll()) != null) {
+                batch.add(operation);
+            }
+            if (!batch.isEmpty()) {
+                applier.accept(id, batch);
+            }
+        } catch (RuntimeException e) {
+            //no caller may be left waiting, the ones already completed keep their result
+            batch.forEach(failedOperation -> failedOperation.fail(e));
+        } finally {
+            queue.draining.set(false);
+            if (!queue.operations.isEmpty()) {
+                schedule(id, queue, applier);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        combinerExecutor.shutdown();
+    }
+
+    private static class CombiningQueue {
+
+        private final Queue<StockOperation> operations = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+}
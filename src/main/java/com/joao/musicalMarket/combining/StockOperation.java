@@ -0,0 +1,52 @@
+package com.joao.musicalMarket.combining;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+//an increment (positive delta) or a decrement (negative delta) waiting in the combining queue of its instrument
+public class StockOperation {
+
+    @Getter
+    private final int delta;
+    private final CompletableFuture<InstrumentDTO> result = new CompletableFuture<>();
+
+    StockOperation(int delta) {
+        this.delta = delta;
+    }
+
+    public void complete(InstrumentDTO instrumentDTO) {
+        result.complete(instrumentDTO);
+    }
+
+    public void fail(Exception exception) {
+        result.completeExceptionally(exception);
+    }
+
+    //blocks until the batch of this operation is applied, and throws its own rejection
+    public <E extends Exception> InstrumentDTO await(Class<E> rejectionType)
+            throws E, InstrumentNotFoundException, InstrumentConcurrentUpdateException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (rejectionType.isInstance(cause)) {
+                throw rejectionType.cast(cause);
+            }
+            if (cause instanceof InstrumentNotFoundException) {
+                throw (InstrumentNotFoundException) cause;
+            }
+            if (cause instanceof InstrumentConcurrentUpdateException) {
+                throw (InstrumentConcurrentUpdateException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+}
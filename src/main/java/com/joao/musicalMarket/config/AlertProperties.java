@@ -0,0 +1,23 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//stock alert thresholds and SSE subscriptions (instrument.alerts.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.alerts")
+public class AlertProperties {
+
+    //LOW_STOCK when a mutation takes the quantity to min + lowStockMargin or below
+    private int lowStockMargin = 5;
+
+    //HIGH_STOCK when a mutation takes the quantity to max - highStockMargin or above
+    private int highStockMargin = 5;
+
+    //subscribers reconnect after this time (EventSource does it by itself)
+    private Duration streamTimeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,53 @@
+package com.joao.musicalMarket.config;
+
+import com.joao.musicalMarket.execution.WorkerPoolHandlerAdapter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.sql.DataSource;
+
+//async execution mode: InstrumentController is served through WorkerPoolHandlerAdapter, which runs its handlers on
+//this pool. it isn't a bean on purpose: an Executor bean would replace the application task executor used by @Async
+@Configuration
+@ConditionalOnProperty(name = "instrument.web.execution-mode", havingValue = "async")
+public class AsyncExecutionConfig implements WebMvcRegistrations, DisposableBean {
+
+    private final ThreadPoolTaskExecutor workerPool = new ThreadPoolTaskExecutor();
+    private final long retryAfterSeconds;
+
+    @Autowired
+    public AsyncExecutionConfig(WebExecutionProperties webExecutionProperties, DataSource dataSource) {
+        WebExecutionProperties.Async async = webExecutionProperties.getAsync();
+        int poolSize = async.getPoolSize() > 0 ? async.getPoolSize() : jdbcPoolSize(dataSource);
+        workerPool.setCorePoolSize(poolSize);
+        workerPool.setMaxPoolSize(poolSize);
+        workerPool.setQueueCapacity(async.getQueueCapacity());
+        workerPool.setThreadNamePrefix("instrument-request-");
+        workerPool.initialize();
+        retryAfterSeconds = async.getRetryAfterSeconds();
+    }
+
+    //the timeout stays the one of spring.mvc.async.request-timeout
+    @Override
+    public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+        return new WorkerPoolHandlerAdapter(workerPool, retryAfterSeconds);
+    }
+
+    @Override
+    public void destroy() {
+        workerPool.shutdown();
+    }
+
+    private static int jdbcPoolSize(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            return ((HikariDataSource) dataSource).getMaximumPoolSize();
+        }
+        throw new IllegalStateException("instrument.web.async.pool-size must be set when the data source isn't a Hikari pool");
+    }
+}
@@ -0,0 +1,18 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+//in-memory catalog snapshot of the read endpoints (instrument.catalog.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.catalog")
+public class CatalogProperties {
+
+    //when false the reads go to the database (through the findByName cache), as before
+    private boolean enabled = false;
+
+    //how often the snapshot is rebuilt from the database, which picks up rows changed outside this application
+    private long rebuildIntervalMillis = 300_000;
+}
@@ -0,0 +1,74 @@
+package com.joao.musicalMarket.config;
+
+import com.joao.musicalMarket.enums.ClusterTransportType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//coordination of several instances behind a load balancer (instrument.cluster.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.cluster")
+public class ClusterProperties {
+
+    //when false nothing is sent or received and every instrument is owned by this node, as before
+    private boolean enabled = false;
+
+    private ClusterTransportType transport = ClusterTransportType.LOOPBACK;
+
+    //name of this node for the loopback transport (a random one when empty);
+    //with the socket transport a node is always named by its bind address, host:port
+    private String nodeId;
+
+    //nodes of the same JVM only see the nodes of their group
+    private String group = "instrument";
+
+    private Socket socket = new Socket();
+
+    private Ownership ownership = new Ownership();
+
+    //the gauges can't follow the deltas of the other nodes, after an invalidation they are summed again by the database
+    private long gaugeRefreshIntervalMillis = 1000;
+
+    @Data
+    public static class Socket {
+
+        private String bindHost = "127.0.0.1";
+
+        private int port = 7600;
+
+        //host:port of every other node; all nodes must list the same cluster, or their rings disagree
+        private List<String> peers = new ArrayList<>();
+
+        private Duration connectTimeout = Duration.ofMillis(500);
+
+        //wait before connecting again to a peer that refused a connection
+        private Duration reconnectBackoff = Duration.ofSeconds(1);
+
+        //how often every peer is sent a heartbeat
+        private Duration heartbeatInterval = Duration.ofMillis(500);
+
+        //a peer not heard from for this long leaves the ring, until one of its messages arrives again
+        private Duration failureTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Ownership {
+
+        //each instrument id is owned by one node, the increments and decrements received by the others are forwarded to it
+        private boolean enabled = false;
+
+        //points of each node on the hash ring, more points spread the ids more evenly
+        private int virtualNodes = 64;
+
+        //wait for the owner's answer, then the mutation fails with a 503 (it may still be applied by the owner)
+        private Duration requestTimeout = Duration.ofSeconds(2);
+
+        //threads applying the mutations forwarded by the other nodes
+        private int threads = 8;
+    }
+}
@@ -0,0 +1,28 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//replay of the mutating requests sent again with the same key (instrument.idempotency.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.idempotency")
+public class IdempotencyProperties {
+
+    private boolean enabled = true;
+
+    //header with the key chosen by the client, the same for every retry of a request
+    private String header = "Idempotency-Key";
+
+    //longer keys are refused with a 400
+    private int maxKeyLength = 255;
+
+    //responses kept, the least recently used ones are dropped first
+    private long maximumSize = 100_000;
+
+    //how long a retry gets the recorded response instead of running the request again
+    private Duration timeToLive = Duration.ofHours(24);
+}
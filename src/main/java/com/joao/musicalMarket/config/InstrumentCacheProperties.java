@@ -0,0 +1,19 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//settings of the findByName cache (instrument.cache.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.cache")
+public class InstrumentCacheProperties {
+
+    private long maximumSize = 10_000;
+
+    //entries are evicted on every write, the TTL only covers changes made outside the API
+    private Duration timeToLive = Duration.ofMinutes(5);
+}
@@ -0,0 +1,18 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+//page sizes of GET /api/v1/instruments (instrument.listing.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.listing")
+public class ListingProperties {
+
+    //used when the request doesn't send a size
+    private int defaultPageSize = 50;
+
+    //bigger sizes are capped to this one, so a request can never load the whole table
+    private int maxPageSize = 500;
+}
@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//stock movement log snapshots and compaction (instrument.movements.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.movements")
+public class MovementProperties {
+
+    //how often the movements are summed into snapshots
+    private long snapshotIntervalMillis = 3_600_000;
+
+    //snapshots stop this long before now, so a transaction still open with older movements isn't left out
+    private Duration snapshotLag = Duration.ofMinutes(1);
+
+    //movements older than this are deleted once a snapshot covers them; before it the history has the snapshot granularity
+    private Duration retention = Duration.ofDays(30);
+
+    //movements deleted per compaction transaction
+    private int compactionChunkSize = 10_000;
+}
@@ -0,0 +1,29 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//stock mutations accepted with Prefer: respond-async (instrument.operations.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.operations")
+public class OperationProperties {
+
+    //threads running the accepted mutations; more than the JDBC pool can serve only adds waiting threads
+    private int poolSize = 8;
+
+    //accepted mutations waiting for one of those threads, above it new ones get a 503
+    private int queueCapacity = 10_000;
+
+    //how long the result of an operation can still be polled after it finished
+    private Duration retention = Duration.ofMinutes(10);
+
+    //longest wait of a long poll (?waitSeconds=), the operation is returned as it is when it runs out
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    //Retry-After of a mutation refused because the queue is full
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
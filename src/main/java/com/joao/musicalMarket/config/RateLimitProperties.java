@@ -0,0 +1,74 @@
+package com.joao.musicalMarket.config;
+
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+//rate limiting and load shedding of the stock mutation endpoints (instrument.rate-limit.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    //header identifying the client; requests without it, or with a key not listed in api-keys, are limited by remote address
+    private String apiKeyHeader = "X-API-Key";
+
+    //every client gets one bucket per endpoint with this limit, unless a more specific one is set below
+    private Limit defaultLimit = new Limit(100, 50);
+
+    //per endpoint (increment, decrement, stock-batch)
+    private Map<RateLimitedEndpoint, Limit> endpoints = new EnumMap<>(RateLimitedEndpoint.class);
+
+    //per API key, on every endpoint; takes precedence over the endpoint limit
+    private Map<String, Limit> apiKeys = new HashMap<>();
+
+    //buckets of clients idle for this long are dropped (a new bucket starts full)
+    private Duration bucketIdleTimeout = Duration.ofMinutes(10);
+
+    private Shedding shedding = new Shedding();
+
+    //an unknown key would give the client a new bucket, and a new idempotency scope, on every request it makes up
+    public boolean isListedApiKey(String apiKey) {
+        return apiKey != null && apiKeys.containsKey(apiKey);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        //burst size: requests accepted at once by a full bucket
+        private int capacity;
+
+        //tokens added per second, the sustained rate
+        private double refillPerSecond;
+    }
+
+    @Data
+    public static class Shedding {
+
+        private boolean enabled = true;
+
+        //mutations being processed at the same time, above it new ones get a 503
+        private int maxInFlight = 64;
+
+        //mean wait for a pooled connection over the last sample, above it new mutations get a 503
+        private Duration maxPoolWait = Duration.ofMillis(500);
+
+        //how often the pool wait is sampled from the hikaricp.connections.acquire timer
+        private long sampleIntervalMillis = 1000;
+
+        //Retry-After of a shed request
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//stock holds of the checkout (instrument.reservations.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.reservations")
+public class ReservationProperties {
+
+    //TTL of a hold created without one
+    private Duration defaultTtl = Duration.ofMinutes(15);
+
+    //longer TTLs, asked by the client or the default one, are cut to this
+    private Duration maxTtl = Duration.ofHours(2);
+
+    //how often the expired holds are released
+    private long expiryIntervalMillis = 1000;
+
+    //expired holds released per transaction (one DELETE and one JDBC batch of UPDATEs)
+    private int expiryBatchSize = 1000;
+}
@@ -0,0 +1,17 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//cache of the stats endpoints (instrument.stats.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.stats")
+public class StatsProperties {
+
+    //how old the aggregates can be: the writes don't evict them, a dashboard polling faster gets the cached ones
+    private Duration timeToLive = Duration.ofSeconds(10);
+}
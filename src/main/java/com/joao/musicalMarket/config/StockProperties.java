@@ -0,0 +1,70 @@
+package com.joao.musicalMarket.config;
+
+import com.joao.musicalMarket.enums.StockLockingMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//settings of the stock mutations (instrument.stock.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.stock")
+public class StockProperties {
+
+    private StockLockingMode lockingMode = StockLockingMode.ATOMIC;
+
+    private Retry retry = new Retry();
+
+    private Ledger ledger = new Ledger();
+
+    private Combining combining = new Combining();
+
+    @Data
+    public static class Retry {
+
+        //attempts before giving up with a 409
+        private int maxAttempts = 5;
+
+        //the backoff doubles after each conflict (up to maxBackoff) and a random part of it is slept
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class Ledger {
+
+        //where the append-only journal segments are written
+        private String journalDirectory = "data/ledger";
+
+        //force every journal record to disk before acknowledging the mutation
+        private boolean fsync = true;
+
+        //how often the coalesced deltas are written to the database
+        private long flushIntervalMillis = 500;
+    }
+
+    @Data
+    public static class Combining {
+
+        //route the increments and decrements of hot instruments through their combining queue
+        private boolean enabled = true;
+
+        //one mutation in sampleRate is counted by the hot key detector
+        private int sampleRate = 8;
+
+        //mutations per second (estimated from the samples) that make an instrument hot
+        private long hotThresholdPerSecond = 200;
+
+        //how often the sampled counts are turned into the set of hot instruments
+        private long windowMillis = 1000;
+
+        //mutations merged into a single UPDATE
+        private int maxBatchSize = 256;
+
+        //threads applying the batches, each hot instrument is drained by one of them at a time
+        private int threads = 4;
+    }
+}
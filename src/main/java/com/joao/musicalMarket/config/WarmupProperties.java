@@ -0,0 +1,20 @@
+package com.joao.musicalMarket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+//startup warm-up (instrument.warmup.* in application.properties), enabled by the prod profile
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.warmup")
+public class WarmupProperties {
+
+    private boolean enabled = false;
+
+    //instruments loaded into the findByName cache, in id order (keep it up to instrument.cache.maximum-size)
+    private int preloadSize = 1000;
+
+    //calls of each read path, enough for the JIT to compile them before the first request
+    private int iterations = 10_000;
+}
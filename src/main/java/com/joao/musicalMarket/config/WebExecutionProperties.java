@@ -0,0 +1,30 @@
+package com.joao.musicalMarket.config;
+
+import com.joao.musicalMarket.enums.RequestExecutionMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+//execution mode of the REST layer (instrument.web.* in application.properties)
+@Data
+@Component
+@ConfigurationProperties(prefix = "instrument.web")
+public class WebExecutionProperties {
+
+    private RequestExecutionMode executionMode = RequestExecutionMode.BLOCKING;
+
+    private Async async = new Async();
+
+    @Data
+    public static class Async {
+
+        //threads running the handlers; 0 sizes it to the JDBC pool (spring.datasource.hikari.maximum-pool-size),
+        //since a worker more than the connections only waits for one
+        private int poolSize = 0;
+
+        //requests waiting for a worker without holding a Tomcat thread; past it they're shed with a 503
+        private int queueCapacity = 200;
+
+        private long retryAfterSeconds = 1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.controller;
+
+import com.joao.musicalMarket.enums.WireFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.function.Function;
+
+//conditional GETs of InstrumentController. the JSON, Smile and CBOR representations
+//of a resource are different bytes, so each one has its own strong ETag and the response varies by Accept
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    //true when the request's If-None-Match matches: the 304 is ready and the handler must return null
+    static boolean checkNotModified(NativeWebRequest webRequest, Function<WireFormat, String> eTagOfFormat) {
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        WireFormat format = WireFormat.negotiate(webRequest.getHeader(HttpHeaders.ACCEPT));
+        return webRequest.checkNotModified(eTagOfFormat.apply(format));
+    }
+}
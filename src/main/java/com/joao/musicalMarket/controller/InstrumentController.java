@@ -1,36 +1,93 @@
 package com.joao.musicalMarket.controller;
 
+import com.joao.musicalMarket.alert.StockAlertBroadcaster;
+import com.joao.musicalMarket.cache.InstrumentETags;
 import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentImportResultDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.dto.OperationDTO;
 import com.joao.musicalMarket.dto.QuantityDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.dto.StockAtDTO;
+import com.joao.musicalMarket.dto.StockBatchDTO;
+import com.joao.musicalMarket.dto.StockBatchResultDTO;
+import com.joao.musicalMarket.dto.StockStatsDTO;
+import com.joao.musicalMarket.enums.ExportFormat;
+import com.joao.musicalMarket.enums.ImportFormat;
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
 import com.joao.musicalMarket.exception.InstrumentAlreadyRegisteredException;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
+import com.joao.musicalMarket.exception.InstrumentImportUnreadableException;
 import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
 import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
 import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.exception.OperationNotFoundException;
+import com.joao.musicalMarket.exception.StockReservationNotFoundException;
+import com.joao.musicalMarket.execution.OnRequestThread;
+import com.joao.musicalMarket.operation.OperationExecutor;
+import com.joao.musicalMarket.ratelimit.RateLimited;
+import com.joao.musicalMarket.service.InstrumentExportService;
+import com.joao.musicalMarket.service.InstrumentImportService;
 import com.joao.musicalMarket.service.InstrumentService;
+import com.joao.musicalMarket.service.InstrumentStatsService;
+import com.joao.musicalMarket.service.StockReservationService;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.joao.musicalMarket.controller.ConditionalRequests.checkNotModified;
+import static com.joao.musicalMarket.controller.InstrumentPageResponses.toPageResponse;
+import static com.joao.musicalMarket.controller.OperationResponses.RESPOND_ASYNC;
+import static com.joao.musicalMarket.controller.OperationResponses.toAcceptedResponse;
 
 
 //indicates that its a controller class, will lead with data processing (json and xml)
 @RestController
 //requestMapping defines the name of ur api
 @RequestMapping("/api/v1/instruments")
+//the same handlers serve both execution modes: with instrument.web.execution-mode=async they run on the worker pool
+//of AsyncExecutionConfig, except the @OnRequestThread ones
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class InstrumentController implements InstrumentControllerDocs {
 
     private final InstrumentService instrumentService;
+    private final InstrumentExportService instrumentExportService;
+    private final InstrumentImportService instrumentImportService;
+    private final StockAlertBroadcaster stockAlertBroadcaster;
+    private final InstrumentETags instrumentETags;
+    private final StockReservationService stockReservationService;
+    private final OperationExecutor operationExecutor;
+    private final InstrumentStatsService instrumentStatsService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -39,14 +96,95 @@ public class InstrumentController implements InstrumentControllerDocs {
         return instrumentService.createInstrument(instrumentDTO);
     }
 
+    //bulk creation from a CSV file (header: name,brand,max,min,quantity,type) or a JSON array, chosen by the Content-Type;
+    //rejected rows are reported with their row number and don't stop the others
+    @PostMapping(path = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    public InstrumentImportResultDTO importInstruments(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       InputStream inputStream)
+            throws IOException, InstrumentImportUnreadableException {
+        return instrumentImportService.importInstruments(inputStream,
+                ImportFormat.of(MediaType.parseMediaType(contentType)).orElseThrow());
+    }
+
+    //conditional GET: the ETag comes from memory, so a matching If-None-Match is answered with 304
+    //before any read (checkNotModified also sets the ETag header of the 200)
     @GetMapping("/{name}")
-    public InstrumentDTO findByName(@PathVariable String name) throws InstrumentNotFoundException {
+    public InstrumentDTO findByName(@PathVariable String name, NativeWebRequest webRequest) throws InstrumentNotFoundException {
+        if (checkNotModified(webRequest, format -> instrumentETags.instrument(name, format))) {
+            return null;
+        }
         return instrumentService.findByName(name);
     }
 
+    //keyset pages by default (?after=<last id>&size=), offset pages with ?page=;
+    //the next page is announced in a Link header so the body stays a plain array
     @GetMapping
-    public List<InstrumentDTO> listInstruments() {
-        return instrumentService.listAll();
+    public ResponseEntity<List<InstrumentDTO>> listInstruments(@RequestParam(required = false) Long after,
+                                                               @RequestParam(required = false) Integer page,
+                                                               @RequestParam(required = false) Integer size,
+                                                               NativeWebRequest webRequest) {
+        if (checkNotModified(webRequest, instrumentETags::catalog)) {
+            return null;
+        }
+        InstrumentPageDTO instrumentPageDTO = page != null
+                ? instrumentService.listPage(page, size)
+                : instrumentService.listAfter(after, size);
+        return toPageResponse(instrumentPageDTO, ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    //?brand=&type=&maxQuantity=&lowStockMargin= combined with AND, paged like the listing (?after=&size=)
+    @GetMapping("/search")
+    public ResponseEntity<List<InstrumentDTO>> searchInstruments(@Valid InstrumentFilterDTO instrumentFilterDTO,
+                                                                 @RequestParam(required = false) Long after,
+                                                                 @RequestParam(required = false) Integer size,
+                                                                 NativeWebRequest webRequest) {
+        if (checkNotModified(webRequest, instrumentETags::catalog)) {
+            return null;
+        }
+        return toPageResponse(instrumentService.search(instrumentFilterDTO, after, size),
+                ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    //aggregates computed by the database and cached for instrument.stats.time-to-live,
+    //instead of a client pulling every instrument to sum them
+    @GetMapping("/stats")
+    public StockStatsDTO stats() {
+        return instrumentStatsService.stats();
+    }
+
+    @GetMapping("/stats/types")
+    public List<StockStatsDTO> statsByType() {
+        return instrumentStatsService.statsByType();
+    }
+
+    @GetMapping("/stats/brands")
+    public List<StockStatsDTO> statsByBrand() {
+        return instrumentStatsService.statsByBrand();
+    }
+
+    //nightly export of the whole catalog, streamed as NDJSON (default) or as a chunked JSON array
+    @OnRequestThread
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportInstruments(@RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        StreamingResponseBody responseBody = outputStream -> instrumentExportService.export(outputStream, format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .body(responseBody);
+    }
+
+    //server-sent events with the LOW_STOCK/HIGH_STOCK alerts of the stock mutations, replaces polling the listing
+    @OnRequestThread
+    @GetMapping(path = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts() {
+        return stockAlertBroadcaster.subscribe();
+    }
+
+    //quantity at a past time (?at=2020-06-01T10:00:00Z), from the stock movement log
+    @GetMapping("/{id}/stock")
+    public StockAtDTO findStockAt(@PathVariable Long id,
+                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at)
+            throws InstrumentNotFoundException {
+        return instrumentService.findStockAt(id, at);
     }
 
     @DeleteMapping("/{id}")
@@ -56,14 +194,80 @@ public class InstrumentController implements InstrumentControllerDocs {
     }
 
     @PatchMapping("/{id}/increment")
+    @RateLimited(RateLimitedEndpoint.INCREMENT)
     public InstrumentDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO)
-            throws InstrumentNotFoundException, InstrumentStockExceededException {
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException,
+            InstrumentOwnerUnavailableException {
         return instrumentService.increment(id, quantityDTO.getQuantity());
     }
 
     @PatchMapping("/{id}/decrement")
+    @RateLimited(RateLimitedEndpoint.DECREMENT)
     public InstrumentDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO)
-            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException,
+            InstrumentOwnerUnavailableException {
         return instrumentService.decrement(id, quantityDTO.getQuantity());
     }
+
+    @PostMapping("/stock/batch")
+    @RateLimited(RateLimitedEndpoint.STOCK_BATCH)
+    public StockBatchResultDTO adjustStock(@RequestBody @Valid StockBatchDTO stockBatchDTO)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentNegativeStockExceededException {
+        return instrumentService.adjustStock(stockBatchDTO);
+    }
+
+    //Prefer: respond-async accepts the stock mutation with a 202 and runs it on the operation pool,
+    //its result is polled at the Location of the response
+    @OnRequestThread
+    @PatchMapping(path = "/{id}/increment", headers = RESPOND_ASYNC)
+    @RateLimited(RateLimitedEndpoint.INCREMENT)
+    public ResponseEntity<OperationDTO> incrementAsync(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws InstrumentServiceOverloadedException {
+        return toAcceptedResponse(operationExecutor.submit(() -> instrumentService.increment(id, quantityDTO.getQuantity())));
+    }
+
+    @OnRequestThread
+    @PatchMapping(path = "/{id}/decrement", headers = RESPOND_ASYNC)
+    @RateLimited(RateLimitedEndpoint.DECREMENT)
+    public ResponseEntity<OperationDTO> decrementAsync(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO)
+            throws InstrumentServiceOverloadedException {
+        return toAcceptedResponse(operationExecutor.submit(() -> instrumentService.decrement(id, quantityDTO.getQuantity())));
+    }
+
+    @OnRequestThread
+    @PostMapping(path = "/stock/batch", headers = RESPOND_ASYNC)
+    @RateLimited(RateLimitedEndpoint.STOCK_BATCH)
+    public ResponseEntity<OperationDTO> adjustStockAsync(@RequestBody @Valid StockBatchDTO stockBatchDTO)
+            throws InstrumentServiceOverloadedException {
+        return toAcceptedResponse(operationExecutor.submit(() -> instrumentService.adjustStock(stockBatchDTO)));
+    }
+
+    //the operation as it is, or once it finishes with ?waitSeconds= (long poll, no request thread waits)
+    @OnRequestThread
+    @GetMapping("/operations/{operationId}")
+    public CompletableFuture<OperationDTO> findOperation(@PathVariable String operationId,
+                                                         @RequestParam(defaultValue = "0") long waitSeconds)
+            throws OperationNotFoundException {
+        return operationExecutor.await(operationId, Duration.ofSeconds(waitSeconds));
+    }
+
+    //checkout holds: the units count against min until the hold is confirmed, released or expires
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid ReservationRequestDTO reservationRequestDTO)
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+        return stockReservationService.reserve(id, reservationRequestDTO);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public InstrumentDTO confirmReservation(@PathVariable Long reservationId)
+            throws StockReservationNotFoundException, InstrumentNotFoundException {
+        return stockReservationService.confirm(reservationId);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable Long reservationId) throws StockReservationNotFoundException {
+        stockReservationService.release(reservationId);
+    }
 }
@@ -1,15 +1,40 @@
 package com.joao.musicalMarket.controller;
 
 import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentImportResultDTO;
+import com.joao.musicalMarket.dto.OperationDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.dto.StockAtDTO;
+import com.joao.musicalMarket.dto.StockBatchDTO;
+import com.joao.musicalMarket.dto.StockBatchResultDTO;
+import com.joao.musicalMarket.dto.StockStatsDTO;
+import com.joao.musicalMarket.enums.ExportFormat;
 import com.joao.musicalMarket.exception.InstrumentAlreadyRegisteredException;
+import com.joao.musicalMarket.exception.InstrumentImportUnreadableException;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
 import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.exception.OperationNotFoundException;
+import com.joao.musicalMarket.exception.StockReservationNotFoundException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Api("This api leads with a musical market with a stock of instruments!")
 public interface InstrumentControllerDocs {
@@ -23,16 +48,78 @@ public interface InstrumentControllerDocs {
 
     @ApiOperation(value = "Returns Instrument found by a given name")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Success Instrument found in the system"),
+            @ApiResponse(code = 200, message = "Success Instrument found in the system, its version is in the ETag header"),
+            @ApiResponse(code = 304, message = "Instrument not modified since the ETag given in If-None-Match."),
             @ApiResponse(code = 404, message = "Instrument with given name not found.")
     })
-    InstrumentDTO findByName(@PathVariable String name) throws InstrumentNotFoundException;
+    InstrumentDTO findByName(@PathVariable String name, NativeWebRequest webRequest) throws InstrumentNotFoundException;
 
-    @ApiOperation(value = "Returns a list of all Instrument registered in the system")
+    @ApiOperation(value = "Returns a page of the Instruments registered in the system, ordered by id")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "List of all Instruments registered in the system"),
+            @ApiResponse(code = 200, message = "Page of Instruments, the next one is in the Link header (rel=\"next\")"),
+            @ApiResponse(code = 304, message = "No Instrument modified since the ETag given in If-None-Match."),
     })
-    List<InstrumentDTO> listInstruments();
+    ResponseEntity<List<InstrumentDTO>> listInstruments(@ApiParam("Last id of the previous page (keyset pagination)") Long after,
+                                                        @ApiParam("Page number (offset pagination)") Integer page,
+                                                        @ApiParam("Page size, capped by instrument.listing.max-page-size") Integer size,
+                                                        NativeWebRequest webRequest);
+
+    @ApiOperation(value = "Returns a page of the Instruments matching all the given filters, ordered by id")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of Instruments, the next one is in the Link header (rel=\"next\")"),
+            @ApiResponse(code = 304, message = "No Instrument modified since the ETag given in If-None-Match."),
+            @ApiResponse(code = 400, message = "Negative quantity filter.")
+    })
+    ResponseEntity<List<InstrumentDTO>> searchInstruments(InstrumentFilterDTO instrumentFilterDTO,
+                                                          @ApiParam("Last id of the previous page (keyset pagination)") Long after,
+                                                          @ApiParam("Page size, capped by instrument.listing.max-page-size") Integer size,
+                                                          NativeWebRequest webRequest);
+
+    @ApiOperation(value = "Returns the stock aggregates of all the Instruments: count, total quantity and max, fill ratios and count below min")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Aggregates computed by the database, up to instrument.stats.time-to-live old"),
+    })
+    StockStatsDTO stats();
+
+    @ApiOperation(value = "Returns the stock aggregates per InstrumentType, in the group field")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One entry per type with instruments, ordered by type"),
+    })
+    List<StockStatsDTO> statsByType();
+
+    @ApiOperation(value = "Returns the stock aggregates per brand, in the group field")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One entry per brand, ordered by brand"),
+    })
+    List<StockStatsDTO> statsByBrand();
+
+    @ApiOperation(value = "Streams every Instrument registered in the system, as NDJSON or as a JSON array")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "All Instruments, ordered by id"),
+    })
+    ResponseEntity<StreamingResponseBody> exportInstruments(@ApiParam("NDJSON (default) or JSON") ExportFormat format);
+
+    @ApiOperation(value = "Creates the instruments of a CSV file (text/csv, with a header row) or of a JSON array")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of imported instruments, and the error of each rejected row"),
+            @ApiResponse(code = 400, message = "Malformed CSV or JSON, nothing imported.")
+    })
+    InstrumentImportResultDTO importInstruments(String contentType, InputStream inputStream)
+            throws IOException, InstrumentImportUnreadableException;
+
+    @ApiOperation(value = "Subscribes to the stock alerts, sent as server-sent events named LOW_STOCK or HIGH_STOCK")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Event stream, one event each time a stock mutation crosses a threshold"),
+    })
+    SseEmitter streamAlerts();
+
+    @ApiOperation(value = "Returns the quantity of an instrument at a past time, rebuilt from its stock movements")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Quantity at the given time"),
+            @ApiResponse(code = 404, message = "Instrument without stock history up to the given time.")
+    })
+    StockAtDTO findStockAt(@PathVariable Long id, @ApiParam("ISO-8601 instant, e.g. 2020-06-01T10:00:00Z") Instant at)
+            throws InstrumentNotFoundException;
 
     @ApiOperation(value = "Delete a Instrument found by a given valid Id")
     @ApiResponses(value = {
@@ -40,4 +127,58 @@ public interface InstrumentControllerDocs {
             @ApiResponse(code = 404, message = "Instrument with given id not found.")
     })
     void deleteById(@PathVariable Long id) throws InstrumentNotFoundException;
-}
\ No newline at end of file
+
+    @ApiOperation(value = "Applies a batch of stock adjustments in a single transaction")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Result of each adjustment (rejected ones are only reported in BEST_EFFORT mode)"),
+            @ApiResponse(code = 400, message = "Invalid adjustment, or an ATOMIC batch rolled back because it exceeds the stock limits."),
+            @ApiResponse(code = 404, message = "Instrument of an ATOMIC batch not found."),
+            @ApiResponse(code = 409, message = "A request with the same Idempotency-Key is still running."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used with another request."),
+            @ApiResponse(code = 429, message = "Rate limit of the client exceeded, retry after the Retry-After seconds."),
+            @ApiResponse(code = 503, message = "Too many stock mutations in flight or slow connection pool, retry after the Retry-After seconds.")
+    })
+    StockBatchResultDTO adjustStock(StockBatchDTO stockBatchDTO)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentNegativeStockExceededException;
+
+    @ApiOperation(value = "Accepts a batch of stock adjustments (Prefer: respond-async) and applies it in the background")
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "Adjustments accepted, the operation to poll is in the Location header"),
+            @ApiResponse(code = 400, message = "Invalid adjustment."),
+            @ApiResponse(code = 503, message = "Operation queue full, retry after the Retry-After seconds.")
+    })
+    ResponseEntity<OperationDTO> adjustStockAsync(StockBatchDTO stockBatchDTO) throws InstrumentServiceOverloadedException;
+
+    @ApiOperation(value = "Returns an operation accepted with Prefer: respond-async, once finished with waitSeconds")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "PENDING, or the result or error the synchronous request would have returned"),
+            @ApiResponse(code = 404, message = "Operation not found or its result expired.")
+    })
+    CompletableFuture<OperationDTO> findOperation(@PathVariable String operationId,
+                                                  @ApiParam("Seconds to wait for the operation to finish (long poll)") long waitSeconds)
+            throws OperationNotFoundException;
+
+    @ApiOperation(value = "Holds units of an instrument for a checkout, until confirmed, released or expired")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Hold created, its units count against min until it ends"),
+            @ApiResponse(code = 400, message = "Not enough unreserved units above min."),
+            @ApiResponse(code = 404, message = "Instrument with given id not found.")
+    })
+    ReservationDTO reserve(@PathVariable Long id, ReservationRequestDTO reservationRequestDTO)
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException;
+
+    @ApiOperation(value = "Confirms a hold: its units leave the stock")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Instrument with the confirmed units removed from its quantity"),
+            @ApiResponse(code = 404, message = "Hold already confirmed, released or expired.")
+    })
+    InstrumentDTO confirmReservation(@PathVariable Long reservationId)
+            throws StockReservationNotFoundException, InstrumentNotFoundException;
+
+    @ApiOperation(value = "Releases a hold before it expires")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Hold released"),
+            @ApiResponse(code = 404, message = "Hold already confirmed, released or expired.")
+    })
+    void releaseReservation(@PathVariable Long reservationId) throws StockReservationNotFoundException;
+}
@@ -0,0 +1,33 @@
+package com.joao.musicalMarket.controller;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+
+//body and Link header of a listing page, built from the uri of the request
+final class InstrumentPageResponses {
+
+    private InstrumentPageResponses() {
+    }
+
+    static ResponseEntity<List<InstrumentDTO>> toPageResponse(InstrumentPageDTO instrumentPageDTO, UriComponentsBuilder requestUri) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (instrumentPageDTO.getNextCursor() != null) {
+            response.header(HttpHeaders.LINK, nextPageLink(requestUri, "after", instrumentPageDTO.getNextCursor()));
+        } else if (instrumentPageDTO.getNextPage() != null) {
+            response.header(HttpHeaders.LINK, nextPageLink(requestUri, "page", instrumentPageDTO.getNextPage()));
+        }
+        return response.body(instrumentPageDTO.getInstruments());
+    }
+
+    private static String nextPageLink(UriComponentsBuilder requestUri, String parameter, Object value) {
+        String nextPageUri = requestUri.cloneBuilder()
+                .replaceQueryParam(parameter, value)
+                .toUriString();
+        return String.format("<%s>; rel=\"next\"", nextPageUri);
+    }
+}
@@ -0,0 +1,28 @@
+package com.joao.musicalMarket.controller;
+
+import com.joao.musicalMarket.dto.OperationDTO;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+//202 of a stock mutation sent with Prefer: respond-async
+final class OperationResponses {
+
+    //request condition of the handlers that accept the mutation instead of running it
+    static final String RESPOND_ASYNC = "Prefer=respond-async";
+
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    private OperationResponses() {
+    }
+
+    //the operation to poll is in the Location header, the body is its PENDING state
+    static ResponseEntity<OperationDTO> toAcceptedResponse(OperationDTO operationDTO) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/api/v1/instruments/operations/{id}")
+                        .buildAndExpand(operationDTO.getId())
+                        .toUri())
+                .header(PREFERENCE_APPLIED, "respond-async")
+                .body(operationDTO);
+    }
+}
@@ -0,0 +1,28 @@
+package com.joao.musicalMarket.dto;
+
+import com.joao.musicalMarket.enums.InstrumentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.validation.constraints.Min;
+
+//filters of the instrument search, bound from the query string; null fields are not applied
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstrumentFilterDTO {
+
+    private String brand;
+
+    private InstrumentType type;
+
+    //instruments with quantity <= maxQuantity
+    @Min(0)
+    private Integer maxQuantity;
+
+    //instruments with quantity < min + lowStockMargin
+    @Min(0)
+    private Integer lowStockMargin;
+}
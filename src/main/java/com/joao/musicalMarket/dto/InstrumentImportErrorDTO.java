@@ -0,0 +1,21 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//a row left out of a bulk import: rows are numbered from 1, without the CSV header
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstrumentImportErrorDTO {
+
+    private int row;
+
+    //null when the row has no readable name
+    private String name;
+
+    private String message;
+}
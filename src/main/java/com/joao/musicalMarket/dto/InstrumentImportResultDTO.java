@@ -0,0 +1,21 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstrumentImportResultDTO {
+
+    private int imported;
+
+    private int rejected;
+
+    //one error per rejected row, in the row order
+    private List<InstrumentImportErrorDTO> errors;
+}
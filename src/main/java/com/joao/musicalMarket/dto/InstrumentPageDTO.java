@@ -0,0 +1,22 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstrumentPageDTO {
+
+    private List<InstrumentDTO> instruments;
+
+    //id to send as "after" to get the next keyset page (null on the last page)
+    private Long nextCursor;
+
+    //number to send as "page" to get the next offset page (null on the last page)
+    private Integer nextPage;
+}
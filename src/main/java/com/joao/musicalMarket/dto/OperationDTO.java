@@ -0,0 +1,27 @@
+package com.joao.musicalMarket.dto;
+
+import com.joao.musicalMarket.enums.OperationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//a stock mutation accepted with Prefer: respond-async, polled at /api/v1/instruments/operations/{id}
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperationDTO {
+
+    private String id;
+
+    private OperationStatus status;
+
+    //body of the synchronous response, when SUCCEEDED
+    private Object result;
+
+    //HTTP status and message of the synchronous error, when FAILED
+    private Integer errorStatus;
+
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+//an open hold: its units count against min until it is confirmed, released or expires
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDTO {
+
+    private Long id;
+
+    private Long instrumentId;
+
+    private Integer quantity;
+
+    private Instant expiresAt;
+}
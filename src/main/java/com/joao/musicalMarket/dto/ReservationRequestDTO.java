@@ -0,0 +1,25 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+//units to hold for a checkout, and for how long (instrument.reservations.default-ttl when absent)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationRequestDTO {
+
+    @NotNull
+    @Max(100)
+    @Min(1)
+    private Integer quantity;
+
+    @Min(1)
+    private Long ttlSeconds;
+}
@@ -0,0 +1,23 @@
+package com.joao.musicalMarket.dto;
+
+import com.joao.musicalMarket.enums.StockAdjustmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentResultDTO {
+
+    private Long id;
+
+    private Integer delta;
+
+    private StockAdjustmentStatus status;
+
+    //quantity of the instrument after the whole batch (null when it doesn't exist)
+    private Integer quantity;
+}
@@ -0,0 +1,29 @@
+package com.joao.musicalMarket.dto;
+
+import com.joao.musicalMarket.enums.StockAlertType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//published when a mutation crosses a stock threshold, and sent as is to the SSE subscribers
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAlertDTO {
+
+    private StockAlertType type;
+
+    private Long id;
+
+    private String name;
+
+    private int previousQuantity;
+
+    private int quantity;
+
+    private int min;
+
+    private int max;
+}
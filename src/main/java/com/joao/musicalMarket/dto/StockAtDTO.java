@@ -0,0 +1,21 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+//quantity of an instrument at a past time, rebuilt from the stock movement log
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAtDTO {
+
+    private Long id;
+
+    private Instant at;
+
+    private Integer quantity;
+}
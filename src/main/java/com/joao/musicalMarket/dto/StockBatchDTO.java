@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.dto;
+
+import com.joao.musicalMarket.enums.StockBatchMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchDTO {
+
+    @NotNull
+    private StockBatchMode mode;
+
+    @Valid
+    @NotNull
+    @Size(min = 1, max = 1000)
+    private List<StockAdjustmentDTO> adjustments;
+}
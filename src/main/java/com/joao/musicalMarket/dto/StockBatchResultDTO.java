@@ -0,0 +1,21 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchResultDTO {
+
+    private int applied;
+
+    private int rejected;
+
+    //one result per adjustment, in the request order
+    private List<StockAdjustmentResultDTO> results;
+}
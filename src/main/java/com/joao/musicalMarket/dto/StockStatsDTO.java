@@ -0,0 +1,30 @@
+package com.joao.musicalMarket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//stock aggregates of the whole catalog (group is null), of an InstrumentType or of a brand
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockStatsDTO {
+
+    private String group;
+
+    private long instruments;
+
+    private long totalQuantity;
+
+    private long totalMax;
+
+    private long belowMin;
+
+    //totalQuantity / totalMax
+    private Double fillRatio;
+
+    //mean of quantity / max per instrument
+    private Double averageFillRatio;
+}
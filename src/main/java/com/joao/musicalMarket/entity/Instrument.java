@@ -10,11 +10,20 @@ import javax.persistence.*;
 @Entity                 //describes the entity (setting primary key types and mapping all atributes to db)
 @NoArgsConstructor      //generates a no-args constructor
 @AllArgsConstructor     //implements a constructor for us
+//secondary indexes used by the instrument search (InstrumentFilterRepository). quantity isn't indexed:
+//it is written by every stock change, and a stock filter is a range the planner rarely seeks anyway
+@Table(indexes = {
+        @Index(name = "idx_instrument_brand", columnList = "brand"),
+        @Index(name = "idx_instrument_type", columnList = "type")
+})
 public class Instrument {
 
     //id unico do instrumento
+    //pooled sequence: ids are reserved 50 at a time, so the inserts can be sent in JDBC batches
+    //(IDENTITY needs the generated key of each row back, and Hibernate doesn't batch it)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "instrument_id")
+    @SequenceGenerator(name = "instrument_id", sequenceName = "instrument_seq", allocationSize = 50)
     private Long id;
 
     //name nao pode ser null e tem que ser unico
@@ -33,7 +42,17 @@ public class Instrument {
     @Column(nullable=false)
     private int quantity;
 
+    //units held by open StockHolds: still in quantity, but a decrement can't take them below min.
+    //the default lets ddl-auto=update add the column to a database that already has instruments
+    @Column(nullable = false, columnDefinition = "integer default 0 not null")
+    private int reserved;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private InstrumentType type;
+
+    //incremented on every update, used by the optimistic locking mode to detect concurrent writes
+    @Version
+    @Column(nullable = false)
+    private long version;
 }
@@ -0,0 +1,23 @@
+package com.joao.musicalMarket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+//last stock journal segment already written to the instrument table,
+//saved in the same transaction as the flushed quantities
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private long segment;
+}
@@ -0,0 +1,31 @@
+package com.joao.musicalMarket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.persistence.*;
+import java.time.Instant;
+
+//units of an instrument held for a checkout until they are confirmed (sold), released or the hold expires;
+//the row is deleted by whichever of the three happens first
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_stock_hold_instrument", columnList = "instrument_id"))
+public class StockHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_hold_id")
+    @SequenceGenerator(name = "stock_hold_id", sequenceName = "stock_hold_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "instrument_id", nullable = false)
+    private Long instrumentId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,39 @@
+package com.joao.musicalMarket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.persistence.*;
+import java.time.Instant;
+
+//append-only record of a stock change, inserted in the transaction of the change and never updated;
+//rows are only deleted by the compaction, once a StockSnapshot covers them
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+//the point in time queries seek one instrument, the snapshots and the compaction range over every instrument by time
+@Table(indexes = {
+        @Index(name = "idx_stock_movement_instrument_time", columnList = "instrument_id, created_at"),
+        @Index(name = "idx_stock_movement_time", columnList = "created_at")
+})
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_movement_id")
+    @SequenceGenerator(name = "stock_movement_id", sequenceName = "stock_movement_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "instrument_id", nullable = false)
+    private Long instrumentId;
+
+    @Column(nullable = false)
+    private int delta;
+
+    //quantity right after this movement
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,30 @@
+package com.joao.musicalMarket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import javax.persistence.*;
+import java.time.Instant;
+
+//quantity of an instrument at takenAt, the sum of all its movements up to then
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_stock_snapshot_instrument_time", columnList = "instrument_id, taken_at"))
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_snapshot_id")
+    @SequenceGenerator(name = "stock_snapshot_id", sequenceName = "stock_snapshot_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "instrument_id", nullable = false)
+    private Long instrumentId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "taken_at", nullable = false)
+    private Instant takenAt;
+}
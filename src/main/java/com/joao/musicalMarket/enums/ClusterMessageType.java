@@ -0,0 +1,16 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ClusterMessageType {
+
+    INVALIDATE("Instruments changed by another node"),
+    MUTATE("Stock mutation forwarded to the owner of the instrument"),
+    MUTATE_RESULT("Outcome of a forwarded stock mutation"),
+    HEARTBEAT("Sent by the socket transport so its peers know the node is up");
+
+    private final String description;
+}
@@ -0,0 +1,15 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//how the nodes of a cluster reach each other
+@Getter
+@AllArgsConstructor
+public enum ClusterTransportType {
+
+    LOOPBACK("Nodes of the same JVM, grouped by name (tests and local runs)"),
+    SOCKET("JSON lines over TCP connections between the configured peers");
+
+    private final String description;
+}
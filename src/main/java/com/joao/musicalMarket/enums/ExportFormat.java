@@ -0,0 +1,14 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson"),
+    JSON("application/json");
+
+    private final String mediaType;
+}
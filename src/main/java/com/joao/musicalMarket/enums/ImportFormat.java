@@ -0,0 +1,27 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+import java.util.Optional;
+
+@Getter
+@AllArgsConstructor
+public enum ImportFormat {
+
+    CSV("text/csv"),
+    JSON("application/json");
+
+    private final String mediaType;
+
+    //the format of a request body, by its Content-Type (charset and other parameters are ignored)
+    public static Optional<ImportFormat> of(MediaType contentType) {
+        for (ImportFormat format : values()) {
+            if (MediaType.parseMediaType(format.mediaType).isCompatibleWith(contentType)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
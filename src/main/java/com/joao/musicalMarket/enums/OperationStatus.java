@@ -0,0 +1,15 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum OperationStatus {
+
+    PENDING("Accepted, not finished yet"),
+    SUCCEEDED("Applied, the result is the response the synchronous request would have returned"),
+    FAILED("Rejected or failed, with the status and message of the synchronous request's error");
+
+    private final String description;
+}
@@ -0,0 +1,9 @@
+package com.joao.musicalMarket.enums;
+
+//stock mutation endpoints behind the rate limiter, each one with its own buckets
+public enum RateLimitedEndpoint {
+
+    INCREMENT,
+    DECREMENT,
+    STOCK_BATCH
+}
@@ -0,0 +1,15 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//how the REST layer runs the blocking service and JDBC work of a request
+@Getter
+@AllArgsConstructor
+public enum RequestExecutionMode {
+
+    BLOCKING("On the Tomcat thread that received the request"),
+    ASYNC("On a bounded worker pool, the Tomcat thread is released while the request waits");
+
+    private final String description;
+}
@@ -0,0 +1,16 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockAdjustmentStatus {
+
+    APPLIED("Applied"),
+    NOT_FOUND("Instrument not found"),
+    MAX_EXCEEDED("Exceeds the max stock capacity"),
+    MIN_EXCEEDED("Exceeds the min stock capacity");
+
+    private final String description;
+}
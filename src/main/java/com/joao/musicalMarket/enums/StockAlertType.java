@@ -0,0 +1,14 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockAlertType {
+
+    LOW_STOCK("Quantity reached the low stock threshold"),
+    HIGH_STOCK("Quantity reached the high stock threshold");
+
+    private final String description;
+}
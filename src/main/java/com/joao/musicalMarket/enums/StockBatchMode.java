@@ -0,0 +1,14 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum StockBatchMode {
+
+    ATOMIC("All adjustments are applied, or none if one of them is rejected"),
+    BEST_EFFORT("Valid adjustments are applied, rejected ones are reported per item");
+
+    private final String description;
+}
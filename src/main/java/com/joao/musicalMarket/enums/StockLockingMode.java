@@ -0,0 +1,17 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//how increment/decrement protect the stock limits against concurrent requests
+@Getter
+@AllArgsConstructor
+public enum StockLockingMode {
+
+    ATOMIC("Single guarded UPDATE statement"),
+    OPTIMISTIC("Version check on save, retried on conflict"),
+    PESSIMISTIC("Row locked with SELECT ... FOR UPDATE"),
+    LEDGER("In-memory ledger with journal and write-behind to the database");
+
+    private final String description;
+}
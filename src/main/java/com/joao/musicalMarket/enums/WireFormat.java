@@ -0,0 +1,43 @@
+package com.joao.musicalMarket.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public enum WireFormat {
+
+    JSON("application/json", ""),
+    SMILE("application/x-jackson-smile", "-smile"),
+    CBOR("application/cbor", "-cbor");
+
+    private final String mediaType;
+    private final String eTagSuffix;
+
+    //the format the message converters answer with for an Accept header: the most specific and preferred
+    //media type decides, and a wildcard (or a missing or malformed header) gets JSON, the first converter
+    public static WireFormat negotiate(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            for (WireFormat format : values()) {
+                if (MediaType.parseMediaType(format.mediaType).isCompatibleWith(acceptedType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
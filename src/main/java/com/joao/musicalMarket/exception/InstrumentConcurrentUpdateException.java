@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InstrumentConcurrentUpdateException extends Exception {
+
+    public InstrumentConcurrentUpdateException(Long id, int attempts) {
+        super(String.format("Instrument with id %s could not be updated after %s attempts due to concurrent updates.", id, attempts));
+    }
+}
@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InstrumentImportUnreadableException extends Exception {
+
+    public InstrumentImportUnreadableException(int row, String reason) {
+        super(String.format("Import could not be read after row %s: %s", row, reason));
+    }
+}
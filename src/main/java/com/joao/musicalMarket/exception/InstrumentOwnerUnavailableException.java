@@ -0,0 +1,14 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//a stock mutation that couldn't be coordinated with the node owning the instrument. it may still have been
+//applied there, so unlike a conflict it isn't retried right away: the client retries later
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class InstrumentOwnerUnavailableException extends Exception {
+
+    public InstrumentOwnerUnavailableException(Long id, String owner) {
+        super(String.format("Instrument with id %s could not be updated, its owner node %s did not answer.", id, owner));
+    }
+}
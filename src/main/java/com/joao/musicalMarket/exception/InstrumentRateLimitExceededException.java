@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class InstrumentRateLimitExceededException extends Exception {
+
+    public InstrumentRateLimitExceededException(String endpoint, long retryAfterSeconds) {
+        super(String.format("Rate limit of %s exceeded, retry in %s seconds.", endpoint, retryAfterSeconds));
+    }
+}
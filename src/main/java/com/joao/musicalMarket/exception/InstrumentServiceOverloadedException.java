@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class InstrumentServiceOverloadedException extends Exception {
+
+    public InstrumentServiceOverloadedException(String reason, long retryAfterSeconds) {
+        super(String.format("Stock mutations are being shed (%s), retry in %s seconds.", reason, retryAfterSeconds));
+    }
+}
@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class OperationNotFoundException extends Exception {
+
+    public OperationNotFoundException(String id) {
+        super(String.format("Operation with id %s not found, its result may have expired.", id));
+    }
+}
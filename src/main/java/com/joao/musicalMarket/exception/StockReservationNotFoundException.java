@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class StockReservationNotFoundException extends Exception {
+
+    public StockReservationNotFoundException(Long id) {
+        super(String.format("Reservation with id %s not found, it may have been confirmed, released or expired.", id));
+    }
+}
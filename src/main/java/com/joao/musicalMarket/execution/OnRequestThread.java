@@ -0,0 +1,13 @@
+package com.joao.musicalMarket.execution;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//marks a handler method that doesn't wait on JDBC (its work already leaves the request thread: a stream, an SSE
+//subscription or a mutation handed to the operation pool), so the async execution mode doesn't queue it for a worker
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OnRequestThread {
+}
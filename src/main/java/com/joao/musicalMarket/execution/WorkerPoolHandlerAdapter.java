@@ -0,0 +1,73 @@
+package com.joao.musicalMarket.execution;
+
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CompletableFuture;
+
+//handler adapter of the async execution mode: the controller stays the blocking one, and each handler invocation
+//is handed to the worker pool and returned to Spring MVC as a CompletableFuture, so the Tomcat thread is released.
+//the arguments are resolved (and validated) on the Tomcat thread first, so an invalid request never queues
+public class WorkerPoolHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    private final ThreadPoolTaskExecutor workerPool;
+    private final long retryAfterSeconds;
+
+    public WorkerPoolHandlerAdapter(ThreadPoolTaskExecutor workerPool, long retryAfterSeconds) {
+        this.workerPool = workerPool;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        if (handlerMethod.hasMethodAnnotation(OnRequestThread.class)) {
+            return super.createInvocableHandlerMethod(handlerMethod);
+        }
+        return new WorkerPoolHandlerMethod(handlerMethod);
+    }
+
+    private class WorkerPoolHandlerMethod extends ServletInvocableHandlerMethod {
+
+        WorkerPoolHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+        }
+
+        //the request attributes go along, so ServletUriComponentsBuilder.fromCurrentRequest works on the worker;
+        //a full queue sheds the request with a 503 instead of letting it wait behind the JDBC pool
+        @Override
+        protected Object doInvoke(Object... args) throws Exception {
+            RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            try {
+                workerPool.execute(() -> {
+                    RequestContextHolder.setRequestAttributes(requestAttributes);
+                    try {
+                        result.complete(WorkerPoolHandlerMethod.super.doInvoke(args));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        RequestContextHolder.resetRequestAttributes();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                HttpServletResponse response = ((ServletRequestAttributes) requestAttributes).getResponse();
+                if (response != null) {
+                    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+                }
+                throw new InstrumentServiceOverloadedException(
+                        String.format("%d requests waiting for a worker", workerPool.getThreadPoolExecutor().getQueue().size()),
+                        retryAfterSeconds);
+            }
+            return result;
+        }
+    }
+}
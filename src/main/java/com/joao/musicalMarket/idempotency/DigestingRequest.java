@@ -0,0 +1,93 @@
+package com.joao.musicalMarket.idempotency;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+//digests the body while the handler reads it, so the fingerprint of a request costs no copy of its body
+//(the import endpoints stream theirs)
+class DigestingRequest extends HttpServletRequestWrapper {
+
+    private final MessageDigest digest;
+    private DigestingInputStream inputStream;
+
+    DigestingRequest(HttpServletRequest request) {
+        super(request);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new DigestingInputStream(super.getInputStream());
+        }
+        return inputStream;
+    }
+
+    //reads what the handler left of the body (all of it when it didn't read it); a body read as text
+    //through getReader isn't part of the fingerprint
+    String fingerprint() throws IOException {
+        try {
+            ServletInputStream remaining = getInputStream();
+            byte[] buffer = new byte[8192];
+            while (remaining.read(buffer) != -1) {
+                //digested by the stream
+            }
+        } catch (IllegalStateException e) {
+            //getReader was called
+        }
+        String query = getQueryString() == null ? "" : "?" + getQueryString();
+        return getMethod() + " " + getRequestURI() + query + " " + Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private class DigestingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private DigestingInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = delegate.read();
+            if (read != -1) {
+                digest.update((byte) read);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = delegate.read(buffer, offset, length);
+            if (read > 0) {
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
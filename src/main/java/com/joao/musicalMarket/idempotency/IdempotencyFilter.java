@@ -0,0 +1,167 @@
+package com.joao.musicalMarket.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.joao.musicalMarket.config.IdempotencyProperties;
+import com.joao.musicalMarket.config.RateLimitProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+
+//Idempotency-Key on the mutating endpoints of the instruments api, in front of both controllers: the response of
+//the first request with a key is recorded, and a retry of the same request (same method, uri and body) gets it
+//again without reaching a handler, the rate limiter or the database. keys are scoped by client (API key or remote
+//address) and kept in a bounded, expiring store. a retry while the first request runs gets a 409, the same key
+//with another request a 422. errors that a retry may not get again (409, 429, 5xx) aren't recorded.
+//in the async execution mode the response is written in the async dispatch, so the recording is finished there
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String API_PATH = "/api/v1/instruments";
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final String RECORDING_ATTRIBUTE = IdempotencyFilter.class.getName() + ".RECORDING";
+
+    private final IdempotencyProperties idempotencyProperties;
+    private final RateLimitProperties rateLimitProperties;
+    private final Cache<String, RecordedResponse> responses;
+
+    @Autowired
+    public IdempotencyFilter(IdempotencyProperties idempotencyProperties, RateLimitProperties rateLimitProperties) {
+        this.idempotencyProperties = idempotencyProperties;
+        this.rateLimitProperties = rateLimitProperties;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.getMaximumSize())
+                .expireAfterWrite(idempotencyProperties.getTimeToLive())
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !idempotencyProperties.isEnabled()
+                || !MUTATING_METHODS.contains(request.getMethod())
+                || !request.getRequestURI().startsWith(request.getContextPath() + API_PATH)
+                || request.getHeader(idempotencyProperties.getHeader()) == null;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            Recording recording = (Recording) request.getAttribute(RECORDING_ATTRIBUTE);
+            if (recording == null) {
+                filterChain.doFilter(request, response);
+            } else {
+                record(recording, request, response, filterChain);
+            }
+            return;
+        }
+        String idempotencyKey = request.getHeader(idempotencyProperties.getHeader());
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > idempotencyProperties.getMaxKeyLength()) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        String apiKey = request.getHeader(rateLimitProperties.getApiKeyHeader());
+        String key = (rateLimitProperties.isListedApiKey(apiKey) ? "key:" + apiKey : "address:" + request.getRemoteAddr()) + " " + idempotencyKey;
+
+        DigestingRequest digestingRequest = new DigestingRequest(request);
+        RecordedResponse inProgress = RecordedResponse.inProgress();
+        RecordedResponse recordedResponse = responses.asMap().putIfAbsent(key, inProgress);
+        if (recordedResponse != null) {
+            replay(digestingRequest, response, recordedResponse);
+            return;
+        }
+        Recording recording = new Recording(key, inProgress, digestingRequest, new ContentCachingResponseWrapper(response));
+        request.setAttribute(RECORDING_ATTRIBUTE, recording);
+        record(recording, digestingRequest, recording.response, filterChain);
+    }
+
+    //the response is recorded once the handler is done, in the first dispatch or in the async one
+    private void record(Recording recording, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (ServletException | IOException | RuntimeException e) {
+            responses.asMap().remove(recording.key, recording.inProgress);
+            throw e;
+        }
+        if (isAsyncStarted(request)) {
+            return;
+        }
+        ContentCachingResponseWrapper responseWrapper = recording.response;
+        int status = responseWrapper.getStatus();
+        if (isRecordable(status)) {
+            responses.put(recording.key, new RecordedResponse(recording.request.fingerprint(), status,
+                    responseWrapper.getContentType(), responseWrapper.getHeader(HttpHeaders.LOCATION),
+                    responseWrapper.getContentAsByteArray()));
+        } else {
+            responses.asMap().remove(recording.key, recording.inProgress);
+        }
+        responseWrapper.copyBodyToResponse();
+    }
+
+    private void replay(DigestingRequest request, HttpServletResponse response, RecordedResponse recordedResponse)
+            throws IOException {
+        if (recordedResponse.isInProgress()) {
+            response.sendError(HttpStatus.CONFLICT.value());
+            return;
+        }
+        if (!recordedResponse.getFingerprint().equals(request.fingerprint())) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value());
+            return;
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        //an error without a body was sent with sendError, the error page renders it again
+        if (recordedResponse.getStatus() >= 400 && recordedResponse.getBody().length == 0) {
+            response.sendError(recordedResponse.getStatus());
+            return;
+        }
+        response.setStatus(recordedResponse.getStatus());
+        if (recordedResponse.getContentType() != null) {
+            response.setContentType(recordedResponse.getContentType());
+        }
+        if (recordedResponse.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, recordedResponse.getLocation());
+        }
+        response.setContentLength(recordedResponse.getBody().length);
+        response.getOutputStream().write(recordedResponse.getBody());
+    }
+
+    //a conflict, a rate limit or a server error may not happen again, so their retries run the request
+    private static boolean isRecordable(int status) {
+        return status < 500 && status != HttpStatus.REQUEST_TIMEOUT.value() && status != HttpStatus.CONFLICT.value()
+                && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static class Recording {
+
+        private final String key;
+        private final RecordedResponse inProgress;
+        private final DigestingRequest request;
+        private final ContentCachingResponseWrapper response;
+
+        private Recording(String key, RecordedResponse inProgress, DigestingRequest request,
+                          ContentCachingResponseWrapper response) {
+            this.key = key;
+            this.inProgress = inProgress;
+            this.request = request;
+            this.response = response;
+        }
+    }
+}
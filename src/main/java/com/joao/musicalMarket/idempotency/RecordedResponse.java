@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//response of the first request sent with an idempotency key, replayed to the retries with the same request;
+//an entry without a fingerprint marks a first request that is still running
+@Getter
+@AllArgsConstructor
+class RecordedResponse {
+
+    //method, uri and body digest of the first request
+    private final String fingerprint;
+    private final int status;
+    private final String contentType;
+    private final String location;
+    private final byte[] body;
+
+    static RecordedResponse inProgress() {
+        return new RecordedResponse(null, 0, null, null, null);
+    }
+
+    boolean isInProgress() {
+        return fingerprint == null;
+    }
+}
@@ -0,0 +1,251 @@
+package com.joao.musicalMarket.ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+//append-only log of the accepted stock deltas, split in numbered segments:
+//every flush closes the current segment, and segments are deleted once their deltas are in the database.
+//each record is [instrument id (8 bytes)][delta (4 bytes)][crc32 of the first 12 bytes (4 bytes)],
+//so a record torn by a crash is detected and ignored on replay.
+//appends are group committed: one writer thread takes every record queued since its last write, writes them
+//together and forces them with a single fsync, so the disk flushes don't cap the mutations one by one.
+//the thread isn't a bean on purpose, like the pool of AsyncExecutionConfig
+public class StockJournal {
+
+    static final int RECORD_SIZE = 16;
+
+    private static final String SEGMENT_PREFIX = "stock-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private long currentSegment;
+    private FileChannel channel;
+
+    public StockJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        List<Long> segments = segments();
+        this.currentSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        this.writer = new Thread(this::writeQueued, "stock-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //completes once the record is on disk (forced, when fsync is enabled), or exceptionally with an
+    //UncheckedIOException. onDurable runs on the writer thread before that, under the lock of rotate,
+    //so whatever it records belongs to the segment the record was written to
+    public CompletableFuture<Void> append(long id, int delta, Runnable onDurable) {
+        Record record = new Record(id, delta, onDurable);
+        queue.add(record);
+        return record.written;
+    }
+
+    private void writeQueued() {
+        List<Record> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            int stop = batch.indexOf(Record.STOP);
+            if (stop >= 0) {
+                //records queued after close can't be written anymore
+                batch.subList(stop + 1, batch.size()).forEach(record -> record.written.completeExceptionally(
+                        new UncheckedIOException(new IOException("The stock journal is closed"))));
+                write(batch.subList(0, stop));
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    //a batch that failed is cut off the segment, so a replay doesn't apply deltas that were refused
+    private synchronized void write(List<Record> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = -1;
+        try {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                channel = FileChannel.open(segmentPath(currentSegment),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            start = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * batch.size());
+            for (Record record : batch) {
+                buffer.putLong(record.id).putInt(record.delta).putInt(checksum(record.id, record.delta));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            truncate(start);
+            UncheckedIOException failure = new UncheckedIOException("Could not append to the stock journal", e);
+            batch.forEach(record -> record.written.completeExceptionally(failure));
+            return;
+        }
+        batch.forEach(record -> record.onDurable.run());
+        batch.forEach(record -> record.written.complete(null));
+    }
+
+    private void truncate(long size) {
+        if (channel == null || size < 0) {
+            return;
+        }
+        try {
+            channel.truncate(size);
+        } catch (IOException e) {
+            //the checksums still catch a torn record at the end
+        }
+    }
+
+    //new segments must be numbered after the checkpoint, even when the old files are already deleted
+    public synchronized void startAfter(long checkpoint) {
+        currentSegment = Math.max(currentSegment, checkpoint + 1);
+    }
+
+    public synchronized boolean hasOpenSegment() {
+        return channel != null;
+    }
+
+    //closes the current segment and returns its number, the next append starts a new one
+    public synchronized long rotate() {
+        try {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close the stock journal segment", e);
+        }
+        return currentSegment++;
+    }
+
+    //sum of the deltas per instrument id in the segments after the given checkpoint
+    public Map<Long, Integer> readDeltasAfter(long checkpoint) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (long segment : segments()) {
+            if (segment > checkpoint) {
+                readSegment(segment, deltas);
+            }
+        }
+        return deltas;
+    }
+
+    public long lastSegment() {
+        List<Long> segments = segments();
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+    }
+
+    public synchronized void deleteSegmentsUpTo(long lastSegment) {
+        for (long segment : segments()) {
+            if (segment <= lastSegment) {
+                try {
+                    Files.deleteIfExists(segmentPath(segment));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not delete the stock journal segment " + segment, e);
+                }
+            }
+        }
+    }
+
+    //writes what is already queued, then closes the current segment
+    public void close() {
+        queue.add(Record.STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rotate();
+    }
+
+    private void readSegment(long segment, Map<Long, Integer> deltas) {
+        ByteBuffer content;
+        try {
+            content = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the stock journal segment " + segment, e);
+        }
+        while (content.remaining() >= RECORD_SIZE) {
+            long id = content.getLong();
+            int delta = content.getInt();
+            if (content.getInt() != checksum(id, delta)) {
+                //torn write at the end of a segment, nothing after it was acknowledged
+                break;
+            }
+            deltas.merge(id, delta, Integer::sum);
+        }
+    }
+
+    private List<Long> segments() {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                segments.add(Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the stock journal segments", e);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static class Record {
+
+        private static final Record STOP = new Record(0, 0, null);
+
+        private final long id;
+        private final int delta;
+        private final Runnable onDurable;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Record(long id, int delta, Runnable onDurable) {
+            this.id = id;
+            this.delta = delta;
+            this.onDurable = onDurable;
+        }
+    }
+
+    private static int checksum(long id, int delta) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(12).putLong(id).putInt(delta).array());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,376 @@
+package com.joao.musicalMarket.ledger;
+
+import com.joao.musicalMarket.config.StockProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.entity.LedgerCheckpoint;
+import com.joao.musicalMarket.entity.StockMovement;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.LedgerCheckpointRepository;
+import com.joao.musicalMarket.repository.StockHoldRepository;
+import com.joao.musicalMarket.repository.StockMovementRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//stock engine used by the LEDGER locking mode: quantities live in memory, every delta is admitted against
+//the min/max limits by a compare-and-set on its instrument's entry and acknowledged (and shown to the reads)
+//once the journal writer has group committed it. the coalesced deltas are written to the database in JDBC
+//batches on a schedule, in the same transaction as the stock movements of the flushed deltas.
+//no lock is shared by the instruments: the journal lock is only taken by its writer, once per group commit,
+//and by the flush
+@Slf4j
+@Component
+public class StockLedger {
+
+    private static final long CHECKPOINT_ID = 1L;
+    private static final String FLUSH_SQL = "UPDATE instrument SET quantity = quantity + ?, version = version + 1 WHERE id = ?";
+
+    private final InstrumentRepository instrumentRepository;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final StockHoldRepository stockHoldRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockJournal stockJournal;
+    private final ConcurrentMap<Long, LedgerEntry> entries = new ConcurrentHashMap<>();
+    //movements of the journaled deltas not flushed yet, guarded by the journal lock: added by the journal
+    //writer once a delta is durable, drained by the flush
+    private List<StockMovement> pendingMovements = new ArrayList<>();
+
+    @Autowired
+    public StockLedger(InstrumentRepository instrumentRepository,
+                       LedgerCheckpointRepository ledgerCheckpointRepository,
+                       StockMovementRepository stockMovementRepository,
+                       StockHoldRepository stockHoldRepository,
+                       JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       StockProperties stockProperties) {
+        this.instrumentRepository = instrumentRepository;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockHoldRepository = stockHoldRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        StockProperties.Ledger ledger = stockProperties.getLedger();
+        this.stockJournal = new StockJournal(Paths.get(ledger.getJournalDirectory()), ledger.isFsync());
+    }
+
+    //applies the journal segments that didn't reach the database before the last shutdown or crash
+    @PostConstruct
+    public void replay() {
+        long checkpoint = currentCheckpoint();
+        stockJournal.startAfter(checkpoint);
+        long lastSegment = stockJournal.lastSegment();
+        if (lastSegment <= checkpoint) {
+            stockJournal.deleteSegmentsUpTo(checkpoint);
+            return;
+        }
+        Map<Long, Integer> deltas = stockJournal.readDeltasAfter(checkpoint);
+        //the movements were only in memory, each instrument gets one with its replayed delta
+        transactionTemplate.executeWithoutResult(status -> {
+            writeToDatabase(deltas, Collections.emptyList(), lastSegment);
+            Instant now = Instant.now();
+            instrumentRepository.findAllById(deltas.keySet()).forEach(instrument -> stockMovementRepository.save(
+                    new StockMovement(null, instrument.getId(), deltas.get(instrument.getId()), instrument.getQuantity(), now)));
+        });
+        stockJournal.startAfter(lastSegment);
+        stockJournal.deleteSegmentsUpTo(lastSegment);
+        log.info("Replayed {} instrument stock deltas from the journal up to segment {}", deltas.size(), lastSegment);
+    }
+
+    public InstrumentDTO increment(Long id, int quantityToIncrement) throws InstrumentNotFoundException, InstrumentStockExceededException {
+        LedgerEntry entry = entry(id);
+        OptionalInt quantityAfterIncrement = adjust(id, entry, quantityToIncrement);
+        if (quantityAfterIncrement.isEmpty()) {
+            throw new InstrumentStockExceededException(id, quantityToIncrement);
+        }
+        return entry.toDTO(quantityAfterIncrement.getAsInt());
+    }
+
+    public InstrumentDTO decrement(Long id, int quantityToDecrement) throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+        LedgerEntry entry = entry(id);
+        OptionalInt quantityAfterDecrement = adjust(id, entry, -quantityToDecrement);
+        if (quantityAfterDecrement.isEmpty()) {
+            throw new InstrumentNegativeStockExceededException(id, quantityToDecrement);
+        }
+        return entry.toDTO(quantityAfterDecrement.getAsInt());
+    }
+
+    //held units count against min like in the database; they aren't journaled, the StockHold rows are
+    //their durable copy and an instrument loaded into the ledger starts with the sum of its holds.
+    //a hold is admitted by the same compare-and-set as the decrements, so neither can take units the other counted on
+    public void reserve(Long id, int quantityToReserve) throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+        LedgerEntry entry = entry(id);
+        if (!entry.reserve(quantityToReserve)) {
+            throw new InstrumentNegativeStockExceededException(id, quantityToReserve);
+        }
+    }
+
+    //called once the hold row is gone; an instrument that isn't tracked already left it out of its sum
+    public void release(Long id, int reservedQuantity) {
+        LedgerEntry entry = entries.get(id);
+        if (entry != null) {
+            entry.add(0, -reservedQuantity);
+        }
+    }
+
+    //sells held units: the quantity delta is journaled like a decrement's, without a min check.
+    //called after the hold row is deleted in the current transaction, so an instrument loaded here
+    //doesn't count the hold anymore
+    public InstrumentDTO confirm(Long id, int reservedQuantity) throws InstrumentNotFoundException {
+        int reservedDelta = entries.containsKey(id) ? -reservedQuantity : 0;
+        LedgerEntry entry = entry(id);
+        return entry.toDTO(add(id, entry, -reservedQuantity, reservedDelta));
+    }
+
+    //undoes a confirm whose transaction rolled back: the hold row is back, and its units are held again
+    public void unconfirm(Long id, int reservedQuantity) {
+        LedgerEntry entry = entries.get(id);
+        if (entry != null) {
+            add(id, entry, reservedQuantity, reservedQuantity);
+        }
+    }
+
+    //the database lags behind the ledger until the next flush, so reads take the acknowledged quantity from here
+    public void overlay(InstrumentDTO instrumentDTO) {
+        LedgerEntry entry = entries.get(instrumentDTO.getId());
+        if (entry != null) {
+            instrumentDTO.setQuantity(entry.quantity());
+        }
+    }
+
+    //null when the instrument isn't tracked by the ledger
+    public Integer currentQuantity(Long id) {
+        LedgerEntry entry = entries.get(id);
+        return entry != null ? entry.quantity() : null;
+    }
+
+    //undoes an acknowledged delta without checking the limits (used to roll back atomic stock batches)
+    public void revert(Long id, int delta) {
+        LedgerEntry entry = entries.get(id);
+        if (entry != null) {
+            add(id, entry, -delta, 0);
+        }
+    }
+
+    public void evict(Long id) {
+        entries.remove(id);
+    }
+
+    @Scheduled(fixedDelayString = "${instrument.stock.ledger.flush-interval-millis:500}")
+    public void flush() {
+        long segment;
+        Map<Long, Integer> deltas = new HashMap<>();
+        List<StockMovement> movements;
+        //rotating and draining under the journal lock makes the drained deltas match the closed segments exactly
+        synchronized (stockJournal) {
+            if (!stockJournal.hasOpenSegment()) {
+                return;
+            }
+            segment = stockJournal.rotate();
+            entries.forEach((id, entry) -> {
+                int delta = entry.pendingDelta.getAndSet(0);
+                if (delta != 0) {
+                    deltas.put(id, delta);
+                }
+            });
+            movements = pendingMovements;
+            pendingMovements = new ArrayList<>();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeToDatabase(deltas, movements, segment));
+        } catch (RuntimeException e) {
+            //the segment stays on disk, the deltas and movements go back to be written with the next flush
+            synchronized (stockJournal) {
+                deltas.forEach((id, delta) -> {
+                    LedgerEntry entry = entries.get(id);
+                    if (entry != null) {
+                        entry.pendingDelta.addAndGet(delta);
+                    }
+                });
+                pendingMovements.addAll(0, movements);
+            }
+            log.warn("Could not flush the instrument stock ledger, retrying on the next flush", e);
+            return;
+        }
+        //the deltas are committed, so they must not be queued again: a segment left behind is covered
+        //by the checkpoint, deleted by the next flush and skipped by a replay
+        try {
+            stockJournal.deleteSegmentsUpTo(segment);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete the flushed stock journal segments, deleting them on the next flush", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        stockJournal.close();
+    }
+
+    private LedgerEntry entry(Long id) throws InstrumentNotFoundException {
+        LedgerEntry entry = entries.get(id);
+        if (entry != null) {
+            return entry;
+        }
+        Instrument instrument = instrumentRepository.findById(id)
+                .orElseThrow(() -> new InstrumentNotFoundException(id));
+        LedgerEntry loadedEntry = new LedgerEntry(instrument, (int) stockHoldRepository.sumQuantity(id));
+        LedgerEntry concurrentlyLoadedEntry = entries.putIfAbsent(id, loadedEntry);
+        return concurrentlyLoadedEntry != null ? concurrentlyLoadedEntry : loadedEntry;
+    }
+
+    //empty when the limits refuse the delta, otherwise the quantity after it
+    private OptionalInt adjust(Long id, LedgerEntry entry, int delta) {
+        OptionalInt quantity = entry.tryAdd(delta);
+        if (quantity.isPresent()) {
+            journal(id, entry, delta, 0, quantity.getAsInt());
+        }
+        return quantity;
+    }
+
+    //without checking the limits; returns the new quantity
+    private int add(Long id, LedgerEntry entry, int quantityDelta, int reservedDelta) {
+        int quantity = entry.add(quantityDelta, reservedDelta);
+        journal(id, entry, quantityDelta, reservedDelta, quantity);
+        return quantity;
+    }
+
+    //waits for the group commit of an admitted delta: it is acknowledged and queued for the database only once
+    //its record is durable, and taken back out of the admitted stock when the journal couldn't write it.
+    //a failed write is a disk failure, the deltas admitted against it in the meantime aren't revisited
+    private void journal(Long id, LedgerEntry entry, int quantityDelta, int reservedDelta, int quantity) {
+        try {
+            stockJournal.append(id, quantityDelta, () -> {
+                entry.acknowledged.addAndGet(quantityDelta);
+                entry.pendingDelta.addAndGet(quantityDelta);
+                pendingMovements.add(new StockMovement(null, id, quantityDelta, quantity, Instant.now()));
+            }).join();
+        } catch (CompletionException e) {
+            entry.add(-quantityDelta, -reservedDelta);
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    //must run inside a transaction
+    private void writeToDatabase(Map<Long, Integer> deltas, List<StockMovement> movements, long segment) {
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> batchArgs.add(new Object[]{delta, id}));
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batchArgs);
+        }
+        stockMovementRepository.saveAll(movements);
+        ledgerCheckpointRepository.save(new LedgerCheckpoint(CHECKPOINT_ID, segment));
+    }
+
+    private long currentCheckpoint() {
+        return ledgerCheckpointRepository.findById(CHECKPOINT_ID)
+                .map(LedgerCheckpoint::getSegment)
+                .orElse(0L);
+    }
+
+    private static class LedgerEntry {
+
+        private final Instrument instrument;
+        //admitted quantity in the high 32 bits and reserved quantity in the low 32 bits, so the limits are
+        //checked against both and a change of either is a single compare-and-set
+        private final AtomicLong stock;
+        //the admitted deltas that are durable, what the reads see
+        private final AtomicInteger acknowledged;
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+
+        LedgerEntry(Instrument instrument, int reserved) {
+            this.instrument = instrument;
+            this.stock = new AtomicLong(pack(instrument.getQuantity(), reserved));
+            this.acknowledged = new AtomicInteger(instrument.getQuantity());
+        }
+
+        int quantity() {
+            return acknowledged.get();
+        }
+
+        //empty when an increment would exceed max or a decrement would take the unreserved units below min
+        OptionalInt tryAdd(int delta) {
+            long current;
+            int updated;
+            do {
+                current = stock.get();
+                updated = quantity(current) + delta;
+                if (delta > 0 ? updated > instrument.getMax() : updated - reserved(current) < instrument.getMin()) {
+                    return OptionalInt.empty();
+                }
+            } while (!stock.compareAndSet(current, pack(updated, reserved(current))));
+            return OptionalInt.of(updated);
+        }
+
+        boolean reserve(int quantityToReserve) {
+            long current;
+            do {
+                current = stock.get();
+                if (quantity(current) - reserved(current) - quantityToReserve < instrument.getMin()) {
+                    return false;
+                }
+            } while (!stock.compareAndSet(current, pack(quantity(current), reserved(current) + quantityToReserve)));
+            return true;
+        }
+
+        //moves both without checking the limits, returns the new quantity
+        int add(int quantityDelta, int reservedDelta) {
+            long current;
+            long updated;
+            do {
+                current = stock.get();
+                updated = pack(quantity(current) + quantityDelta, reserved(current) + reservedDelta);
+            } while (!stock.compareAndSet(current, updated));
+            return quantity(updated);
+        }
+
+        private static long pack(int quantity, int reserved) {
+            return ((long) quantity << 32) | (reserved & 0xFFFFFFFFL);
+        }
+
+        private static int quantity(long stock) {
+            return (int) (stock >> 32);
+        }
+
+        private static int reserved(long stock) {
+            return (int) stock;
+        }
+
+        InstrumentDTO toDTO(int currentQuantity) {
+            return InstrumentDTO.builder()
+                    .id(instrument.getId())
+                    .name(instrument.getName())
+                    .brand(instrument.getBrand())
+                    .max(instrument.getMax())
+                    .min(instrument.getMin())
+                    .quantity(currentQuantity)
+                    .type(instrument.getType())
+                    .build();
+        }
+    }
+}
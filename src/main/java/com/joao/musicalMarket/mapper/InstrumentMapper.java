@@ -3,6 +3,7 @@ package com.joao.musicalMarket.mapper;
 import com.joao.musicalMarket.dto.InstrumentDTO;
 import com.joao.musicalMarket.entity.Instrument;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 //interface used to transfer Instrument to InstrumentDAO
@@ -12,9 +13,13 @@ public interface InstrumentMapper {
 
     InstrumentMapper INSTANCE = Mappers.getMapper(InstrumentMapper.class);
 
+    @Mapping(target = "reserved", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Instrument toModel(InstrumentDTO instrumentDTO);
 
     InstrumentDTO toDTO(Instrument instrument);
 
+    InstrumentDTO copy(InstrumentDTO instrumentDTO);
+
 
 }
@@ -0,0 +1,25 @@
+package com.joao.musicalMarket.mapper;
+
+import com.joao.musicalMarket.dto.StockStatsDTO;
+import com.joao.musicalMarket.projection.BrandStockStats;
+import com.joao.musicalMarket.projection.StockStats;
+import com.joao.musicalMarket.projection.TypeStockStats;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.factory.Mappers;
+
+//the GROUP BY projections of InstrumentRepository to the responses of the stats endpoints
+@Mapper
+public interface StockStatsMapper {
+
+    StockStatsMapper INSTANCE = Mappers.getMapper(StockStatsMapper.class);
+
+    @Mapping(target = "group", ignore = true)
+    StockStatsDTO toDTO(StockStats stockStats);
+
+    @Mapping(source = "type", target = "group")
+    StockStatsDTO toTypeDTO(TypeStockStats typeStockStats);
+
+    @Mapping(source = "brand", target = "group")
+    StockStatsDTO toBrandDTO(BrandStockStats brandStockStats);
+}
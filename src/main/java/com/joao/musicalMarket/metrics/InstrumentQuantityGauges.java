@@ -0,0 +1,71 @@
+package com.joao.musicalMarket.metrics;
+
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//total quantity in stock per InstrumentType (instrument.stock.quantity): summed by the database once
+//at startup, then moved by the deltas InstrumentService reports, so a scrape never runs a query
+@Component
+public class InstrumentQuantityGauges {
+
+    static final String GAUGE_NAME = "instrument.stock.quantity";
+
+    private final InstrumentRepository instrumentRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<InstrumentType, AtomicLong> quantities = new EnumMap<>(InstrumentType.class);
+
+    @Autowired
+    public InstrumentQuantityGauges(InstrumentRepository instrumentRepository, MeterRegistry meterRegistry) {
+        this.instrumentRepository = instrumentRepository;
+        this.meterRegistry = meterRegistry;
+        for (InstrumentType type : InstrumentType.values()) {
+            quantities.put(type, new AtomicLong());
+        }
+    }
+
+    @PostConstruct
+    public void register() {
+        refresh();
+        quantities.forEach((type, quantity) -> Gauge.builder(GAUGE_NAME, quantity, AtomicLong::get)
+                .tag("type", type.name())
+                .register(meterRegistry));
+    }
+
+    //summed again by the database, when the quantities were also moved by other instances (see ClusterInvalidations);
+    //a type without instruments is back to 0
+    public void refresh() {
+        Map<InstrumentType, Long> sums = new EnumMap<>(InstrumentType.class);
+        for (Object[] typeQuantity : instrumentRepository.sumQuantityByType()) {
+            sums.put((InstrumentType) typeQuantity[0], ((Number) typeQuantity[1]).longValue());
+        }
+        quantities.forEach((type, quantity) -> quantity.set(sums.getOrDefault(type, 0L)));
+    }
+
+    //inside a transaction the delta is applied after the commit, a rolled back change never reaches the gauge
+    public void add(InstrumentType type, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    quantities.get(type).addAndGet(delta);
+                }
+            });
+        } else {
+            quantities.get(type).addAndGet(delta);
+        }
+    }
+}
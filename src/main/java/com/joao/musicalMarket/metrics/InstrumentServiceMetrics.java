@@ -0,0 +1,73 @@
+package com.joao.musicalMarket.metrics;
+
+import com.joao.musicalMarket.exception.InstrumentAlreadyRegisteredException;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//times every public InstrumentService method (instrument.service, with a percentile histogram for p99)
+//and counts the domain exceptions they throw (instrument.exceptions), both scraped from /actuator/prometheus
+@Aspect
+@Component
+public class InstrumentServiceMetrics {
+
+    static final String TIMER_NAME = "instrument.service";
+    static final String EXCEPTION_COUNTER_NAME = "instrument.exceptions";
+
+    private static final String NO_EXCEPTION = "none";
+    private static final List<Class<? extends Exception>> DOMAIN_EXCEPTIONS = List.of(
+            InstrumentStockExceededException.class,
+            InstrumentNegativeStockExceededException.class,
+            InstrumentNotFoundException.class,
+            InstrumentAlreadyRegisteredException.class,
+            InstrumentConcurrentUpdateException.class,
+            InstrumentOwnerUnavailableException.class);
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public InstrumentServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        //registered up front, so the rejection rates start at 0 instead of being missing
+        DOMAIN_EXCEPTIONS.forEach(this::exceptionCounter);
+    }
+
+    @Around("execution(public * com.joao.musicalMarket.service.InstrumentService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = NO_EXCEPTION;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            if (DOMAIN_EXCEPTIONS.contains(e.getClass())) {
+                exceptionCounter(e.getClass()).increment();
+            }
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(TIMER_NAME)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private Counter exceptionCounter(Class<?> exceptionClass) {
+        return Counter.builder(EXCEPTION_COUNTER_NAME)
+                .tag("exception", exceptionClass.getSimpleName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,48 @@
+package com.joao.musicalMarket.movement;
+
+import com.joao.musicalMarket.entity.StockMovement;
+import com.joao.musicalMarket.entity.StockSnapshot;
+import com.joao.musicalMarket.repository.StockMovementRepository;
+import com.joao.musicalMarket.repository.StockSnapshotRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+//history of the stock changes: every change appends a StockMovement in its own transaction, and the quantity
+//at a past time is the nearest snapshot before it plus the deltas between the snapshot and that time
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockMovementLog {
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+
+    //must be called inside the transaction of the change; the insert is sent at flush,
+    //in the same JDBC batch as the other movements of the transaction
+    public void record(Long instrumentId, int delta, int quantity) {
+        stockMovementRepository.save(new StockMovement(null, instrumentId, delta, quantity, Instant.now()));
+    }
+
+    public void recordAll(List<StockMovement> movements) {
+        stockMovementRepository.saveAll(movements);
+    }
+
+    //empty when the instrument has no history up to the given time
+    @Transactional(readOnly = true)
+    public OptionalInt quantityAt(Long instrumentId, Instant at) {
+        Optional<StockSnapshot> snapshot = stockSnapshotRepository
+                .findFirstByInstrumentIdAndTakenAtLessThanEqualOrderByTakenAtDesc(instrumentId, at);
+        if (snapshot.isEmpty() && !stockMovementRepository.existsByInstrumentIdAndCreatedAtLessThanEqual(instrumentId, at)) {
+            return OptionalInt.empty();
+        }
+        Instant replayFrom = snapshot.map(StockSnapshot::getTakenAt).orElse(Instant.EPOCH);
+        int snapshotQuantity = snapshot.map(StockSnapshot::getQuantity).orElse(0);
+        return OptionalInt.of(snapshotQuantity + (int) stockMovementRepository.sumDeltas(instrumentId, replayFrom, at));
+    }
+}
@@ -0,0 +1,93 @@
+package com.joao.musicalMarket.movement;
+
+import com.joao.musicalMarket.config.MovementProperties;
+import com.joao.musicalMarket.entity.StockSnapshot;
+import com.joao.musicalMarket.repository.StockMovementRepository;
+import com.joao.musicalMarket.repository.StockSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//periodically sums the movements since the last snapshots into new ones, so a point in time query
+//replays at most one interval of movements, and deletes the movements older than the retention
+@Slf4j
+@Component
+public class StockSnapshotter {
+
+    //instrument ids per IN list when loading the previous snapshots
+    static final int SNAPSHOT_CHUNK_SIZE = 1000;
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final MovementProperties movementProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public StockSnapshotter(StockMovementRepository stockMovementRepository,
+                            StockSnapshotRepository stockSnapshotRepository,
+                            MovementProperties movementProperties,
+                            PlatformTransactionManager transactionManager) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.movementProperties = movementProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${instrument.movements.snapshot-interval-millis:3600000}",
+            initialDelayString = "${instrument.movements.snapshot-interval-millis:3600000}")
+    public void snapshotAndCompact() {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(movementProperties.getSnapshotLag());
+        Integer snapshots = transactionTemplate.execute(status -> {
+            Instant previousCutoff = stockSnapshotRepository.findLastTakenAt().orElse(Instant.EPOCH);
+            return cutoff.isAfter(previousCutoff) ? snapshot(previousCutoff, cutoff) : null;
+        });
+        if (snapshots == null) {
+            return;
+        }
+        //only movements covered by a snapshot can go
+        Instant retentionCutoff = now.minus(movementProperties.getRetention());
+        int compacted = compact(retentionCutoff.isBefore(cutoff) ? retentionCutoff : cutoff);
+        log.info("Took {} stock snapshots up to {} and compacted {} stock movements", snapshots, cutoff, compacted);
+    }
+
+    //one transaction per chunk, so the stock changes appending movements meanwhile never wait for the whole backlog
+    private int compact(Instant until) {
+        int chunkSize = movementProperties.getCompactionChunkSize();
+        int compacted = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> stockMovementRepository.deleteUpTo(until, chunkSize));
+            compacted += deleted;
+        } while (deleted == chunkSize);
+        return compacted;
+    }
+
+    //the instruments that didn't move keep their previous snapshot
+    private int snapshot(Instant previousCutoff, Instant cutoff) {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Object[] instrumentDelta : stockMovementRepository.sumDeltasByInstrument(previousCutoff, cutoff)) {
+            deltas.put((Long) instrumentDelta[0], ((Number) instrumentDelta[1]).longValue());
+        }
+        Map<Long, Integer> previousQuantities = new HashMap<>();
+        List<Long> instrumentIds = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < instrumentIds.size(); from += SNAPSHOT_CHUNK_SIZE) {
+            stockSnapshotRepository.findLatestByInstrumentIdIn(instrumentIds.subList(from, Math.min(from + SNAPSHOT_CHUNK_SIZE, instrumentIds.size())))
+                    .forEach(snapshot -> previousQuantities.put(snapshot.getInstrumentId(), snapshot.getQuantity()));
+        }
+        List<StockSnapshot> snapshots = new ArrayList<>(deltas.size());
+        deltas.forEach((instrumentId, delta) -> snapshots.add(new StockSnapshot(null, instrumentId,
+                previousQuantities.getOrDefault(instrumentId, 0) + delta.intValue(), cutoff)));
+        stockSnapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+}
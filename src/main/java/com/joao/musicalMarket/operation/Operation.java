@@ -0,0 +1,72 @@
+package com.joao.musicalMarket.operation;
+
+import com.joao.musicalMarket.dto.OperationDTO;
+import com.joao.musicalMarket.enums.OperationStatus;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+//a mutation accepted by the OperationExecutor, completed by its worker thread
+@Slf4j
+class Operation {
+
+    @Getter
+    private final String id;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    Operation(String id) {
+        this.id = id;
+    }
+
+    void run(Callable<?> mutation) {
+        try {
+            result.complete(mutation.call());
+        } catch (Exception e) {
+            //the checked ones are the rejections of the service, an unexpected one has nobody to report it to
+            if (e instanceof RuntimeException) {
+                log.error("Operation {} failed", id, e);
+            }
+            result.completeExceptionally(e);
+        }
+    }
+
+    boolean isDone() {
+        return result.isDone();
+    }
+
+    //a new future on each call, the caller may complete it (e.g. on a timeout) without touching the result
+    CompletableFuture<Void> done() {
+        return result.handle((value, failure) -> null);
+    }
+
+    //an error is reported with the status of its @ResponseStatus, like the synchronous request would get it;
+    //the message of an unexpected one isn't exposed
+    OperationDTO toDTO() {
+        OperationDTO.OperationDTOBuilder operationDTO = OperationDTO.builder().id(id);
+        if (!result.isDone()) {
+            return operationDTO.status(OperationStatus.PENDING).build();
+        }
+        try {
+            return operationDTO.status(OperationStatus.SUCCEEDED).result(result.join()).build();
+        } catch (CompletionException e) {
+            Throwable failure = e.getCause();
+            ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(failure.getClass(), ResponseStatus.class);
+            if (responseStatus == null) {
+                return operationDTO.status(OperationStatus.FAILED)
+                        .errorStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                        .error(HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase())
+                        .build();
+            }
+            return operationDTO.status(OperationStatus.FAILED)
+                    .errorStatus(responseStatus.code().value())
+                    .error(failure.getMessage())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.joao.musicalMarket.operation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.joao.musicalMarket.config.OperationProperties;
+import com.joao.musicalMarket.dto.OperationDTO;
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
+import com.joao.musicalMarket.exception.OperationNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+//runs the stock mutations accepted with Prefer: respond-async: the request gets its 202 at once and the mutation
+//waits in a bounded queue for one of the pool threads, so a burst is absorbed by the queue instead of by
+//request threads. the operations are kept in memory, a finished one for the retention after it finished.
+//the pool isn't a bean on purpose, like the one of AsyncExecutionConfig
+@Slf4j
+@Component
+public class OperationExecutor implements DisposableBean {
+
+    private final OperationProperties operationProperties;
+    private final Cache<String, Operation> operations;
+    private final ThreadPoolTaskExecutor operationPool = new ThreadPoolTaskExecutor();
+
+    @Autowired
+    public OperationExecutor(OperationProperties operationProperties) {
+        this.operationProperties = operationProperties;
+        //every queued or running operation fits, the finished ones are dropped first by their age
+        this.operations = Caffeine.newBuilder()
+                .maximumSize((long) operationProperties.getQueueCapacity() * 2 + operationProperties.getPoolSize())
+                .expireAfterWrite(operationProperties.getRetention())
+                .build();
+        operationPool.setCorePoolSize(operationProperties.getPoolSize());
+        operationPool.setMaxPoolSize(operationProperties.getPoolSize());
+        operationPool.setQueueCapacity(operationProperties.getQueueCapacity());
+        operationPool.setThreadNamePrefix("instrument-operation-");
+        operationPool.initialize();
+    }
+
+    //the operation is written again when it finishes, so its retention starts then
+    public OperationDTO submit(Callable<?> mutation) throws InstrumentServiceOverloadedException {
+        Operation operation = new Operation(UUID.randomUUID().toString());
+        operations.put(operation.getId(), operation);
+        try {
+            operationPool.execute(() -> {
+                operation.run(mutation);
+                operations.put(operation.getId(), operation);
+            });
+        } catch (TaskRejectedException e) {
+            operations.invalidate(operation.getId());
+            long retryAfterSeconds = Math.max(1, operationProperties.getRetryAfter().getSeconds());
+            throw new InstrumentServiceOverloadedException(
+                    String.format("%d operations queued", operationProperties.getQueueCapacity()), retryAfterSeconds);
+        }
+        return operation.toDTO();
+    }
+
+    public OperationDTO find(String id) throws OperationNotFoundException {
+        return get(id).toDTO();
+    }
+
+    //long poll: completes when the operation finishes or the wait (capped by maxWait) runs out, whichever is first;
+    //returned to Spring MVC as an async result, so no request thread waits
+    public CompletableFuture<OperationDTO> await(String id, Duration wait) throws OperationNotFoundException {
+        Operation operation = get(id);
+        long waitMillis = Math.min(Math.max(wait.toMillis(), 0), operationProperties.getMaxWait().toMillis());
+        if (operation.isDone() || waitMillis == 0) {
+            return CompletableFuture.completedFuture(operation.toDTO());
+        }
+        return operation.done()
+                .completeOnTimeout(null, waitMillis, TimeUnit.MILLISECONDS)
+                .thenApply(ignored -> operation.toDTO());
+    }
+
+    private Operation get(String id) throws OperationNotFoundException {
+        Operation operation = operations.getIfPresent(id);
+        if (operation == null) {
+            throw new OperationNotFoundException(id);
+        }
+        return operation;
+    }
+
+    @Override
+    public void destroy() {
+        log.info("Stopping the operation pool, {} operations not started are dropped", operationPool.getThreadPoolExecutor().getQueue().size());
+        operationPool.shutdown();
+    }
+}
@@ -0,0 +1,6 @@
+package com.joao.musicalMarket.projection;
+
+public interface BrandStockStats extends StockStats {
+
+    String getBrand();
+}
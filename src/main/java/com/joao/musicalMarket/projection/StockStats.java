@@ -0,0 +1,23 @@
+package com.joao.musicalMarket.projection;
+
+//aggregates of a group of instruments, one row of a GROUP BY of InstrumentRepository. an interface projection:
+//Spring Data backs it with the row of the query by the aliases, no entity is loaded or mapped
+public interface StockStats {
+
+    long getInstruments();
+
+    long getTotalQuantity();
+
+    long getTotalMax();
+
+    //instruments whose quantity is under their min
+    long getBelowMin();
+
+    //mean quantity/max of the instruments, null when none has a max above 0
+    Double getAverageFillRatio();
+
+    //quantity/max of the group as a whole, so the big instruments weigh more than in the average
+    default Double getFillRatio() {
+        return getTotalMax() == 0 ? null : (double) getTotalQuantity() / getTotalMax();
+    }
+}
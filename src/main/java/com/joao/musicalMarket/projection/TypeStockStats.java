@@ -0,0 +1,8 @@
+package com.joao.musicalMarket.projection;
+
+import com.joao.musicalMarket.enums.InstrumentType;
+
+public interface TypeStockStats extends StockStats {
+
+    InstrumentType getType();
+}
@@ -0,0 +1,80 @@
+package com.joao.musicalMarket.ratelimit;
+
+import com.joao.musicalMarket.config.RateLimitProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//adaptive load shedding of the stock mutations: a new one is refused while too many are in flight or while the
+//connection pool makes requests wait too long. the pool wait is the mean acquire time of the Hikari timer over
+//the last sample, taken on a schedule, so a decision only reads a volatile and updates an atomic counter
+@Component
+public class LoadShedder {
+
+    static final String POOL_ACQUIRE_TIMER = "hikaricp.connections.acquire";
+    static final String POOL_PENDING_GAUGE = "hikaricp.connections.pending";
+    static final String IN_FLIGHT_GAUGE = "instrument.mutations.in_flight";
+
+    private final RateLimitProperties rateLimitProperties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long poolWaitNanos;
+    //only touched by the sampling thread
+    private long lastAcquireCount;
+    private double lastAcquireNanos;
+
+    @Autowired
+    public LoadShedder(RateLimitProperties rateLimitProperties, MeterRegistry meterRegistry) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(IN_FLIGHT_GAUGE, inFlight, AtomicInteger::get)
+                .description("Stock mutations being processed")
+                .register(meterRegistry);
+    }
+
+    //null when the mutation may start, otherwise why it is shed; a started mutation must call finished()
+    public String tryStart() {
+        RateLimitProperties.Shedding shedding = rateLimitProperties.getShedding();
+        if (shedding.isEnabled() && poolWaitNanos > shedding.getMaxPoolWait().toNanos()) {
+            return String.format("connection pool wait of %d ms", TimeUnit.NANOSECONDS.toMillis(poolWaitNanos));
+        }
+        if (inFlight.incrementAndGet() > shedding.getMaxInFlight() && shedding.isEnabled()) {
+            inFlight.decrementAndGet();
+            return String.format("more than %d mutations in flight", shedding.getMaxInFlight());
+        }
+        return null;
+    }
+
+    public void finished() {
+        inFlight.decrementAndGet();
+    }
+
+    //when no connection was handed out during the sample but threads are waiting for one, the pool is stuck
+    //and all of them have waited at least the whole sample
+    @Scheduled(fixedRateString = "${instrument.rate-limit.shedding.sample-interval-millis:1000}")
+    public void samplePoolWait() {
+        Timer acquireTimer = meterRegistry.find(POOL_ACQUIRE_TIMER).timer();
+        if (acquireTimer == null) {
+            return;
+        }
+        long acquireCount = acquireTimer.count();
+        double acquireNanos = acquireTimer.totalTime(TimeUnit.NANOSECONDS);
+        long acquired = acquireCount - lastAcquireCount;
+        if (acquired > 0) {
+            poolWaitNanos = (long) ((acquireNanos - lastAcquireNanos) / acquired);
+        } else {
+            Gauge pending = meterRegistry.find(POOL_PENDING_GAUGE).gauge();
+            poolWaitNanos = pending != null && pending.value() > 0
+                    ? TimeUnit.MILLISECONDS.toNanos(rateLimitProperties.getShedding().getSampleIntervalMillis())
+                    : 0;
+        }
+        lastAcquireCount = acquireCount;
+        lastAcquireNanos = acquireNanos;
+    }
+}
@@ -0,0 +1,90 @@
+package com.joao.musicalMarket.ratelimit;
+
+import com.joao.musicalMarket.config.RateLimitProperties;
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
+import com.joao.musicalMarket.exception.InstrumentRateLimitExceededException;
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+//checks the @RateLimited handlers before they run: a 429 when the client's bucket
+//of the endpoint is empty, a 503 when the LoadShedder refuses new mutations, both with Retry-After.
+//an async mutation stays in flight until its async dispatch completes
+@Component
+public class RateLimitInterceptor implements AsyncHandlerInterceptor {
+
+    static final String REJECTED_COUNTER_NAME = "instrument.requests.rejected";
+
+    private static final String IN_FLIGHT_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".IN_FLIGHT";
+
+    private final RateLimitProperties rateLimitProperties;
+    private final RateLimiter rateLimiter;
+    private final LoadShedder loadShedder;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public RateLimitInterceptor(RateLimitProperties rateLimitProperties, RateLimiter rateLimiter,
+                                LoadShedder loadShedder, MeterRegistry meterRegistry) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.rateLimiter = rateLimiter;
+        this.loadShedder = loadShedder;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InstrumentRateLimitExceededException, InstrumentServiceOverloadedException {
+        if (!rateLimitProperties.isEnabled() || request.getDispatcherType() == DispatcherType.ASYNC
+                || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        RateLimited rateLimited = ((HandlerMethod) handler).getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        RateLimitedEndpoint endpoint = rateLimited.value();
+
+        //behind the load balancer the remote address comes from X-Forwarded-For (server.forward-headers-strategy)
+        String apiKey = request.getHeader(rateLimitProperties.getApiKeyHeader());
+        long waitNanos = rateLimitProperties.isListedApiKey(apiKey)
+                ? rateLimiter.tryAcquire(apiKey, true, endpoint)
+                : rateLimiter.tryAcquire(request.getRemoteAddr(), false, endpoint);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            reject(response, endpoint, "rate_limited", retryAfterSeconds);
+            throw new InstrumentRateLimitExceededException(endpoint.name(), retryAfterSeconds);
+        }
+
+        String shedReason = loadShedder.tryStart();
+        if (shedReason != null) {
+            long retryAfterSeconds = Math.max(1, rateLimitProperties.getShedding().getRetryAfter().getSeconds());
+            reject(response, endpoint, "shed", retryAfterSeconds);
+            throw new InstrumentServiceOverloadedException(shedReason, retryAfterSeconds);
+        }
+        request.setAttribute(IN_FLIGHT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(IN_FLIGHT_ATTRIBUTE) != null) {
+            request.removeAttribute(IN_FLIGHT_ATTRIBUTE);
+            loadShedder.finished();
+        }
+    }
+
+    //the header survives the sendError of the @ResponseStatus exception
+    private void reject(HttpServletResponse response, RateLimitedEndpoint endpoint, String reason, long retryAfterSeconds) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        meterRegistry.counter(REJECTED_COUNTER_NAME, "endpoint", endpoint.name(), "reason", reason).increment();
+    }
+}
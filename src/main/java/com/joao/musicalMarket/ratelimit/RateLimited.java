@@ -0,0 +1,16 @@
+package com.joao.musicalMarket.ratelimit;
+
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//marks a handler method checked by RateLimitInterceptor: load shedding first, then the client's bucket of the endpoint
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    RateLimitedEndpoint value();
+}
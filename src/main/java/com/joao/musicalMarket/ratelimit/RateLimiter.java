@@ -0,0 +1,53 @@
+package com.joao.musicalMarket.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.joao.musicalMarket.config.RateLimitProperties;
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+//one token bucket per client and endpoint. the buckets live in a Caffeine cache that drops the idle ones,
+//so clients identified by remote address don't grow it forever; an existing bucket is read without locking
+@Component
+public class RateLimiter {
+
+    private final RateLimitProperties rateLimitProperties;
+    private final Cache<BucketKey, TokenBucket> buckets;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties rateLimitProperties) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(rateLimitProperties.getBucketIdleTimeout())
+                .build();
+    }
+
+    //0 when the request is accepted, otherwise the nanos until the client's bucket has a token again
+    //an apiKey client is one of the listed keys
+    public long tryAcquire(String client, boolean apiKey, RateLimitedEndpoint endpoint) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(new BucketKey(client, apiKey, endpoint), key -> {
+            RateLimitProperties.Limit limit = limit(client, apiKey, endpoint);
+            return new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond(), now);
+        });
+        return bucket.tryAcquire(now);
+    }
+
+    private RateLimitProperties.Limit limit(String client, boolean apiKey, RateLimitedEndpoint endpoint) {
+        if (apiKey) {
+            return rateLimitProperties.getApiKeys().get(client);
+        }
+        return rateLimitProperties.getEndpoints().getOrDefault(endpoint, rateLimitProperties.getDefaultLimit());
+    }
+
+    //an API key and an address never share a bucket
+    @Value
+    private static class BucketKey {
+
+        String client;
+        boolean apiKey;
+        RateLimitedEndpoint endpoint;
+    }
+}
@@ -0,0 +1,36 @@
+package com.joao.musicalMarket.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//token bucket kept as a single timestamp (the generic cell rate algorithm): the time at which the bucket will be
+//full again. a request takes one token by moving it one refill interval forward, and is rejected when that would
+//put it further than the capacity ahead of now. taking a token is one compare-and-set, no lock is involved
+public class TokenBucket {
+
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.refillIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+        this.burstNanos = refillIntervalNanos * Math.max(capacity, 1);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    //0 when a token was taken, otherwise how long (in nanos) until one is available
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            //an idle bucket is full: its timestamp is in the past and starts again from now
+            long start = current - nowNanos < 0 ? nowNanos : current;
+            long next = start + refillIntervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+//Criteria queries for the instrument search: only the filters that are set become predicates,
+//so a brand or type filter can be served by its index instead of a full scan
+@Repository
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class InstrumentFilterRepository {
+
+    private final EntityManager entityManager;
+
+    //keyset page ordered by id, like InstrumentRepository.findByIdGreaterThanOrderByIdAsc
+    public List<Instrument> findByFilter(InstrumentFilterDTO filter, long afterId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Instrument> query = criteriaBuilder.createQuery(Instrument.class);
+        Root<Instrument> instrument = query.from(Instrument.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(criteriaBuilder.greaterThan(instrument.<Long>get("id"), afterId));
+        if (filter.getBrand() != null) {
+            predicates.add(criteriaBuilder.equal(instrument.get("brand"), filter.getBrand()));
+        }
+        if (filter.getType() != null) {
+            predicates.add(criteriaBuilder.equal(instrument.get("type"), filter.getType()));
+        }
+        if (filter.getMaxQuantity() != null) {
+            predicates.add(criteriaBuilder.le(instrument.<Integer>get("quantity"), filter.getMaxQuantity()));
+        }
+        if (filter.getLowStockMargin() != null) {
+            predicates.add(criteriaBuilder.lessThan(instrument.<Integer>get("quantity"),
+                    criteriaBuilder.sum(instrument.<Integer>get("min"), filter.getLowStockMargin())));
+        }
+
+        query.select(instrument)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(instrument.<Long>get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
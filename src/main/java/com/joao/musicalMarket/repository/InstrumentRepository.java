@@ -1,15 +1,118 @@
 package com.joao.musicalMarket.repository;
 
 import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.projection.BrandStockStats;
+import com.joao.musicalMarket.projection.StockStats;
+import com.joao.musicalMarket.projection.TypeStockStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 //JpaRepository have a lot of DB methods
 public interface InstrumentRepository extends JpaRepository<Instrument, Long> {
 
+    //select list of the StockStats projections, the quoted aliases keep the case of its getters
+    String STOCK_STATS_COLUMNS = "COUNT(*) AS \"instruments\", " +
+            "COALESCE(SUM(quantity), 0) AS \"totalQuantity\", " +
+            "COALESCE(SUM(max), 0) AS \"totalMax\", " +
+            "COALESCE(SUM(CASE WHEN quantity < min THEN 1 ELSE 0 END), 0) AS \"belowMin\", " +
+            "AVG(CAST(quantity AS DOUBLE) / NULLIF(max, 0)) AS \"averageFillRatio\"";
+
     //with optional we can use SECURITY methods
     //(verify if instrument is empty, if exists, etc)
     Optional<Instrument> findByName(String name);
 
+    //set-based duplicate check of the bulk import, a single query for many names
+    @Query("SELECT i.name FROM Instrument i WHERE i.name IN :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    //keyset page: seeks the primary key index after the last id of the previous page
+    List<Instrument> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    //[type, sum of quantity] rows, used once at startup by the per-type quantity gauges
+    @Query("SELECT i.type, SUM(i.quantity) FROM Instrument i GROUP BY i.type")
+    List<Object[]> sumQuantityByType();
+
+    //aggregates of the stats endpoints, computed by the database: one row per group instead of every instrument
+    @Query(value = "SELECT " + STOCK_STATS_COLUMNS + " FROM instrument", nativeQuery = true)
+    StockStats stockStats();
+
+    @Query(value = "SELECT type AS \"type\", " + STOCK_STATS_COLUMNS + " FROM instrument GROUP BY type ORDER BY type",
+            nativeQuery = true)
+    List<TypeStockStats> stockStatsByType();
+
+    //served by idx_instrument_brand
+    @Query(value = "SELECT brand AS \"brand\", " + STOCK_STATS_COLUMNS + " FROM instrument GROUP BY brand ORDER BY brand",
+            nativeQuery = true)
+    List<BrandStockStats> stockStatsByBrand();
+
+    //offset page without the count query of a Page
+    Slice<Instrument> findAllBy(Pageable pageable);
+
+    //database cursor for the export, must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    Stream<Instrument> streamAllByOrderByIdAsc();
+
+    //guarded updates: the stock limit is checked in the WHERE clause, so the check and the write
+    //happen in the same statement and concurrent requests can't overwrite each other
+    //(returns 0 when the instrument doesn't exist or the limit would be exceeded). the new row is read
+    //back in the same transaction: a data change delta table (SELECT * FROM FINAL TABLE (UPDATE ...))
+    //would return it from this statement, but H2 1.4.200 skips the update of some of its executions
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE instrument SET quantity = quantity + :quantity, version = version + 1 " +
+            "WHERE id = :id AND quantity + :quantity <= max", nativeQuery = true)
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE instrument SET quantity = quantity - :quantity, version = version + 1 " +
+            "WHERE id = :id AND quantity - reserved - :quantity >= min", nativeQuery = true)
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    //merged delta of a combined batch, whose operations were checked against the row of this version;
+    //returns 0 when another write moved the version in between
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE instrument SET quantity = quantity + :delta, version = version + 1 " +
+            "WHERE id = :id AND version = :version", nativeQuery = true)
+    int addQuantityIfVersion(@Param("id") Long id, @Param("delta") int delta, @Param("version") long version);
+
+    //a hold takes units out of what a decrement can use, with the same guard as decrementQuantity;
+    //the version moves so an optimistic decrement that read the old reserved quantity fails
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE instrument SET reserved = reserved + :quantity, version = version + 1 " +
+            "WHERE id = :id AND quantity - reserved - :quantity >= min", nativeQuery = true)
+    int reserveQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    //sells the held units: they leave the quantity and the reserved quantity together, min was checked by the hold
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE instrument SET quantity = quantity - :quantity, reserved = reserved - :quantity, " +
+            "version = version + 1 WHERE id = :id", nativeQuery = true)
+    int confirmReserved(@Param("id") Long id, @Param("quantity") int quantity);
+
+    //a single statement that deletes the row and returns it (H2 data change delta table),
+    //empty when there was no instrument with this id
+    @Transactional
+    @Query(value = "SELECT * FROM OLD TABLE (DELETE FROM instrument WHERE id = :id)", nativeQuery = true)
+    Optional<Instrument> deleteReturningById(@Param("id") Long id);
+
+    //SELECT ... FOR UPDATE, used by the pessimistic locking mode
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Instrument i WHERE i.id = :id")
+    Optional<Instrument> findByIdForUpdate(@Param("id") Long id);
+
 }
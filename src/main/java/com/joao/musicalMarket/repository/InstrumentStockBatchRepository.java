@@ -0,0 +1,48 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.dto.StockAdjustmentDTO;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+//stock adjustments sent to the database as a single JDBC batch
+@Repository
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class InstrumentStockBatchRepository {
+
+    //same guard as InstrumentRepository.incrementQuantity/decrementQuantity, chosen by the delta sign
+    private static final String ADJUST_QUANTITY_SQL = "UPDATE instrument SET quantity = quantity + :delta, version = version + 1 " +
+            "WHERE id = :id AND (:delta <= 0 OR quantity + :delta <= max) AND (:delta >= 0 OR quantity - reserved + :delta >= min)";
+
+    private static final String RELEASE_RESERVED_SQL = "UPDATE instrument SET reserved = reserved - :quantity, version = version + 1 " +
+            "WHERE id = :id";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    //statements run in the given order, so several adjustments of the same instrument are checked one after the other;
+    //returns the updated rows per adjustment (0 when it was rejected)
+    public int[] adjustQuantities(List<StockAdjustmentDTO> adjustments) {
+        SqlParameterSource[] batchArgs = adjustments.stream()
+                .map(adjustment -> new MapSqlParameterSource()
+                        .addValue("id", adjustment.getId())
+                        .addValue("delta", adjustment.getDelta()))
+                .toArray(SqlParameterSource[]::new);
+        return namedParameterJdbcTemplate.batchUpdate(ADJUST_QUANTITY_SQL, batchArgs);
+    }
+
+    //gives back the units of released or expired holds, one statement per instrument in a single batch
+    public void releaseReserved(Map<Long, Integer> quantities) {
+        SqlParameterSource[] batchArgs = quantities.entrySet().stream()
+                .map(released -> new MapSqlParameterSource()
+                        .addValue("id", released.getKey())
+                        .addValue("quantity", released.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        namedParameterJdbcTemplate.batchUpdate(RELEASE_RESERVED_SQL, batchArgs);
+    }
+}
@@ -0,0 +1,7 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.entity.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Long> {
+}
@@ -0,0 +1,41 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.entity.StockHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+
+    //deletes the hold and returns it in one statement (H2 data change delta table): a confirm, a release
+    //and the expiry of the same hold all try to delete it, only the first one gets the row
+    @Transactional
+    @Query(value = "SELECT * FROM OLD TABLE (DELETE FROM stock_hold WHERE id = :id)", nativeQuery = true)
+    Optional<StockHold> deleteReturningById(@Param("id") Long id);
+
+    //same for a batch of the expiry queue, leaving out the holds already gone
+    @Transactional
+    @Query(value = "SELECT * FROM OLD TABLE (DELETE FROM stock_hold WHERE id IN (:ids))", nativeQuery = true)
+    List<StockHold> deleteReturningByIdIn(@Param("ids") Collection<Long> ids);
+
+    //units held for an instrument, used when the stock ledger starts tracking it
+    @Query("SELECT COALESCE(SUM(h.quantity), 0) FROM StockHold h WHERE h.instrumentId = :instrumentId")
+    long sumQuantity(@Param("instrumentId") Long instrumentId);
+
+    //[id, expires at] of every open hold, read once at startup to fill the expiry queue;
+    //a database cursor, must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("SELECT h.id, h.expiresAt FROM StockHold h")
+    Stream<Object[]> streamExpirations();
+}
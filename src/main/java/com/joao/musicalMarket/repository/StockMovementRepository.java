@@ -0,0 +1,31 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.entity.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    //sum of the deltas in (after, until]: a range scan of the (instrument_id, created_at) index
+    @Query("SELECT COALESCE(SUM(m.delta), 0) FROM StockMovement m " +
+            "WHERE m.instrumentId = :instrumentId AND m.createdAt > :after AND m.createdAt <= :until")
+    long sumDeltas(@Param("instrumentId") Long instrumentId, @Param("after") Instant after, @Param("until") Instant until);
+
+    boolean existsByInstrumentIdAndCreatedAtLessThanEqual(Long instrumentId, Instant until);
+
+    //[instrument id, sum of deltas] of the instruments that moved in (after, until]: a range scan of the created_at index
+    @Query("SELECT m.instrumentId, SUM(m.delta) FROM StockMovement m " +
+            "WHERE m.createdAt > :after AND m.createdAt <= :until GROUP BY m.instrumentId")
+    List<Object[]> sumDeltasByInstrument(@Param("after") Instant after, @Param("until") Instant until);
+
+    //at most limit of the movements up to until, so the compaction deletes in short transactions
+    //instead of locking and logging the whole backlog in one statement
+    @Modifying
+    @Query(value = "DELETE FROM stock_movement WHERE created_at <= :until LIMIT :limit", nativeQuery = true)
+    int deleteUpTo(@Param("until") Instant until, @Param("limit") int limit);
+}
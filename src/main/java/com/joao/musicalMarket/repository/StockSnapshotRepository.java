@@ -0,0 +1,26 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    //nearest snapshot at or before the given time
+    Optional<StockSnapshot> findFirstByInstrumentIdAndTakenAtLessThanEqualOrderByTakenAtDesc(Long instrumentId, Instant at);
+
+    //latest snapshot of each of the given instruments
+    @Query("SELECT s FROM StockSnapshot s WHERE s.instrumentId IN :instrumentIds AND s.takenAt = " +
+            "(SELECT MAX(latest.takenAt) FROM StockSnapshot latest WHERE latest.instrumentId = s.instrumentId)")
+    List<StockSnapshot> findLatestByInstrumentIdIn(@Param("instrumentIds") Collection<Long> instrumentIds);
+
+    //every movement up to this time is covered by the snapshots
+    @Query("SELECT MAX(s.takenAt) FROM StockSnapshot s")
+    Optional<Instant> findLastTakenAt();
+}
@@ -0,0 +1,74 @@
+package com.joao.musicalMarket.reservation;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+//deadlines of the open holds in a DelayQueue: queuing one is O(log n), and the expiry drains the due ones
+//in deadline order without looking at the others. a hold confirmed or released before its deadline isn't
+//searched for, it stays queued and is skipped when it comes due; each entry is an id and a deadline,
+//so hundreds of thousands of open holds take a few MB
+@Component
+public class HoldExpiryQueue {
+
+    private final DelayQueue<ExpiringHold> queue = new DelayQueue<>();
+
+    //inside a transaction the hold is queued after the commit, so it can't come due before its row is visible
+    public void schedule(Long holdId, Instant expiresAt) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queue.add(new ExpiringHold(holdId, expiresAt));
+                }
+            });
+        } else {
+            queue.add(new ExpiringHold(holdId, expiresAt));
+        }
+    }
+
+    //ids of up to maxHolds holds whose deadline has passed, removed from the queue
+    public List<Long> drainExpired(int maxHolds) {
+        List<ExpiringHold> expired = new ArrayList<>(Math.min(maxHolds, 1024));
+        queue.drainTo(expired, maxHolds);
+        List<Long> expiredIds = new ArrayList<>(expired.size());
+        for (ExpiringHold expiringHold : expired) {
+            expiredIds.add(expiringHold.holdId);
+        }
+        return expiredIds;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    //the deadline is taken on the monotonic clock, a wall clock adjustment doesn't move it
+    private static final class ExpiringHold implements Delayed {
+
+        private final Long holdId;
+        private final long deadlineNanos;
+
+        ExpiringHold(Long holdId, Instant expiresAt) {
+            this.holdId = holdId;
+            this.deadlineNanos = System.nanoTime() + Duration.between(Instant.now(), expiresAt).toNanos();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineNanos, ((ExpiringHold) other).deadlineNanos);
+        }
+    }
+}
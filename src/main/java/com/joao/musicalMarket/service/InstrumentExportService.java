@@ -0,0 +1,67 @@
+package com.joao.musicalMarket.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.ExportFormat;
+import com.joao.musicalMarket.ledger.StockLedger;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+//writes the whole catalog straight to the response: rows come from a database cursor and are
+//serialized one by one, so the heap use doesn't depend on the number of instruments
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class InstrumentExportService {
+
+    //rows kept in the persistence context (and in the response buffer) before clearing/flushing them
+    static final int EXPORT_BATCH_SIZE = 500;
+
+    private final InstrumentRepository instrumentRepository;
+    private final EntityManager entityManager;
+    private final StockLedger stockLedger;
+    private final ObjectMapper objectMapper;
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    //the stream needs an open transaction, so this runs inside the StreamingResponseBody
+    @Transactional(readOnly = true)
+    public void export(OutputStream outputStream, ExportFormat format) throws IOException {
+        try (Stream<Instrument> instruments = instrumentRepository.streamAllByOrderByIdAsc();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            //the response stream is closed by Spring, and NDJSON values are separated by new lines only
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (format == ExportFormat.JSON) {
+                generator.writeStartArray();
+            }
+            int exported = 0;
+            Iterator<Instrument> iterator = instruments.iterator();
+            while (iterator.hasNext()) {
+                InstrumentDTO instrumentDTO = instrumentMapper.toDTO(iterator.next());
+                stockLedger.overlay(instrumentDTO);
+                generator.writeObject(instrumentDTO);
+                if (format == ExportFormat.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                if (++exported % EXPORT_BATCH_SIZE == 0) {
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+            if (format == ExportFormat.JSON) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.joao.musicalMarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.cluster.ClusterInvalidations;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentImportErrorDTO;
+import com.joao.musicalMarket.dto.InstrumentImportResultDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.ImportFormat;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.exception.InstrumentImportUnreadableException;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.movement.StockMovementLog;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//bulk creation of instruments from a CSV file (with a header row) or a JSON array: every row is
+//converted and validated on its own and reported with its error, the names already registered are
+//found with one IN query per chunk, and the accepted rows are inserted in JDBC batches in one transaction
+@Service
+public class InstrumentImportService {
+
+    //same as hibernate.jdbc.batch_size and the allocation size of the instrument id sequence
+    static final int IMPORT_BATCH_SIZE = 50;
+
+    //names per IN list of the duplicate check
+    static final int NAME_CHECK_CHUNK_SIZE = 1000;
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    private final InstrumentRepository instrumentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final InstrumentQuantityGauges instrumentQuantityGauges;
+    private final StockMovementLog stockMovementLog;
+    private final InstrumentETags instrumentETags;
+    private final InstrumentCatalog instrumentCatalog;
+    private final ClusterInvalidations clusterInvalidations;
+    private final TransactionTemplate transactionTemplate;
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    @Autowired
+    public InstrumentImportService(InstrumentRepository instrumentRepository,
+                                   EntityManager entityManager,
+                                   ObjectMapper objectMapper,
+                                   Validator validator,
+                                   InstrumentQuantityGauges instrumentQuantityGauges,
+                                   StockMovementLog stockMovementLog,
+                                   InstrumentETags instrumentETags,
+                                   InstrumentCatalog instrumentCatalog,
+                                   ClusterInvalidations clusterInvalidations,
+                                   PlatformTransactionManager transactionManager) {
+        this.instrumentRepository = instrumentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.instrumentQuantityGauges = instrumentQuantityGauges;
+        this.stockMovementLog = stockMovementLog;
+        this.instrumentETags = instrumentETags;
+        this.instrumentCatalog = instrumentCatalog;
+        this.clusterInvalidations = clusterInvalidations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //the body is read before the transaction starts, so a slow upload doesn't hold a connection.
+    //a value that doesn't fit an InstrumentDTO only rejects its row, a malformed file rejects the import
+    public InstrumentImportResultDTO importInstruments(InputStream inputStream, ImportFormat format)
+            throws IOException, InstrumentImportUnreadableException {
+        List<InstrumentImportErrorDTO> errors = new ArrayList<>();
+        Map<String, ImportRow> rowsByName = new LinkedHashMap<>();
+        int row = 0;
+        try (MappingIterator<JsonNode> nodes = reader(format).readValues(inputStream)) {
+            while (nodes.hasNextValue()) {
+                JsonNode node = nodes.nextValue();
+                row++;
+                String name = node.hasNonNull("name") ? node.get("name").asText() : null;
+                InstrumentDTO instrumentDTO;
+                try {
+                    instrumentDTO = objectMapper.treeToValue(node, InstrumentDTO.class);
+                } catch (JsonProcessingException e) {
+                    errors.add(new InstrumentImportErrorDTO(row, name, e.getOriginalMessage()));
+                    continue;
+                }
+                Optional<String> violation = validate(instrumentDTO);
+                if (violation.isPresent()) {
+                    errors.add(new InstrumentImportErrorDTO(row, name, violation.get()));
+                } else if (rowsByName.containsKey(name)) {
+                    errors.add(new InstrumentImportErrorDTO(row, name,
+                            String.format("Name already used in row %d of this import.", rowsByName.get(name).row)));
+                } else {
+                    rowsByName.put(name, new ImportRow(row, instrumentDTO));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new InstrumentImportUnreadableException(row, e.getOriginalMessage());
+        }
+
+        Set<String> registeredNames = rowsByName.isEmpty() ? Set.of() : insertNewRows(rowsByName);
+        for (String registeredName : registeredNames) {
+            errors.add(new InstrumentImportErrorDTO(rowsByName.get(registeredName).row, registeredName,
+                    String.format("Instrument with name %s already registered in the system.", registeredName)));
+        }
+        errors.sort(Comparator.comparingInt(InstrumentImportErrorDTO::getRow));
+        return InstrumentImportResultDTO.builder()
+                .imported(rowsByName.size() - registeredNames.size())
+                .rejected(errors.size())
+                .errors(errors)
+                .build();
+    }
+
+    //a name registered by another request between the check and the insert rolls the batch back,
+    //the second attempt finds it in the check and leaves it out
+    private Set<String> insertNewRows(Map<String, ImportRow> rowsByName) {
+        try {
+            return transactionTemplate.execute(status -> insert(rowsByName));
+        } catch (DataIntegrityViolationException e) {
+            if (!InstrumentService.isUniqueViolation(e)) {
+                throw e;
+            }
+            return transactionTemplate.execute(status -> insert(rowsByName));
+        }
+    }
+
+    //returns the names that were already registered, the other rows are inserted
+    private Set<String> insert(Map<String, ImportRow> rowsByName) {
+        Set<String> registeredNames = findRegisteredNames(new ArrayList<>(rowsByName.keySet()));
+        Map<InstrumentType, Integer> importedQuantities = new EnumMap<>(InstrumentType.class);
+        List<Instrument> importedInstruments = new ArrayList<>();
+        int inserted = 0;
+        for (ImportRow importRow : rowsByName.values()) {
+            if (registeredNames.contains(importRow.instrumentDTO.getName())) {
+                continue;
+            }
+            Instrument instrument = instrumentMapper.toModel(importRow.instrumentDTO);
+            instrument.setId(null);
+            instrumentRepository.save(instrument);
+            //the initial stock is the first movement of the instrument, batched with the inserts
+            stockMovementLog.record(instrument.getId(), instrument.getQuantity(), instrument.getQuantity());
+            importedQuantities.merge(instrument.getType(), instrument.getQuantity(), Integer::sum);
+            importedInstruments.add(instrument);
+            //every flush sends one JDBC batch, clearing keeps the persistence context small.
+            //flushing through the repository translates a unique violation to DataIntegrityViolationException
+            if (++inserted % IMPORT_BATCH_SIZE == 0) {
+                instrumentRepository.flush();
+                entityManager.clear();
+            }
+        }
+        instrumentRepository.flush();
+        entityManager.clear();
+        importedQuantities.forEach(instrumentQuantityGauges::add);
+        if (!importedInstruments.isEmpty()) {
+            List<String> importedNames = importedInstruments.stream()
+                    .map(Instrument::getName)
+                    .collect(Collectors.toList());
+            instrumentETags.modified(importedNames);
+            instrumentCatalog.put(importedInstruments);
+            clusterInvalidations.publish(importedInstruments.stream()
+                    .map(Instrument::getId)
+                    .collect(Collectors.toList()), importedNames);
+        }
+        return registeredNames;
+    }
+
+    private Set<String> findRegisteredNames(List<String> names) {
+        Set<String> registeredNames = new HashSet<>();
+        for (int from = 0; from < names.size(); from += NAME_CHECK_CHUNK_SIZE) {
+            registeredNames.addAll(instrumentRepository.findNamesIn(
+                    names.subList(from, Math.min(from + NAME_CHECK_CHUNK_SIZE, names.size()))));
+        }
+        return registeredNames;
+    }
+
+    //InstrumentDTO's @NotNull isn't a bean validation constraint, and a null column would fail the whole batch
+    private Optional<String> validate(InstrumentDTO instrumentDTO) {
+        if (instrumentDTO.getName() == null || instrumentDTO.getBrand() == null || instrumentDTO.getMax() == null
+                || instrumentDTO.getMin() == null || instrumentDTO.getQuantity() == null || instrumentDTO.getType() == null) {
+            return Optional.of("name, brand, max, min, quantity and type are required.");
+        }
+        Set<ConstraintViolation<InstrumentDTO>> violations = validator.validate(instrumentDTO);
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+    }
+
+    //a JSON array is read element by element, a CSV file row by row with the columns named by its header
+    private ObjectReader reader(ImportFormat format) {
+        if (format == ImportFormat.CSV) {
+            return CSV_MAPPER.readerFor(JsonNode.class).with(CsvSchema.emptySchema().withHeader());
+        }
+        return objectMapper.readerFor(JsonNode.class);
+    }
+
+    @AllArgsConstructor
+    private static class ImportRow {
+
+        private final int row;
+        private final InstrumentDTO instrumentDTO;
+    }
+}
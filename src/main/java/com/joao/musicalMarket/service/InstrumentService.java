@@ -1,19 +1,67 @@
 package com.joao.musicalMarket.service;
 
+import com.joao.musicalMarket.alert.StockAlertPublisher;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.catalog.CatalogSnapshot;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.cache.InstrumentNameCache;
+import com.joao.musicalMarket.cluster.ClusterInvalidations;
+import com.joao.musicalMarket.cluster.StockOwnership;
+import com.joao.musicalMarket.combining.CombinedStockUpdate;
+import com.joao.musicalMarket.combining.HotKeyDetector;
+import com.joao.musicalMarket.combining.StockCombiner;
+import com.joao.musicalMarket.combining.StockOperation;
+import com.joao.musicalMarket.config.ListingProperties;
+import com.joao.musicalMarket.config.StockProperties;
 import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.dto.StockAdjustmentDTO;
+import com.joao.musicalMarket.dto.StockAdjustmentResultDTO;
+import com.joao.musicalMarket.dto.StockBatchDTO;
+import com.joao.musicalMarket.dto.StockAtDTO;
+import com.joao.musicalMarket.dto.StockBatchResultDTO;
 import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.entity.StockMovement;
+import com.joao.musicalMarket.enums.StockAdjustmentStatus;
+import com.joao.musicalMarket.enums.StockBatchMode;
+import com.joao.musicalMarket.enums.StockLockingMode;
 import com.joao.musicalMarket.exception.InstrumentAlreadyRegisteredException;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
 import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
 import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
 import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.ledger.StockLedger;
 import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.movement.StockMovementLog;
+import com.joao.musicalMarket.repository.InstrumentFilterRepository;
 import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.InstrumentStockBatchRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 //indicates this class will be used by spring to use in controller
@@ -29,39 +77,210 @@ public class InstrumentService {
     //  this.instrumentRepository = instrumentRepository
     //}
 
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+    //H2 "Row not found when trying to delete from index": the index lost an entry, which no retry repairs
+    private static final int ROW_NOT_FOUND_WHEN_DELETING_ERROR_CODE = 90112;
+
     private final InstrumentRepository instrumentRepository;
+    private final InstrumentStockUpdater instrumentStockUpdater;
+    private final StockProperties stockProperties;
+    private final ListingProperties listingProperties;
+    private final StockLedger stockLedger;
+    private final InstrumentStockBatchRepository instrumentStockBatchRepository;
+    private final InstrumentNameCache instrumentNameCache;
+    private final InstrumentFilterRepository instrumentFilterRepository;
+    private final StockAlertPublisher stockAlertPublisher;
+    private final InstrumentQuantityGauges instrumentQuantityGauges;
+    private final StockMovementLog stockMovementLog;
+    private final InstrumentETags instrumentETags;
+    private final InstrumentCatalog instrumentCatalog;
+    private final HotKeyDetector hotKeyDetector;
+    private final StockCombiner stockCombiner;
+    private final ClusterInvalidations clusterInvalidations;
+    private final StockOwnership stockOwnership;
     private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
 
+    //a single INSERT: the unique constraint on name detects the duplicates, ids are always generated
+    //(an id in the request would turn the save into a merge, with a SELECT first).
+    //the insert is flushed here, so the violation is caught before the initial stock movement is recorded
+    @Transactional(rollbackFor = Exception.class)
     public InstrumentDTO createInstrument(InstrumentDTO instrumentDTO) throws InstrumentAlreadyRegisteredException {
-        verifyIfIsAlreadyRegistered(instrumentDTO.getName());
         Instrument instrument = instrumentMapper.toModel(instrumentDTO);
-        Instrument savedInstrument = instrumentRepository.save(instrument);
+        instrument.setId(null);
+        Instrument savedInstrument;
+        try {
+            savedInstrument = instrumentRepository.saveAndFlush(instrument);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniqueViolation(e)) {
+                throw new InstrumentAlreadyRegisteredException(instrumentDTO.getName());
+            }
+            throw e;
+        }
+        stockMovementLog.record(savedInstrument.getId(), savedInstrument.getQuantity(), savedInstrument.getQuantity());
+        instrumentNameCache.evict(savedInstrument.getName());
+        instrumentQuantityGauges.add(savedInstrument.getType(), savedInstrument.getQuantity());
+        instrumentETags.modified(savedInstrument.getName());
+        instrumentCatalog.put(savedInstrument);
+        clusterInvalidations.publish(savedInstrument.getId(), savedInstrument.getName());
         return instrumentMapper.toDTO(savedInstrument);
     }
 
+    //from the catalog snapshot when it is enabled, otherwise read-through the name cache,
+    //every write below evicts the names it changes
     public InstrumentDTO findByName(String name) throws InstrumentNotFoundException {
-        Instrument foundInstrument = instrumentRepository.findByName(name)
-                .orElseThrow(() -> new InstrumentNotFoundException(name));
-        return instrumentMapper.toDTO(foundInstrument);
+        CatalogSnapshot snapshot = instrumentCatalog.snapshot();
+        InstrumentDTO foundInstrumentDTO;
+        if (snapshot != null) {
+            int row = snapshot.indexOf(name);
+            if (row < 0) {
+                throw new InstrumentNotFoundException(name);
+            }
+            foundInstrumentDTO = snapshot.toDTO(row);
+        } else {
+            foundInstrumentDTO = instrumentNameCache.get(name, this::loadByName)
+                    .orElseThrow(() -> new InstrumentNotFoundException(name));
+        }
+        stockLedger.overlay(foundInstrumentDTO);
+        return foundInstrumentDTO;
     }
 
-    public List<InstrumentDTO> listAll() {
-        return instrumentRepository.findAll()
-                .stream()
+    //null is not cached, so a missing name is looked up again on the next call
+    private InstrumentDTO loadByName(String name) {
+        return instrumentRepository.findByName(name)
                 .map(instrumentMapper::toDTO)
+                .orElse(null);
+    }
+
+    //keyset pagination on id: the cost of a page doesn't depend on how deep it is
+    public InstrumentPageDTO listAfter(Long afterId, Integer size) {
+        int pageSize = pageSize(size);
+        CatalogSnapshot snapshot = instrumentCatalog.snapshot();
+        if (snapshot != null) {
+            int from = snapshot.indexAfter(afterId == null ? 0L : afterId);
+            int to = Math.min(from + pageSize, snapshot.size());
+            return InstrumentPageDTO.builder()
+                    .instruments(toDTOs(snapshot, from, to))
+                    .nextCursor(to < snapshot.size() ? snapshot.id(to - 1) : null)
+                    .build();
+        }
+        //one extra row tells if there is a next page
+        List<Instrument> instruments = instrumentRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0L : afterId, PageRequest.of(0, pageSize + 1));
+        return toKeysetPage(instruments, pageSize);
+    }
+
+    //same keyset pages as listAfter, filtered on the snapshot columns or in the database;
+    //in ledger mode the quantity filters see the last flushed quantity, so they always go to the database
+    public InstrumentPageDTO search(InstrumentFilterDTO instrumentFilterDTO, Long afterId, Integer size) {
+        int pageSize = pageSize(size);
+        CatalogSnapshot snapshot = instrumentCatalog.snapshot();
+        if (snapshot != null && stockProperties.getLockingMode() != StockLockingMode.LEDGER) {
+            int[] rows = snapshot.search(instrumentFilterDTO, afterId == null ? 0L : afterId, pageSize + 1);
+            boolean hasNext = rows.length > pageSize;
+            int found = Math.min(rows.length, pageSize);
+            List<InstrumentDTO> instrumentsDTO = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                instrumentsDTO.add(snapshot.toDTO(rows[i]));
+            }
+            return InstrumentPageDTO.builder()
+                    .instruments(instrumentsDTO)
+                    .nextCursor(hasNext ? snapshot.id(rows[pageSize - 1]) : null)
+                    .build();
+        }
+        List<Instrument> instruments = instrumentFilterRepository.findByFilter(
+                instrumentFilterDTO, afterId == null ? 0L : afterId, pageSize + 1);
+        return toKeysetPage(instruments, pageSize);
+    }
+
+    private InstrumentPageDTO toKeysetPage(List<Instrument> instruments, int pageSize) {
+        boolean hasNext = instruments.size() > pageSize;
+        List<InstrumentDTO> instrumentsDTO = instruments.stream()
+                .limit(pageSize)
+                .map(this::toDTO)
                 .collect(Collectors.toList());
+        return InstrumentPageDTO.builder()
+                .instruments(instrumentsDTO)
+                .nextCursor(hasNext ? instrumentsDTO.get(pageSize - 1).getId() : null)
+                .build();
+    }
+
+    //offset pagination for the UI, ordered by id
+    public InstrumentPageDTO listPage(int page, Integer size) {
+        CatalogSnapshot snapshot = instrumentCatalog.snapshot();
+        if (snapshot != null) {
+            int pageSize = pageSize(size);
+            long from = Math.min((long) Math.max(page, 0) * pageSize, snapshot.size());
+            int to = (int) Math.min(from + pageSize, snapshot.size());
+            return InstrumentPageDTO.builder()
+                    .instruments(toDTOs(snapshot, (int) from, to))
+                    .nextPage(to < snapshot.size() ? Math.max(page, 0) + 1 : null)
+                    .build();
+        }
+        Slice<Instrument> instruments = instrumentRepository.findAllBy(
+                PageRequest.of(Math.max(page, 0), pageSize(size), Sort.by("id")));
+        return InstrumentPageDTO.builder()
+                .instruments(instruments.map(this::toDTO).getContent())
+                .nextPage(instruments.hasNext() ? instruments.getNumber() + 1 : null)
+                .build();
     }
 
+    private int pageSize(Integer size) {
+        if (size == null) {
+            return listingProperties.getDefaultPageSize();
+        }
+        return Math.max(1, Math.min(size, listingProperties.getMaxPageSize()));
+    }
+
+    //a single DELETE that returns the deleted row, which the cache, the gauges and the movement log still need
+    @Transactional(rollbackFor = Exception.class)
     public void deleteById(Long id) throws InstrumentNotFoundException {
-        verifyIfExists(id);
-        instrumentRepository.deleteById(id);
+        Instrument instrumentToDelete = instrumentRepository.deleteReturningById(id)
+                .orElseThrow(() -> new InstrumentNotFoundException(id));
+        //in ledger mode the stock being removed is the in-memory one
+        Integer ledgerQuantity = stockLedger.currentQuantity(id);
+        int removedQuantity = ledgerQuantity != null ? ledgerQuantity : instrumentToDelete.getQuantity();
+        stockLedger.evict(id);
+        stockMovementLog.record(id, -removedQuantity, 0);
+        instrumentQuantityGauges.add(instrumentToDelete.getType(), -removedQuantity);
+        instrumentNameCache.evict(instrumentToDelete.getName());
+        instrumentETags.modified(instrumentToDelete.getName());
+        instrumentCatalog.remove(id);
+        clusterInvalidations.publish(id, instrumentToDelete.getName());
     }
 
-    private void verifyIfIsAlreadyRegistered(String name) throws InstrumentAlreadyRegisteredException {
-        Optional<Instrument> optSavedInstrument = instrumentRepository.findByName(name);
-        if (optSavedInstrument.isPresent()) {
-            throw new InstrumentAlreadyRegisteredException(name);
+    //quantity at a past time (also after a deletion), rebuilt from the nearest snapshot and the movements after it
+    public StockAtDTO findStockAt(Long id, Instant at) throws InstrumentNotFoundException {
+        int quantity = stockMovementLog.quantityAt(id, at)
+                .orElseThrow(() -> new InstrumentNotFoundException(id));
+        return StockAtDTO.builder()
+                .id(id)
+                .at(at)
+                .quantity(quantity)
+                .build();
+    }
+
+    //in ledger mode the quantity in the database may be behind the in-memory one
+    private InstrumentDTO toDTO(Instrument instrument) {
+        InstrumentDTO instrumentDTO = instrumentMapper.toDTO(instrument);
+        stockLedger.overlay(instrumentDTO);
+        return instrumentDTO;
+    }
+
+    //rows [from, to) of the snapshot, the snapshot quantity is behind the ledger's one like the database's
+    private List<InstrumentDTO> toDTOs(CatalogSnapshot snapshot, int from, int to) {
+        List<InstrumentDTO> instrumentsDTO = new ArrayList<>(Math.max(to - from, 0));
+        for (int row = from; row < to; row++) {
+            InstrumentDTO instrumentDTO = snapshot.toDTO(row);
+            stockLedger.overlay(instrumentDTO);
+            instrumentsDTO.add(instrumentDTO);
         }
+        return instrumentsDTO;
+    }
+
+    //SQLState class 23, code 505: unique constraint violation (other integrity errors, like a null column, aren't duplicates)
+    static boolean isUniqueViolation(DataIntegrityViolationException e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause instanceof SQLException && UNIQUE_VIOLATION_SQL_STATE.equals(((SQLException) cause).getSQLState());
     }
 
     private Instrument verifyIfExists(Long id) throws InstrumentNotFoundException {
@@ -69,25 +288,328 @@ public class InstrumentService {
                 .orElseThrow(() -> new InstrumentNotFoundException(id));
     }
 
-    public InstrumentDTO increment(Long id, int quantityToIncrement) throws InstrumentNotFoundException, InstrumentStockExceededException {
-        Instrument instrumentToIncrementStock = verifyIfExists(id);
-        int quantityAfterIncrement = quantityToIncrement + instrumentToIncrementStock.getQuantity();
-        if (quantityAfterIncrement <= instrumentToIncrementStock.getMax()) {
-            instrumentToIncrementStock.setQuantity(instrumentToIncrementStock.getQuantity() + quantityToIncrement);
-            Instrument incrementedInstrumentStock = instrumentRepository.save(instrumentToIncrementStock);
-            return instrumentMapper.toDTO(incrementedInstrumentStock);
+    //an instrument owned by another node of the cluster is mutated there, see StockOwnership
+    public InstrumentDTO increment(Long id, int quantityToIncrement) throws InstrumentNotFoundException,
+            InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        String owner = stockOwnership.remoteOwnerOf(id);
+        if (owner != null) {
+            return stockOwnership.forward(owner, id, quantityToIncrement, InstrumentStockExceededException.class);
+        }
+        return incrementHere(id, quantityToIncrement);
+    }
+
+    public InstrumentDTO decrement(Long id, int quantityToDecrement) throws InstrumentNotFoundException,
+            InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        String owner = stockOwnership.remoteOwnerOf(id);
+        if (owner != null) {
+            return stockOwnership.forward(owner, id, -quantityToDecrement, InstrumentNegativeStockExceededException.class);
+        }
+        return decrementHere(id, quantityToDecrement);
+    }
+
+    //a mutation forwarded by the node that received it: applied here whatever the ring of this node says,
+    //so a mutation is never forwarded twice while two nodes disagree on the members
+    public InstrumentDTO applyForwarded(Long id, int delta) throws InstrumentNotFoundException, InstrumentStockExceededException,
+            InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException {
+        return delta >= 0 ? incrementHere(id, delta) : decrementHere(id, -delta);
+    }
+
+    //in ledger mode the cached quantity is replaced by the ledger's one on every read, so there is nothing to evict.
+    //the mutations of a hot instrument go through its combining queue, which does the same side effects per batch
+    private InstrumentDTO incrementHere(Long id, int quantityToIncrement)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException {
+        InstrumentDTO incrementedInstrumentDTO;
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            incrementedInstrumentDTO = stockLedger.increment(id, quantityToIncrement);
+        } else if (hotKeyDetector.isHot(id)) {
+            return stockCombiner.submit(id, quantityToIncrement, this::applyCombined)
+                    .await(InstrumentStockExceededException.class);
+        } else {
+            Instrument incrementedInstrumentStock = updateWithRetry(id,
+                    () -> instrumentStockUpdater.increment(id, quantityToIncrement, stockProperties.getLockingMode()));
+            instrumentNameCache.evict(incrementedInstrumentStock.getName());
+            instrumentCatalog.put(incrementedInstrumentStock);
+            incrementedInstrumentDTO = instrumentMapper.toDTO(incrementedInstrumentStock);
+        }
+        instrumentQuantityGauges.add(incrementedInstrumentDTO.getType(), quantityToIncrement);
+        instrumentETags.modified(incrementedInstrumentDTO.getName());
+        clusterInvalidations.publish(id, incrementedInstrumentDTO.getName());
+        stockAlertPublisher.publishIfCrossed(incrementedInstrumentDTO, incrementedInstrumentDTO.getQuantity() - quantityToIncrement);
+        return incrementedInstrumentDTO;
+    }
+
+    private InstrumentDTO decrementHere(Long id, int quantityToDecrement)
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException {
+        InstrumentDTO decrementedInstrumentDTO;
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            decrementedInstrumentDTO = stockLedger.decrement(id, quantityToDecrement);
+        } else if (hotKeyDetector.isHot(id)) {
+            return stockCombiner.submit(id, -quantityToDecrement, this::applyCombined)
+                    .await(InstrumentNegativeStockExceededException.class);
+        } else {
+            Instrument decrementedInstrumentStock = updateWithRetry(id,
+                    () -> instrumentStockUpdater.decrement(id, quantityToDecrement, stockProperties.getLockingMode()));
+            instrumentNameCache.evict(decrementedInstrumentStock.getName());
+            instrumentCatalog.put(decrementedInstrumentStock);
+            decrementedInstrumentDTO = instrumentMapper.toDTO(decrementedInstrumentStock);
         }
-        throw new InstrumentStockExceededException(id, quantityToIncrement);
+        instrumentQuantityGauges.add(decrementedInstrumentDTO.getType(), -quantityToDecrement);
+        instrumentETags.modified(decrementedInstrumentDTO.getName());
+        clusterInvalidations.publish(id, decrementedInstrumentDTO.getName());
+        stockAlertPublisher.publishIfCrossed(decrementedInstrumentDTO, decrementedInstrumentDTO.getQuantity() + quantityToDecrement);
+        return decrementedInstrumentDTO;
     }
 
-    public InstrumentDTO decrement(Long id, int quantityToDecrement) throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
-        Instrument instrumentToDecrementStock = verifyIfExists(id);
-        int quantityAfterDecrement = instrumentToDecrementStock.getQuantity() - quantityToDecrement;
-        if (quantityAfterDecrement >= instrumentToDecrementStock.getMin()) {
-            instrumentToDecrementStock.setQuantity(instrumentToDecrementStock.getQuantity() - quantityToDecrement);
-            Instrument incrementedInstrumentStock = instrumentRepository.save(instrumentToDecrementStock);
-            return instrumentMapper.toDTO(incrementedInstrumentStock);
+    //runs on a combiner thread for a batch of one instrument: one write for the merged delta, the cache, catalog,
+    //ETag and gauge updates once for the batch, and then each operation gets its own result and alert.
+    //everything is done before the callers are released, so a caller reads its own write like on the direct path
+    private void applyCombined(Long id, List<StockOperation> operations) {
+        int[] deltas = operations.stream().mapToInt(StockOperation::getDelta).toArray();
+        CombinedStockUpdate combinedStockUpdate;
+        try {
+            combinedStockUpdate = updateWithRetry(id, () -> instrumentStockUpdater.applyCombined(id, deltas));
+        } catch (InstrumentNotFoundException | InstrumentConcurrentUpdateException e) {
+            operations.forEach(operation -> operation.fail(e));
+            return;
         }
-        throw new InstrumentNegativeStockExceededException(id, quantityToDecrement);
+        Instrument instrument = combinedStockUpdate.getInstrument();
+        boolean[] applied = combinedStockUpdate.getApplied();
+        int[] quantities = combinedStockUpdate.getQuantities();
+        int appliedDelta = 0;
+        boolean anyApplied = false;
+        for (int i = 0; i < deltas.length; i++) {
+            if (applied[i]) {
+                appliedDelta += deltas[i];
+                anyApplied = true;
+            }
+        }
+        if (anyApplied) {
+            instrumentNameCache.evict(instrument.getName());
+            instrumentCatalog.put(instrument);
+            instrumentQuantityGauges.add(instrument.getType(), appliedDelta);
+            instrumentETags.modified(instrument.getName());
+            clusterInvalidations.publish(id, instrument.getName());
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            if (!applied[i]) {
+                operations.get(i).fail(deltas[i] > 0
+                        ? new InstrumentStockExceededException(id, deltas[i])
+                        : new InstrumentNegativeStockExceededException(id, -deltas[i]));
+                continue;
+            }
+            InstrumentDTO instrumentDTO = instrumentMapper.toDTO(instrument);
+            instrumentDTO.setQuantity(quantities[i]);
+            stockAlertPublisher.publishIfCrossed(instrumentDTO, quantities[i] - deltas[i]);
+            operations.get(i).complete(instrumentDTO);
+        }
+    }
+
+    //all adjustments go to the database in one JDBC batch and one transaction;
+    //in atomic mode the first rejected adjustment rolls the whole batch back
+    @Transactional(rollbackFor = Exception.class)
+    public StockBatchResultDTO adjustStock(StockBatchDTO stockBatchDTO)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentNegativeStockExceededException {
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            return adjustStockInLedger(stockBatchDTO);
+        }
+        List<StockAdjustmentDTO> adjustments = stockBatchDTO.getAdjustments();
+        int[] updatedRows = instrumentStockBatchRepository.adjustQuantities(adjustments);
+        if (stockBatchDTO.getMode() == StockBatchMode.ATOMIC) {
+            for (int i = 0; i < adjustments.size(); i++) {
+                if (updatedRows[i] == 0) {
+                    throwRejection(adjustments.get(i));
+                }
+            }
+        }
+
+        Set<Long> ids = adjustments.stream().map(StockAdjustmentDTO::getId).collect(Collectors.toSet());
+        Map<Long, Instrument> instruments = instrumentRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Instrument::getId, Function.identity()));
+        Map<Long, Integer> quantities = instruments.values()
+                .stream()
+                .collect(Collectors.toMap(Instrument::getId, Instrument::getQuantity));
+        Map<Long, Integer> appliedDeltas = new HashMap<>();
+        List<StockAdjustmentStatus> statuses = new ArrayList<>(adjustments.size());
+        recordMovements(adjustments, updatedRows, quantities);
+        for (int i = 0; i < adjustments.size(); i++) {
+            StockAdjustmentDTO adjustment = adjustments.get(i);
+            if (updatedRows[i] > 0) {
+                //runs after the commit of this transaction
+                instrumentNameCache.evict(instruments.get(adjustment.getId()).getName());
+                appliedDeltas.merge(adjustment.getId(), adjustment.getDelta(), Integer::sum);
+                statuses.add(StockAdjustmentStatus.APPLIED);
+            } else if (!quantities.containsKey(adjustment.getId())) {
+                statuses.add(StockAdjustmentStatus.NOT_FOUND);
+            } else {
+                statuses.add(adjustment.getDelta() > 0 ? StockAdjustmentStatus.MAX_EXCEEDED : StockAdjustmentStatus.MIN_EXCEEDED);
+            }
+        }
+        //gauges, alerts and ETags take the net change of the whole batch, and all are applied after the commit
+        appliedDeltas.forEach((id, delta) -> {
+            Instrument instrument = instruments.get(id);
+            instrumentQuantityGauges.add(instrument.getType(), delta);
+            stockAlertPublisher.publishIfCrossed(instrumentMapper.toDTO(instrument), instrument.getQuantity() - delta);
+        });
+        if (!appliedDeltas.isEmpty()) {
+            List<String> adjustedNames = appliedDeltas.keySet().stream()
+                    .map(id -> instruments.get(id).getName())
+                    .collect(Collectors.toList());
+            instrumentETags.modified(adjustedNames);
+            clusterInvalidations.publish(appliedDeltas.keySet(), adjustedNames);
+            instrumentCatalog.put(appliedDeltas.keySet().stream()
+                    .map(instruments::get)
+                    .collect(Collectors.toList()));
+        }
+        return toBatchResult(adjustments, statuses, quantities::get);
+    }
+
+    //the quantity after each applied adjustment, walking back from the final quantities;
+    //the movements go to the database in one JDBC batch with the commit
+    private void recordMovements(List<StockAdjustmentDTO> adjustments, int[] updatedRows, Map<Long, Integer> finalQuantities) {
+        Map<Long, Integer> quantities = new HashMap<>(finalQuantities);
+        StockMovement[] movements = new StockMovement[adjustments.size()];
+        Instant now = Instant.now();
+        for (int i = adjustments.size() - 1; i >= 0; i--) {
+            StockAdjustmentDTO adjustment = adjustments.get(i);
+            if (updatedRows[i] > 0) {
+                int quantity = quantities.get(adjustment.getId());
+                movements[i] = new StockMovement(null, adjustment.getId(), adjustment.getDelta(), quantity, now);
+                quantities.put(adjustment.getId(), quantity - adjustment.getDelta());
+            }
+        }
+        stockMovementLog.recordAll(Arrays.stream(movements).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+
+    private StockBatchResultDTO adjustStockInLedger(StockBatchDTO stockBatchDTO)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentNegativeStockExceededException {
+        List<StockAdjustmentDTO> adjustments = stockBatchDTO.getAdjustments();
+        List<StockAdjustmentDTO> appliedAdjustments = new ArrayList<>();
+        List<InstrumentDTO> adjustedInstruments = new ArrayList<>();
+        List<StockAdjustmentStatus> statuses = new ArrayList<>(adjustments.size());
+        for (StockAdjustmentDTO adjustment : adjustments) {
+            try {
+                if (adjustment.getDelta() >= 0) {
+                    adjustedInstruments.add(stockLedger.increment(adjustment.getId(), adjustment.getDelta()));
+                } else {
+                    adjustedInstruments.add(stockLedger.decrement(adjustment.getId(), -adjustment.getDelta()));
+                }
+                appliedAdjustments.add(adjustment);
+                statuses.add(StockAdjustmentStatus.APPLIED);
+            } catch (InstrumentNotFoundException e) {
+                statuses.add(rejectInLedger(stockBatchDTO.getMode(), appliedAdjustments, e, StockAdjustmentStatus.NOT_FOUND));
+            } catch (InstrumentStockExceededException e) {
+                statuses.add(rejectInLedger(stockBatchDTO.getMode(), appliedAdjustments, e, StockAdjustmentStatus.MAX_EXCEEDED));
+            } catch (InstrumentNegativeStockExceededException e) {
+                statuses.add(rejectInLedger(stockBatchDTO.getMode(), appliedAdjustments, e, StockAdjustmentStatus.MIN_EXCEEDED));
+            }
+        }
+        //published only once the batch can't be reverted anymore
+        for (int i = 0; i < appliedAdjustments.size(); i++) {
+            InstrumentDTO adjustedInstrumentDTO = adjustedInstruments.get(i);
+            instrumentQuantityGauges.add(adjustedInstrumentDTO.getType(), appliedAdjustments.get(i).getDelta());
+            stockAlertPublisher.publishIfCrossed(adjustedInstrumentDTO,
+                    adjustedInstrumentDTO.getQuantity() - appliedAdjustments.get(i).getDelta());
+        }
+        if (!adjustedInstruments.isEmpty()) {
+            List<String> adjustedNames = adjustedInstruments.stream()
+                    .map(InstrumentDTO::getName)
+                    .collect(Collectors.toList());
+            instrumentETags.modified(adjustedNames);
+            clusterInvalidations.publish(adjustedInstruments.stream()
+                    .map(InstrumentDTO::getId)
+                    .collect(Collectors.toList()), adjustedNames);
+        }
+        return toBatchResult(adjustments, statuses, stockLedger::currentQuantity);
+    }
+
+    //the ledger has no transaction to roll back, so an atomic batch undoes its applied adjustments
+    private <E extends Exception> StockAdjustmentStatus rejectInLedger(StockBatchMode mode, List<StockAdjustmentDTO> appliedAdjustments,
+                                                                       E rejection, StockAdjustmentStatus status) throws E {
+        if (mode == StockBatchMode.ATOMIC) {
+            for (int i = appliedAdjustments.size() - 1; i >= 0; i--) {
+                stockLedger.revert(appliedAdjustments.get(i).getId(), appliedAdjustments.get(i).getDelta());
+            }
+            throw rejection;
+        }
+        return status;
+    }
+
+    private void throwRejection(StockAdjustmentDTO adjustment)
+            throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentNegativeStockExceededException {
+        verifyIfExists(adjustment.getId());
+        if (adjustment.getDelta() > 0) {
+            throw new InstrumentStockExceededException(adjustment.getId(), adjustment.getDelta());
+        }
+        throw new InstrumentNegativeStockExceededException(adjustment.getId(), -adjustment.getDelta());
+    }
+
+    private StockBatchResultDTO toBatchResult(List<StockAdjustmentDTO> adjustments, List<StockAdjustmentStatus> statuses,
+                                              Function<Long, Integer> quantities) {
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(adjustments.size());
+        int applied = 0;
+        for (int i = 0; i < adjustments.size(); i++) {
+            StockAdjustmentDTO adjustment = adjustments.get(i);
+            if (statuses.get(i) == StockAdjustmentStatus.APPLIED) {
+                applied++;
+            }
+            results.add(StockAdjustmentResultDTO.builder()
+                    .id(adjustment.getId())
+                    .delta(adjustment.getDelta())
+                    .status(statuses.get(i))
+                    .quantity(quantities.apply(adjustment.getId()))
+                    .build());
+        }
+        return StockBatchResultDTO.builder()
+                .applied(applied)
+                .rejected(adjustments.size() - applied)
+                .results(results)
+                .build();
+    }
+
+    //each attempt runs in its own transaction; version conflicts (optimistic mode) and lock timeouts
+    //are retried with a jittered exponential backoff until the configured attempt cap
+    private <T, E extends Exception> T updateWithRetry(Long id, StockUpdate<T, E> stockUpdate)
+            throws InstrumentNotFoundException, InstrumentConcurrentUpdateException, E {
+        StockProperties.Retry retry = stockProperties.getRetry();
+        long backoff = retry.getInitialBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return stockUpdate.apply();
+            } catch (ConcurrencyFailureException | TransactionSystemException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= retry.getMaxAttempts()) {
+                    throw new InstrumentConcurrentUpdateException(id, attempt);
+                }
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InstrumentConcurrentUpdateException(id, attempt);
+            }
+            backoff = Math.min(backoff * 2, retry.getMaxBackoff().toMillis());
+        }
+    }
+
+    //a lock timeout (H2 "Timeout trying to lock table") can also break the connection, and then the rollback
+    //itself fails: the TransactionSystemException carries the lock failure that started it. H2 also reports a
+    //corrupted index as a lock timeout once it gave up retrying the statement, that one is a failure
+    private static boolean isRetryable(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException
+                    && ((SQLException) cause).getErrorCode() == ROW_NOT_FOUND_WHEN_DELETING_ERROR_CODE) {
+                return false;
+            }
+        }
+        return e instanceof ConcurrencyFailureException
+                || ((TransactionSystemException) e).getOriginalException() instanceof ConcurrencyFailureException;
+    }
+
+    @FunctionalInterface
+    private interface StockUpdate<T, E extends Exception> {
+        T apply() throws InstrumentNotFoundException, E;
     }
 }
@@ -0,0 +1,72 @@
+package com.joao.musicalMarket.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.joao.musicalMarket.config.StatsProperties;
+import com.joao.musicalMarket.dto.StockStatsDTO;
+import com.joao.musicalMarket.mapper.StockStatsMapper;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+//stock aggregates for the dashboards, each one a single GROUP BY in the database, kept for a short TTL.
+//the concurrent requests of an expired entry wait for one query instead of running one each.
+//in ledger mode they see the last flushed quantities, like the other database reads.
+//hits and misses are published as the cache.* metrics of "instrumentStats"
+@Service
+public class InstrumentStatsService {
+
+    static final String CACHE_NAME = "instrumentStats";
+
+    private final InstrumentRepository instrumentRepository;
+    private final LoadingCache<StatsGroup, List<StockStatsDTO>> cache;
+    private final StockStatsMapper stockStatsMapper = StockStatsMapper.INSTANCE;
+
+    @Autowired
+    public InstrumentStatsService(InstrumentRepository instrumentRepository, StatsProperties statsProperties,
+                                  MeterRegistry meterRegistry) {
+        this.instrumentRepository = instrumentRepository;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .expireAfterWrite(statsProperties.getTimeToLive())
+                .recordStats()
+                .build(this::load), CACHE_NAME);
+    }
+
+    public StockStatsDTO stats() {
+        return cache.get(StatsGroup.TOTAL).get(0);
+    }
+
+    public List<StockStatsDTO> statsByType() {
+        return cache.get(StatsGroup.TYPE);
+    }
+
+    public List<StockStatsDTO> statsByBrand() {
+        return cache.get(StatsGroup.BRAND);
+    }
+
+    private List<StockStatsDTO> load(StatsGroup group) {
+        switch (group) {
+            case TYPE:
+                return instrumentRepository.stockStatsByType().stream()
+                        .map(stockStatsMapper::toTypeDTO)
+                        .collect(Collectors.toUnmodifiableList());
+            case BRAND:
+                return instrumentRepository.stockStatsByBrand().stream()
+                        .map(stockStatsMapper::toBrandDTO)
+                        .collect(Collectors.toUnmodifiableList());
+            default:
+                return List.of(stockStatsMapper.toDTO(instrumentRepository.stockStats()));
+        }
+    }
+
+    private enum StatsGroup {
+        TOTAL,
+        TYPE,
+        BRAND
+    }
+}
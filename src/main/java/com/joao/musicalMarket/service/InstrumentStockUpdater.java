@@ -0,0 +1,142 @@
+package com.joao.musicalMarket.service;
+
+import com.joao.musicalMarket.combining.CombinedStockUpdate;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.entity.StockMovement;
+import com.joao.musicalMarket.enums.StockLockingMode;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.movement.StockMovementLog;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+//applies a single stock change in its own transaction, so InstrumentService can retry
+//a whole attempt when it fails because of a concurrent update; the stock movement is recorded
+//in the same transaction, so a rolled back attempt leaves no movement behind.
+//a version conflict commits instead of rolling back: its guarded UPDATE changed nothing, and on H2 1.4.200
+//rolling back an UPDATE that waited for the row and then didn't match it restores the row it saw before the
+//wait, which loses the write of the transaction it waited for
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class InstrumentStockUpdater {
+
+    private final InstrumentRepository instrumentRepository;
+    private final StockMovementLog stockMovementLog;
+
+    @Transactional(noRollbackFor = ObjectOptimisticLockingFailureException.class)
+    public Instrument increment(Long id, int quantityToIncrement, StockLockingMode lockingMode)
+            throws InstrumentNotFoundException, InstrumentStockExceededException {
+        if (lockingMode == StockLockingMode.ATOMIC) {
+            //the limit check and the write are a single guarded UPDATE; the row is read back
+            //in the same transaction, while the update still holds its lock
+            if (instrumentRepository.incrementQuantity(id, quantityToIncrement) == 0) {
+                verifyIfExists(id);
+                throw new InstrumentStockExceededException(id, quantityToIncrement);
+            }
+            return recorded(verifyIfExists(id), quantityToIncrement);
+        }
+
+        Instrument instrumentToIncrementStock = load(id, lockingMode);
+        int quantityAfterIncrement = instrumentToIncrementStock.getQuantity() + quantityToIncrement;
+        if (quantityAfterIncrement > instrumentToIncrementStock.getMax()) {
+            throw new InstrumentStockExceededException(id, quantityToIncrement);
+        }
+        return recorded(write(instrumentToIncrementStock, quantityToIncrement, lockingMode), quantityToIncrement);
+    }
+
+    @Transactional(noRollbackFor = ObjectOptimisticLockingFailureException.class)
+    public Instrument decrement(Long id, int quantityToDecrement, StockLockingMode lockingMode)
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+        if (lockingMode == StockLockingMode.ATOMIC) {
+            if (instrumentRepository.decrementQuantity(id, quantityToDecrement) == 0) {
+                verifyIfExists(id);
+                throw new InstrumentNegativeStockExceededException(id, quantityToDecrement);
+            }
+            return recorded(verifyIfExists(id), -quantityToDecrement);
+        }
+
+        Instrument instrumentToDecrementStock = load(id, lockingMode);
+        int quantityAfterDecrement = instrumentToDecrementStock.getQuantity() - quantityToDecrement;
+        if (quantityAfterDecrement - instrumentToDecrementStock.getReserved() < instrumentToDecrementStock.getMin()) {
+            throw new InstrumentNegativeStockExceededException(id, quantityToDecrement);
+        }
+        return recorded(write(instrumentToDecrementStock, -quantityToDecrement, lockingMode), -quantityToDecrement);
+    }
+
+    //the operations of a combined batch are checked one after the other against the row read here, as a serial
+    //execution would, and only their net delta is written, guarded by the version that was read (in every
+    //locking mode: the guarded updates move the version too). a conflict is retried by InstrumentService
+    @Transactional(noRollbackFor = ObjectOptimisticLockingFailureException.class)
+    public CombinedStockUpdate applyCombined(Long id, int[] deltas) throws InstrumentNotFoundException {
+        Instrument instrument = verifyIfExists(id);
+        boolean[] applied = new boolean[deltas.length];
+        int[] quantities = new int[deltas.length];
+        List<StockMovement> movements = new ArrayList<>();
+        Instant now = Instant.now();
+        int quantity = instrument.getQuantity();
+        for (int i = 0; i < deltas.length; i++) {
+            int quantityAfter = quantity + deltas[i];
+            if (deltas[i] > 0 ? quantityAfter <= instrument.getMax()
+                    : quantityAfter - instrument.getReserved() >= instrument.getMin()) {
+                quantity = quantityAfter;
+                applied[i] = true;
+                movements.add(new StockMovement(null, id, deltas[i], quantity, now));
+            }
+            quantities[i] = quantity;
+        }
+        if (!movements.isEmpty()) {
+            if (instrumentRepository.addQuantityIfVersion(id, quantity - instrument.getQuantity(), instrument.getVersion()) == 0) {
+                throw new ObjectOptimisticLockingFailureException(Instrument.class, id);
+            }
+            //the update cleared the persistence context, so these changes stay out of the database
+            instrument.setQuantity(quantity);
+            instrument.setVersion(instrument.getVersion() + 1);
+            stockMovementLog.recordAll(movements);
+        }
+        return new CombinedStockUpdate(instrument, applied, quantities);
+    }
+
+    //pessimistic mode locks the row until commit, optimistic mode relies on the @Version check at flush
+    private Instrument load(Long id, StockLockingMode lockingMode) throws InstrumentNotFoundException {
+        if (lockingMode == StockLockingMode.PESSIMISTIC) {
+            return instrumentRepository.findByIdForUpdate(id)
+                    .orElseThrow(() -> new InstrumentNotFoundException(id));
+        }
+        return verifyIfExists(id);
+    }
+
+    //the row locked by pessimistic mode is saved as it is. optimistic mode only writes the delta, guarded by the
+    //version it read (as applyCombined does), instead of saving the whole entity over a row others are updating
+    private Instrument write(Instrument instrument, int delta, StockLockingMode lockingMode) {
+        if (lockingMode == StockLockingMode.PESSIMISTIC) {
+            instrument.setQuantity(instrument.getQuantity() + delta);
+            return instrumentRepository.saveAndFlush(instrument);
+        }
+        if (instrumentRepository.addQuantityIfVersion(instrument.getId(), delta, instrument.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Instrument.class, instrument.getId());
+        }
+        //the update cleared the persistence context, so these changes stay out of the database
+        instrument.setQuantity(instrument.getQuantity() + delta);
+        instrument.setVersion(instrument.getVersion() + 1);
+        return instrument;
+    }
+
+    private Instrument recorded(Instrument instrument, int delta) {
+        stockMovementLog.record(instrument.getId(), delta, instrument.getQuantity());
+        return instrument;
+    }
+
+    private Instrument verifyIfExists(Long id) throws InstrumentNotFoundException {
+        return instrumentRepository.findById(id)
+                .orElseThrow(() -> new InstrumentNotFoundException(id));
+    }
+}
@@ -0,0 +1,252 @@
+package com.joao.musicalMarket.service;
+
+import com.joao.musicalMarket.alert.StockAlertPublisher;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.cache.InstrumentNameCache;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.cluster.ClusterInvalidations;
+import com.joao.musicalMarket.config.ReservationProperties;
+import com.joao.musicalMarket.config.StockProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.entity.StockHold;
+import com.joao.musicalMarket.enums.StockLockingMode;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.StockReservationNotFoundException;
+import com.joao.musicalMarket.ledger.StockLedger;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.movement.StockMovementLog;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.InstrumentStockBatchRepository;
+import com.joao.musicalMarket.repository.StockHoldRepository;
+import com.joao.musicalMarket.reservation.HoldExpiryQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+//holds of the checkout: units are held with a TTL and then confirmed (sold) or released, instead of a
+//decrement up front and an increment when the cart is abandoned. a hold doesn't change the quantity, so
+//reads, alerts and ETags only move when it is confirmed; its units count against min until then.
+//expired holds are released in batches by the HoldExpiryQueue sweep
+@Slf4j
+@Service
+public class StockReservationService {
+
+    private final InstrumentRepository instrumentRepository;
+    private final StockHoldRepository stockHoldRepository;
+    private final InstrumentStockBatchRepository instrumentStockBatchRepository;
+    private final StockLedger stockLedger;
+    private final StockProperties stockProperties;
+    private final ReservationProperties reservationProperties;
+    private final HoldExpiryQueue holdExpiryQueue;
+    private final StockMovementLog stockMovementLog;
+    private final InstrumentNameCache instrumentNameCache;
+    private final InstrumentCatalog instrumentCatalog;
+    private final InstrumentETags instrumentETags;
+    private final InstrumentQuantityGauges instrumentQuantityGauges;
+    private final StockAlertPublisher stockAlertPublisher;
+    private final ClusterInvalidations clusterInvalidations;
+    private final TransactionTemplate transactionTemplate;
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    @Autowired
+    public StockReservationService(InstrumentRepository instrumentRepository,
+                                   StockHoldRepository stockHoldRepository,
+                                   InstrumentStockBatchRepository instrumentStockBatchRepository,
+                                   StockLedger stockLedger,
+                                   StockProperties stockProperties,
+                                   ReservationProperties reservationProperties,
+                                   HoldExpiryQueue holdExpiryQueue,
+                                   StockMovementLog stockMovementLog,
+                                   InstrumentNameCache instrumentNameCache,
+                                   InstrumentCatalog instrumentCatalog,
+                                   InstrumentETags instrumentETags,
+                                   InstrumentQuantityGauges instrumentQuantityGauges,
+                                   StockAlertPublisher stockAlertPublisher,
+                                   ClusterInvalidations clusterInvalidations,
+                                   PlatformTransactionManager transactionManager) {
+        this.instrumentRepository = instrumentRepository;
+        this.stockHoldRepository = stockHoldRepository;
+        this.instrumentStockBatchRepository = instrumentStockBatchRepository;
+        this.stockLedger = stockLedger;
+        this.stockProperties = stockProperties;
+        this.reservationProperties = reservationProperties;
+        this.holdExpiryQueue = holdExpiryQueue;
+        this.stockMovementLog = stockMovementLog;
+        this.instrumentNameCache = instrumentNameCache;
+        this.instrumentCatalog = instrumentCatalog;
+        this.instrumentETags = instrumentETags;
+        this.instrumentQuantityGauges = instrumentQuantityGauges;
+        this.stockAlertPublisher = stockAlertPublisher;
+        this.clusterInvalidations = clusterInvalidations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //the holds still open from before the restart expire at their original deadline
+    @PostConstruct
+    public void scheduleOpenHolds() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> expirations = stockHoldRepository.streamExpirations()) {
+                expirations.forEach(expiration -> holdExpiryQueue.schedule((Long) expiration[0], (Instant) expiration[1]));
+            }
+        });
+        log.info("Scheduled the expiry of {} open stock holds", holdExpiryQueue.size());
+    }
+
+    //in the database modes the hold is a guarded UPDATE of the reserved quantity, in ledger mode a compare-and-set
+    //on the in-memory stock; either way the hold row is inserted in the same transaction
+    @Transactional(rollbackFor = Exception.class)
+    public ReservationDTO reserve(Long instrumentId, ReservationRequestDTO reservationRequestDTO)
+            throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+        int quantityToReserve = reservationRequestDTO.getQuantity();
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            stockLedger.reserve(instrumentId, quantityToReserve);
+            //the ledger has no transaction to roll back
+            onRollback(() -> stockLedger.release(instrumentId, quantityToReserve));
+        } else if (instrumentRepository.reserveQuantity(instrumentId, quantityToReserve) == 0) {
+            verifyIfExists(instrumentId);
+            throw new InstrumentNegativeStockExceededException(instrumentId, quantityToReserve);
+        }
+        StockHold stockHold = stockHoldRepository.save(new StockHold(null, instrumentId, quantityToReserve,
+                Instant.now().plus(ttl(reservationRequestDTO))));
+        holdExpiryQueue.schedule(stockHold.getId(), stockHold.getExpiresAt());
+        return toDTO(stockHold);
+    }
+
+    //the held units leave the stock: for the reads, the movement log, the gauges and the alerts it is a decrement
+    @Transactional(rollbackFor = Exception.class)
+    public InstrumentDTO confirm(Long reservationId) throws StockReservationNotFoundException, InstrumentNotFoundException {
+        StockHold stockHold = stockHoldRepository.deleteReturningById(reservationId)
+                .orElseThrow(() -> new StockReservationNotFoundException(reservationId));
+        Long instrumentId = stockHold.getInstrumentId();
+        int confirmedQuantity = stockHold.getQuantity();
+        InstrumentDTO confirmedInstrumentDTO;
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            confirmedInstrumentDTO = stockLedger.confirm(instrumentId, confirmedQuantity);
+            //the hold row comes back with the rollback, so do its units
+            onRollback(() -> stockLedger.unconfirm(instrumentId, confirmedQuantity));
+        } else {
+            //0 rows when the instrument was deleted, the rollback keeps the hold until it expires
+            if (instrumentRepository.confirmReserved(instrumentId, confirmedQuantity) == 0) {
+                throw new InstrumentNotFoundException(instrumentId);
+            }
+            Instrument confirmedInstrument = verifyIfExists(instrumentId);
+            stockMovementLog.record(instrumentId, -confirmedQuantity, confirmedInstrument.getQuantity());
+            instrumentNameCache.evict(confirmedInstrument.getName());
+            instrumentCatalog.put(confirmedInstrument);
+            confirmedInstrumentDTO = instrumentMapper.toDTO(confirmedInstrument);
+        }
+        instrumentQuantityGauges.add(confirmedInstrumentDTO.getType(), -confirmedQuantity);
+        instrumentETags.modified(confirmedInstrumentDTO.getName());
+        clusterInvalidations.publish(instrumentId, confirmedInstrumentDTO.getName());
+        stockAlertPublisher.publishIfCrossed(confirmedInstrumentDTO, confirmedInstrumentDTO.getQuantity() + confirmedQuantity);
+        return confirmedInstrumentDTO;
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public void release(Long reservationId) throws StockReservationNotFoundException {
+        StockHold stockHold = stockHoldRepository.deleteReturningById(reservationId)
+                .orElseThrow(() -> new StockReservationNotFoundException(reservationId));
+        releaseHolds(List.of(stockHold));
+    }
+
+    //each batch is one DELETE of the due holds and one JDBC batch of UPDATEs, one per instrument;
+    //the holds confirmed or released before their deadline aren't deleted again and are just dropped
+    @Scheduled(fixedDelayString = "${instrument.reservations.expiry-interval-millis:1000}",
+            initialDelayString = "${instrument.reservations.expiry-interval-millis:1000}")
+    public void expireHolds() {
+        int batchSize = reservationProperties.getExpiryBatchSize();
+        List<Long> expiredIds;
+        do {
+            expiredIds = holdExpiryQueue.drainExpired(batchSize);
+            if (expiredIds.isEmpty()) {
+                return;
+            }
+            List<Long> batchIds = expiredIds;
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        releaseHolds(stockHoldRepository.deleteReturningByIdIn(batchIds)));
+            } catch (RuntimeException e) {
+                //queued again as already due, retried on the next sweep
+                Instant now = Instant.now();
+                batchIds.forEach(id -> holdExpiryQueue.schedule(id, now));
+                log.warn("Could not release {} expired stock holds, retrying on the next sweep", batchIds.size(), e);
+                return;
+            }
+        } while (expiredIds.size() == batchSize);
+    }
+
+    //must run inside the transaction that deleted the holds
+    private void releaseHolds(List<StockHold> stockHolds) {
+        if (stockHolds.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> releasedQuantities = new HashMap<>();
+        stockHolds.forEach(stockHold -> releasedQuantities.merge(stockHold.getInstrumentId(), stockHold.getQuantity(), Integer::sum));
+        if (stockProperties.getLockingMode() == StockLockingMode.LEDGER) {
+            //after the commit: a rolled back release must keep the units held
+            afterCommit(() -> releasedQuantities.forEach(stockLedger::release));
+        } else {
+            instrumentStockBatchRepository.releaseReserved(releasedQuantities);
+        }
+    }
+
+    //the max TTL caps the default one too, so a default configured above it can't outlive it
+    private Duration ttl(ReservationRequestDTO reservationRequestDTO) {
+        Duration ttl = reservationRequestDTO.getTtlSeconds() == null ? reservationProperties.getDefaultTtl()
+                : Duration.ofSeconds(reservationRequestDTO.getTtlSeconds());
+        return ttl.compareTo(reservationProperties.getMaxTtl()) > 0 ? reservationProperties.getMaxTtl() : ttl;
+    }
+
+    private Instrument verifyIfExists(Long id) throws InstrumentNotFoundException {
+        return instrumentRepository.findById(id)
+                .orElseThrow(() -> new InstrumentNotFoundException(id));
+    }
+
+    private ReservationDTO toDTO(StockHold stockHold) {
+        return ReservationDTO.builder()
+                .id(stockHold.getId())
+                .instrumentId(stockHold.getInstrumentId())
+                .quantity(stockHold.getQuantity())
+                .expiresAt(stockHold.getExpiresAt())
+                .build();
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.joao.musicalMarket.warmup;
+
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.config.WarmupProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.service.InstrumentService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//runs before the application is ready to receive traffic (runners are called before the readiness state
+//changes): fills the findByName cache and calls the read paths of the service until the JIT has compiled
+//them, so the first requests after a deploy don't pay for cold caches and interpreted code. with the catalog
+//enabled the reads are served by its snapshot, which is already loaded when the bean is built, so there is no
+//cache to fill and only the read paths are warmed.
+//only read paths are called, the warm-up never changes the stock
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "instrument.warmup.enabled", havingValue = "true")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class InstrumentWarmup implements ApplicationRunner {
+
+    private final InstrumentService instrumentService;
+    private final WarmupProperties warmupProperties;
+    private final InstrumentCatalog instrumentCatalog;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        List<String> names = preload();
+        InstrumentFilterDTO lowStockFilter = InstrumentFilterDTO.builder().lowStockMargin(5).build();
+        for (int iteration = 0; iteration < warmupProperties.getIterations(); iteration++) {
+            instrumentService.listAfter(null, null);
+            instrumentService.search(lowStockFilter, null, null);
+            if (!names.isEmpty()) {
+                findByName(names.get(iteration % names.size()));
+            }
+        }
+        log.info("Warm-up preloaded {} instruments and ran {} iterations in {} ms", names.size(),
+                warmupProperties.getIterations(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    //walks the keyset pages from the first id, each instrument goes through findByName into the cache
+    //unless the snapshot serves the reads
+    private List<String> preload() {
+        boolean fillCache = instrumentCatalog.snapshot() == null;
+        List<String> names = new ArrayList<>();
+        Long after = null;
+        while (names.size() < warmupProperties.getPreloadSize()) {
+            InstrumentPageDTO page = instrumentService.listAfter(after, warmupProperties.getPreloadSize() - names.size());
+            for (InstrumentDTO instrumentDTO : page.getInstruments()) {
+                if (!fillCache || findByName(instrumentDTO.getName())) {
+                    names.add(instrumentDTO.getName());
+                }
+            }
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            after = page.getNextCursor();
+        }
+        return names;
+    }
+
+    //false when the instrument was deleted in the meantime
+    private boolean findByName(String name) {
+        try {
+            instrumentService.findByName(name);
+            return true;
+        } catch (InstrumentNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.joao.musicalMarket.catalog;
+
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CatalogSnapshotTest {
+
+    @Test
+    void whenAnInstrumentIsLookedUpByNameThenItsRowIsReturned() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(
+                instrument(1L, "Slash Lespaul", "Gibson", 17, InstrumentType.GUITAR, 0),
+                instrument(2L, "Pearl Export", "Pearl", 5, InstrumentType.DRUM, 0)));
+
+        assertThat(snapshot.toDTO(snapshot.indexOf("Pearl Export")),
+                equalTo(new InstrumentDTO(2L, "Pearl Export", "Pearl", 50, 1, 5, InstrumentType.DRUM)));
+        assertThat(snapshot.indexOf("Yamaha Flute"), equalTo(-1));
+    }
+
+    @Test
+    void whenANewerQuantityIsPatchedThenOnlyTheNewSnapshotHasIt() {
+        List<Instrument> instruments = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            instruments.add(instrument(id, "Instrument " + id, "Gibson", 10, InstrumentType.GUITAR, 0));
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.of(instruments);
+
+        CatalogSnapshot patched = snapshot.with(Collections.singletonList(
+                instrument(2500L, "Instrument 2500", "Gibson", 42, InstrumentType.GUITAR, 3)));
+        CatalogSnapshot patchedWithAnOlderVersion = patched.with(Collections.singletonList(
+                instrument(2500L, "Instrument 2500", "Gibson", 11, InstrumentType.GUITAR, 2)));
+
+        int row = snapshot.indexOf("Instrument 2500");
+        assertThat(snapshot.quantity(row), equalTo(10));
+        assertThat(patched.quantity(row), equalTo(42));
+        assertThat(patchedWithAnOlderVersion.quantity(row), equalTo(42));
+        assertThat(patched.quantity(patched.indexOf("Instrument 1")), equalTo(10));
+    }
+
+    @Test
+    void whenInstrumentsAreAddedAndRemovedThenTheRowsStayOrderedById() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(
+                instrument(10L, "Slash Lespaul", "Gibson", 17, InstrumentType.GUITAR, 0),
+                instrument(30L, "Pearl Export", "Pearl", 5, InstrumentType.DRUM, 0)));
+
+        CatalogSnapshot changed = snapshot
+                .with(Collections.singletonList(instrument(20L, "Yamaha Flute", "Yamaha", 8, InstrumentType.FLUTE, 0)))
+                .without(Collections.singleton(10L));
+
+        assertThat(changed.size(), equalTo(2));
+        assertThat(changed.id(0), equalTo(20L));
+        assertThat(changed.id(1), equalTo(30L));
+        assertThat(changed.indexAfter(20L), equalTo(1));
+        assertThat(changed.indexOf("Slash Lespaul"), equalTo(-1));
+        assertThat(changed.indexOf("Pearl Export"), equalTo(1));
+        assertThat(snapshot.size(), equalTo(2));
+    }
+
+    @Test
+    void whenTheCatalogIsSearchedThenTheFiltersAreAppliedOnTheColumns() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(Arrays.asList(
+                instrument(1L, "Slash Lespaul", new String("Gibson"), 17, InstrumentType.GUITAR, 0),
+                instrument(2L, "Gibson SG", new String("Gibson"), 3, InstrumentType.GUITAR, 0),
+                instrument(3L, "Pearl Export", "Pearl", 2, InstrumentType.DRUM, 0)));
+
+        InstrumentFilterDTO lowStockGibsons = InstrumentFilterDTO.builder()
+                .brand("Gibson")
+                .lowStockMargin(5)
+                .build();
+
+        assertThat(snapshot.search(lowStockGibsons, 0L, 10), equalTo(new int[]{1}));
+        assertThat(snapshot.search(InstrumentFilterDTO.builder().maxQuantity(3).build(), 0L, 10), equalTo(new int[]{1, 2}));
+        assertThat(snapshot.search(InstrumentFilterDTO.builder().maxQuantity(3).build(), 2L, 10), equalTo(new int[]{2}));
+        assertThat(snapshot.search(InstrumentFilterDTO.builder().brand("Fender").build(), 0L, 10), equalTo(new int[0]));
+        assertThat(snapshot.toDTO(0).getBrand(), sameInstance(snapshot.toDTO(1).getBrand()));
+    }
+
+    private static Instrument instrument(Long id, String name, String brand, int quantity, InstrumentType type, long version) {
+        return new Instrument(id, name, brand, 50, 1, quantity, 0, type, version);
+    }
+}
@@ -0,0 +1,68 @@
+package com.joao.musicalMarket.catalog;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//the reads of InstrumentService served by the snapshot, patched by the service writes and rebuilt from H2
+@SpringBootTest(properties = "instrument.catalog.enabled=true")
+public class InstrumentCatalogTest {
+
+    @Autowired
+    private InstrumentService instrumentService;
+
+    @Autowired
+    private InstrumentCatalog instrumentCatalog;
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @AfterEach
+    void tearDown() {
+        instrumentRepository.deleteAllInBatch();
+        instrumentCatalog.rebuild();
+    }
+
+    @Test
+    void whenTheServiceWritesThenTheSnapshotReadsSeeTheChanges() throws Exception {
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .quantity(17)
+                .build()
+                .toInstrumentDTO());
+
+        instrumentService.increment(instrumentDTO.getId(), 3);
+
+        assertThat(instrumentCatalog.snapshot().indexOf(instrumentDTO.getName()), equalTo(0));
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(20));
+        assertThat(instrumentService.listAfter(null, 10).getInstruments().get(0).getQuantity(), equalTo(20));
+
+        instrumentService.deleteById(instrumentDTO.getId());
+
+        assertThrows(InstrumentNotFoundException.class, () -> instrumentService.findByName(instrumentDTO.getName()));
+        assertThat(instrumentService.listAfter(null, 10).getInstruments().size(), equalTo(0));
+    }
+
+    @Test
+    void whenTheCatalogIsRebuiltThenRowsWrittenOutsideTheServiceAreRead() throws Exception {
+        instrumentRepository.save(new Instrument(null, "Pearl Export", "Pearl", 50, 1, 5, 0, InstrumentType.DRUM, 0));
+
+        assertThrows(InstrumentNotFoundException.class, () -> instrumentService.findByName("Pearl Export"));
+
+        instrumentCatalog.rebuild();
+
+        assertThat(instrumentService.findByName("Pearl Export").getBrand(), equalTo("Pearl"));
+    }
+}
@@ -0,0 +1,192 @@
+package com.joao.musicalMarket.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.enums.ClusterMessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//several nodes in this JVM, over the loopback transport and over sockets on 127.0.0.1
+public class ClusterNodeTest {
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ClusterNode::destroy);
+    }
+
+    @Test
+    void whenAnInvalidationIsBroadcastThenEveryOtherNodeReceivesIt() throws Exception {
+        String group = UUID.randomUUID().toString();
+        BlockingQueue<ClusterMessage> receivedByB = new LinkedBlockingQueue<>();
+        BlockingQueue<ClusterMessage> receivedByA = new LinkedBlockingQueue<>();
+        ClusterNode nodeA = loopbackNode(group, "a", false);
+        ClusterNode nodeB = loopbackNode(group, "b", false);
+        nodeA.on(ClusterMessageType.INVALIDATE, receivedByA::add);
+        nodeB.on(ClusterMessageType.INVALIDATE, receivedByB::add);
+        nodeA.start();
+        nodeB.start();
+
+        nodeA.broadcast(ClusterMessage.builder()
+                .type(ClusterMessageType.INVALIDATE)
+                .ids(List.of(7L))
+                .names(List.of("Stratocaster"))
+                .build());
+
+        ClusterMessage received = receivedByB.poll(5, TimeUnit.SECONDS);
+        assertThat(received.getOrigin(), equalTo("a"));
+        assertThat(received.getIds(), equalTo(List.of(7L)));
+        assertThat(received.getNames(), equalTo(List.of("Stratocaster")));
+        assertThat(receivedByA.poll(100, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    void whenOwnershipIsEnabledThenTheNodesAgreeOnTheOwnerOfEveryId() throws Exception {
+        String group = UUID.randomUUID().toString();
+        ClusterNode nodeA = loopbackNode(group, "a", true);
+        ClusterNode nodeB = loopbackNode(group, "b", true);
+        nodeA.start();
+        nodeB.start();
+
+        int ownedByA = 0;
+        for (long id = 1; id <= 1000; id++) {
+            assertThat(nodeB.ownerOf(id), equalTo(nodeA.ownerOf(id)));
+            assertThat(nodeA.isOwner(id), equalTo(!nodeB.isOwner(id)));
+            ownedByA += nodeA.isOwner(id) ? 1 : 0;
+        }
+        assertThat(ownedByA > 0 && ownedByA < 1000, equalTo(true));
+
+        //b leaves the group, a owns everything again
+        nodeB.destroy();
+        for (long id = 1; id <= 1000; id++) {
+            assertThat(nodeA.isOwner(id), equalTo(true));
+        }
+    }
+
+    @Test
+    void whenARequestIsSentOverSocketsThenItsAnswerIsReturned() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ClusterNode nodeA = socketNode(portA, portB);
+        ClusterNode nodeB = socketNode(portB, portA);
+        nodeB.on(ClusterMessageType.MUTATE, request -> nodeB.reply(request, ClusterMessage.builder()
+                .type(ClusterMessageType.MUTATE_RESULT)
+                .outcome(MutationOutcome.APPLIED)
+                .id(request.getId())
+                .delta(request.getDelta())
+                .build()));
+        nodeA.start();
+        nodeB.start();
+        //the heartbeats of a sent before b listened were refused, and a backs off before connecting again
+        awaitUntil(() -> !ownsEverything(nodeA) && !ownsEverything(nodeB));
+
+        ClusterMessage answer = nodeA.request(nodeB.localNode(), ClusterMessage.builder()
+                .type(ClusterMessageType.MUTATE)
+                .id(3L)
+                .delta(-2)
+                .build()).get(5, TimeUnit.SECONDS);
+
+        assertThat(answer.getOutcome(), equalTo(MutationOutcome.APPLIED));
+        assertThat(answer.getOrigin(), equalTo("127.0.0.1:" + portB));
+        assertThat(answer.getId(), equalTo(3L));
+        assertThat(answer.getDelta(), equalTo(-2));
+    }
+
+    @Test
+    void whenASocketPeerStopsThenItLeavesTheRingUntilItIsHeardAgain() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ClusterNode nodeA = socketNode(portA, portB);
+        nodeA.start();
+        //nothing heard from b yet
+        assertThat(ownsEverything(nodeA), equalTo(true));
+
+        ClusterNode nodeB = socketNode(portB, portA);
+        nodeB.start();
+        awaitUntil(() -> !ownsEverything(nodeA) && !ownsEverything(nodeB));
+        for (long id = 1; id <= 1000; id++) {
+            assertThat(nodeB.ownerOf(id), equalTo(nodeA.ownerOf(id)));
+        }
+
+        nodeB.destroy();
+        awaitUntil(() -> ownsEverything(nodeA));
+    }
+
+    @Test
+    void whenTheNodeIsUnreachableThenTheRequestFails() throws Exception {
+        ClusterNode nodeA = loopbackNode(UUID.randomUUID().toString(), "a", true);
+        nodeA.start();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> nodeA.request("gone", ClusterMessage.builder()
+                .type(ClusterMessageType.MUTATE)
+                .id(1L)
+                .delta(1)
+                .build()).join());
+        assertThat(failure.getCause(), instanceOf(IOException.class));
+    }
+
+    private ClusterNode loopbackNode(String group, String nodeId, boolean ownership) {
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setEnabled(true);
+        clusterProperties.getOwnership().setEnabled(ownership);
+        ClusterNode node = new ClusterNode(clusterProperties, new LoopbackTransport(group, nodeId));
+        nodes.add(node);
+        return node;
+    }
+
+    private ClusterNode socketNode(int port, int peerPort) {
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setEnabled(true);
+        clusterProperties.getSocket().setPort(port);
+        clusterProperties.getSocket().setPeers(List.of("127.0.0.1:" + peerPort));
+        clusterProperties.getSocket().setReconnectBackoff(Duration.ofMillis(50));
+        clusterProperties.getSocket().setHeartbeatInterval(Duration.ofMillis(50));
+        clusterProperties.getSocket().setFailureTimeout(Duration.ofMillis(300));
+        clusterProperties.getOwnership().setEnabled(true);
+        ClusterNode node = new ClusterNode(clusterProperties, new SocketTransport(clusterProperties.getSocket(), new ObjectMapper()));
+        nodes.add(node);
+        return node;
+    }
+
+    private static boolean ownsEverything(ClusterNode node) {
+        for (long id = 1; id <= 1000; id++) {
+            if (!node.isOwner(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat("condition not met in 5 seconds", System.currentTimeMillis() < deadline, equalTo(true));
+            Thread.sleep(20);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
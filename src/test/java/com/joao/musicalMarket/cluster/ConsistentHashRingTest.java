@@ -0,0 +1,46 @@
+package com.joao.musicalMarket.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+
+public class ConsistentHashRingTest {
+
+    private static final int IDS = 10_000;
+
+    @Test
+    void whenTheMembersAreListedInAnotherOrderThenEveryIdHasTheSameOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+        ConsistentHashRing reorderedRing = new ConsistentHashRing(List.of("node-c", "node-a", "node-b"), 64);
+
+        for (long id = 1; id <= IDS; id++) {
+            assertThat(reorderedRing.ownerOf(id), equalTo(ring.ownerOf(id)));
+        }
+    }
+
+    @Test
+    void whenAMemberLeavesThenOnlyItsIdsChangeOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+        ConsistentHashRing ringWithoutC = new ConsistentHashRing(List.of("node-a", "node-b"), 64);
+
+        Map<String, Integer> idsPerOwner = new HashMap<>();
+        for (long id = 1; id <= IDS; id++) {
+            String owner = ring.ownerOf(id);
+            idsPerOwner.merge(owner, 1, Integer::sum);
+            if (owner.equals("node-c")) {
+                assertThat(ringWithoutC.ownerOf(id), not(equalTo("node-c")));
+            } else {
+                assertThat(ringWithoutC.ownerOf(id), equalTo(owner));
+            }
+        }
+        //64 points per member keep every share well above a sixth of the ids
+        idsPerOwner.values().forEach(ids -> assertThat(ids, greaterThan(IDS / 6)));
+    }
+}
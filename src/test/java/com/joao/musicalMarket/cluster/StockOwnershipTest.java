@@ -0,0 +1,129 @@
+package com.joao.musicalMarket.cluster;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.cache.InstrumentNameCache;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.config.CatalogProperties;
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.config.InstrumentCacheProperties;
+import com.joao.musicalMarket.config.StockProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.enums.StockLockingMode;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.service.InstrumentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+//two nodes over the loopback transport: a receives the mutations, b owns the instrument and applies them
+@ExtendWith(MockitoExtension.class)
+public class StockOwnershipTest {
+
+    @Mock
+    private InstrumentService instrumentServiceOfB;
+
+    @Mock
+    private InstrumentRepository instrumentRepository;
+
+    private ClusterNode nodeA;
+    private ClusterNode nodeB;
+    private OwnedMutationHandler ownedMutationHandlerOfB;
+    private InstrumentETags instrumentETagsOfA;
+    private StockOwnership stockOwnershipOfA;
+    private Long idOwnedByB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String group = UUID.randomUUID().toString();
+        ClusterProperties clusterProperties = new ClusterProperties();
+        clusterProperties.setEnabled(true);
+        clusterProperties.getOwnership().setEnabled(true);
+        clusterProperties.getOwnership().setRequestTimeout(Duration.ofMillis(500));
+        nodeA = new ClusterNode(clusterProperties, new LoopbackTransport(group, "a"));
+        nodeB = new ClusterNode(clusterProperties, new LoopbackTransport(group, "b"));
+        ownedMutationHandlerOfB = new OwnedMutationHandler(nodeB, instrumentServiceOfB, clusterProperties);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        instrumentETagsOfA = new InstrumentETags();
+        ClusterInvalidations clusterInvalidationsOfA = new ClusterInvalidations(nodeA, instrumentETagsOfA,
+                new InstrumentNameCache(new InstrumentCacheProperties(), meterRegistry),
+                new InstrumentCatalog(instrumentRepository, new CatalogProperties()),
+                new InstrumentQuantityGauges(instrumentRepository, meterRegistry),
+                instrumentRepository);
+        stockOwnershipOfA = new StockOwnership(nodeA, clusterInvalidationsOfA, new StockProperties());
+        nodeA.start();
+        nodeB.start();
+
+        idOwnedByB = 1L;
+        while (!"b".equals(nodeA.ownerOf(idOwnedByB))) {
+            idOwnedByB++;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ownedMutationHandlerOfB.destroy();
+        nodeA.destroy();
+        nodeB.destroy();
+    }
+
+    @Test
+    void whenTheInstrumentIsOwnedByAnotherNodeThenTheMutationIsAppliedThere() throws Exception {
+        InstrumentDTO incrementedInstrumentDTO = InstrumentDTOBuilder.builder().id(idOwnedByB).quantity(15).build().toInstrumentDTO();
+        when(instrumentServiceOfB.applyForwarded(idOwnedByB, 5)).thenReturn(incrementedInstrumentDTO);
+        String eTagBefore = instrumentETagsOfA.instrument(incrementedInstrumentDTO.getName());
+
+        String owner = stockOwnershipOfA.remoteOwnerOf(idOwnedByB);
+        InstrumentDTO forwardedInstrumentDTO = stockOwnershipOfA.forward(owner, idOwnedByB, 5, InstrumentStockExceededException.class);
+
+        assertThat(owner, equalTo("b"));
+        assertThat(forwardedInstrumentDTO, equalTo(incrementedInstrumentDTO));
+        //a's reads of the instrument changed before the answer is returned
+        assertThat(instrumentETagsOfA.instrument(incrementedInstrumentDTO.getName()), not(equalTo(eTagBefore)));
+    }
+
+    @Test
+    void whenTheOwnerRejectsTheMutationThenItsExceptionIsThrownHere() throws Exception {
+        when(instrumentServiceOfB.applyForwarded(idOwnedByB, -50))
+                .thenThrow(new InstrumentNegativeStockExceededException(idOwnedByB, 50));
+
+        assertThrows(InstrumentNegativeStockExceededException.class,
+                () -> stockOwnershipOfA.forward("b", idOwnedByB, -50, InstrumentNegativeStockExceededException.class));
+    }
+
+    @Test
+    void whenTheLedgerModeIsEnabledInAClusterThenTheNodeRefusesToStart() {
+        StockProperties stockProperties = new StockProperties();
+        stockProperties.setLockingMode(StockLockingMode.LEDGER);
+
+        assertThrows(IllegalStateException.class, () -> new StockOwnership(nodeA, null, stockProperties));
+    }
+
+    @Test
+    void whenTheOwnerIsGoneThenTheMutationFailsWithOwnerUnavailable() throws Exception {
+        nodeB.destroy();
+
+        assertThat(stockOwnershipOfA.remoteOwnerOf(idOwnedByB), nullValue());
+        assertThrows(InstrumentOwnerUnavailableException.class,
+                () -> stockOwnershipOfA.forward("b", idOwnedByB, 1, InstrumentStockExceededException.class));
+    }
+}
@@ -0,0 +1,63 @@
+package com.joao.musicalMarket.combining;
+
+import com.joao.musicalMarket.config.StockProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HotKeyDetectorTest {
+
+    private static final long HOT_ID = 1L;
+    private static final long COLD_ID = 2L;
+
+    private StockProperties stockProperties;
+    private HotKeyDetector hotKeyDetector;
+
+    @BeforeEach
+    void setUp() {
+        //every mutation sampled, 10 per window make an instrument hot
+        stockProperties = new StockProperties();
+        stockProperties.getCombining().setSampleRate(1);
+        stockProperties.getCombining().setHotThresholdPerSecond(10);
+        stockProperties.getCombining().setWindowMillis(1000);
+        hotKeyDetector = new HotKeyDetector(stockProperties);
+    }
+
+    @Test
+    void whenAnInstrumentPassesTheThresholdThenItIsHotAfterTheWindowAndStaysHotAboveHalfOfIt() {
+        mutate(HOT_ID, 10);
+        mutate(COLD_ID, 9);
+        assertThat(hotKeyDetector.isHot(HOT_ID), equalTo(false));
+
+        hotKeyDetector.rotate();
+        assertThat(hotKeyDetector.isHot(HOT_ID), equalTo(true));
+        assertThat(hotKeyDetector.isHot(COLD_ID), equalTo(false));
+
+        //with the calls above, 5 samples of each in this window: half of the threshold
+        mutate(HOT_ID, 4);
+        mutate(COLD_ID, 4);
+        hotKeyDetector.rotate();
+        assertThat(hotKeyDetector.isHot(HOT_ID), equalTo(true));
+        assertThat(hotKeyDetector.isHot(COLD_ID), equalTo(false));
+
+        hotKeyDetector.rotate();
+        assertThat(hotKeyDetector.isHot(HOT_ID), equalTo(false));
+    }
+
+    @Test
+    void whenCombiningIsDisabledThenNoInstrumentIsHot() {
+        stockProperties.getCombining().setEnabled(false);
+        mutate(HOT_ID, 100);
+        hotKeyDetector.rotate();
+
+        assertThat(hotKeyDetector.isHot(HOT_ID), equalTo(false));
+    }
+
+    private void mutate(long id, int times) {
+        for (int i = 0; i < times; i++) {
+            hotKeyDetector.isHot(id);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.joao.musicalMarket.controller;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.dto.OperationDTO;
+import com.joao.musicalMarket.dto.QuantityDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.enums.OperationStatus;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.operation.OperationExecutor;
+import com.joao.musicalMarket.service.InstrumentService;
+import com.joao.musicalMarket.service.StockReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static com.joao.musicalMarket.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//InstrumentController in the async execution mode: the handlers run on the worker pool and must answer exactly
+//like the blocking mode once the async result is dispatched
+@SpringBootTest(properties = "instrument.web.execution-mode=async")
+@AutoConfigureMockMvc
+public class AsyncInstrumentControllerTest {
+
+    private static final String INSTRUMENT_API_URL_PATH = "/api/v1/instruments";
+    private static final long VALID_INSTRUMENT_ID = 1L;
+    private static final String INSTRUMENT_API_SUBPATH_INCREMENT_URL = "/increment";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private InstrumentETags instrumentETags;
+
+    @MockBean
+    private InstrumentService instrumentService;
+
+    @MockBean
+    private StockReservationService stockReservationService;
+
+    @MockBean
+    private OperationExecutor operationExecutor;
+
+    @Test
+    void whenPOSTIsCalledThenAInstrumentIsCreated() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.createInstrument(instrumentDTO)).thenReturn(instrumentDTO);
+
+        MvcResult mvcResult = mockMvc.perform(post(INSTRUMENT_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(instrumentDTO)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name", is(instrumentDTO.getName())));
+    }
+
+    @Test
+    void whenGETIsCalledWithoutRegisteredNameThenNotFoundStatusIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.findByName(instrumentDTO.getName())).thenThrow(InstrumentNotFoundException.class);
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/" + instrumentDTO.getName()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGETIsCalledWithTheCurrentETagThenNotModifiedStatusIsReturnedWithoutABody() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/" + instrumentDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, instrumentETags.instrument(instrumentDTO.getName())))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verifyNoInteractions(instrumentService);
+    }
+
+    @Test
+    void whenGETListHasANextKeysetPageThenTheLinkHeaderIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.listAfter(null, 1)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .nextCursor(instrumentDTO.getId())
+                .build());
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
+                .param("size", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(instrumentDTO.getName())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + instrumentDTO.getId())));
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(45)
+                .build();
+
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity())).thenThrow(InstrumentStockExceededException.class);
+
+        MvcResult mvcResult = mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithAnInvalidBodyThenItIsRejectedBeforeGoingAsync() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(101)
+                .build();
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(instrumentService);
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveStockThenTheHoldIsCreatedOnTheWorkerPool() throws Exception {
+        ReservationRequestDTO reservationRequestDTO = new ReservationRequestDTO(3, null);
+        ReservationDTO reservationDTO = new ReservationDTO(7L, 1L, 3, Instant.parse("2020-06-01T10:15:00Z"));
+
+        when(stockReservationService.reserve(1L, reservationRequestDTO)).thenReturn(reservationDTO);
+
+        MvcResult mvcResult = mockMvc.perform(post(INSTRUMENT_API_URL_PATH + "/1/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(reservationRequestDTO)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(7)));
+    }
+
+    @Test
+    void whenPATCHIsCalledWithPreferRespondAsyncThenItIsAcceptedWithoutGoingAsync() throws Exception {
+        when(operationExecutor.submit(any())).thenReturn(OperationDTO.builder()
+                .id("operation-1")
+                .status(OperationStatus.PENDING)
+                .build());
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(QuantityDTO.builder().quantity(5).build())))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost" + INSTRUMENT_API_URL_PATH + "/operations/operation-1"));
+
+        verifyNoInteractions(instrumentService);
+    }
+}
@@ -1,35 +1,95 @@
 package com.joao.musicalMarket.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.joao.musicalMarket.alert.StockAlertBroadcaster;
 import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.config.IdempotencyProperties;
+import com.joao.musicalMarket.config.RateLimitProperties;
+import com.joao.musicalMarket.cache.InstrumentETags;
 import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentImportErrorDTO;
+import com.joao.musicalMarket.dto.InstrumentImportResultDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.dto.OperationDTO;
 import com.joao.musicalMarket.dto.QuantityDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.dto.StockAdjustmentDTO;
+import com.joao.musicalMarket.dto.StockAdjustmentResultDTO;
+import com.joao.musicalMarket.dto.StockBatchDTO;
+import com.joao.musicalMarket.dto.StockBatchResultDTO;
+import com.joao.musicalMarket.dto.StockStatsDTO;
+import com.joao.musicalMarket.enums.ExportFormat;
+import com.joao.musicalMarket.enums.ImportFormat;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.enums.OperationStatus;
+import com.joao.musicalMarket.enums.StockAdjustmentStatus;
+import com.joao.musicalMarket.enums.StockBatchMode;
+import com.joao.musicalMarket.enums.WireFormat;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
 import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
 import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
 import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.exception.StockReservationNotFoundException;
+import com.joao.musicalMarket.idempotency.IdempotencyFilter;
+import com.joao.musicalMarket.operation.OperationExecutor;
+import com.joao.musicalMarket.service.InstrumentExportService;
+import com.joao.musicalMarket.service.InstrumentImportService;
 import com.joao.musicalMarket.service.InstrumentService;
+import com.joao.musicalMarket.service.InstrumentStatsService;
+import com.joao.musicalMarket.service.StockReservationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.joao.musicalMarket.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,12 +100,36 @@ public class InstrumentControllerTest {
     private static final long INVALID_INSTRUMENT_ID = 2L;
     private static final String INSTRUMENT_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String INSTRUMENT_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String INSTRUMENT_API_SUBPATH_STOCK_BATCH_URL = "/stock/batch";
+    private static final String INSTRUMENT_API_SUBPATH_SEARCH_URL = "/search";
+    private static final String INSTRUMENT_API_SUBPATH_IMPORT_URL = "/import";
 
     private MockMvc mockMvc;
 
     @Mock
     private InstrumentService instrumentService;
 
+    @Mock
+    private InstrumentExportService instrumentExportService;
+
+    @Mock
+    private InstrumentImportService instrumentImportService;
+
+    @Mock
+    private StockAlertBroadcaster stockAlertBroadcaster;
+
+    @Spy
+    private InstrumentETags instrumentETags = new InstrumentETags();
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private OperationExecutor operationExecutor;
+
+    @Mock
+    private InstrumentStatsService instrumentStatsService;
+
     @InjectMocks
     private InstrumentController instrumentController;
 
@@ -54,6 +138,7 @@ public class InstrumentControllerTest {
         mockMvc = MockMvcBuilders.standaloneSetup(instrumentController)
                 .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
                 .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .addFilters(new IdempotencyFilter(new IdempotencyProperties(), new RateLimitProperties()))
                 .build();
     }
 
@@ -105,6 +190,69 @@ public class InstrumentControllerTest {
                 .andExpect(jsonPath("$.type", is(instrumentDTO.getType().toString())));
     }
 
+    @Test
+    void whenGETIsCalledWithValidNameThenItsETagIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.findByName(instrumentDTO.getName())).thenReturn(instrumentDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/" + instrumentDTO.getName()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, instrumentETags.instrument(instrumentDTO.getName())));
+    }
+
+    @Test
+    void whenGETIsCalledWithTheCurrentETagThenNotModifiedStatusIsReturnedWithoutReading() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/" + instrumentDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, instrumentETags.instrument(instrumentDTO.getName())))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verifyNoInteractions(instrumentService);
+    }
+
+    @Test
+    void whenGETIsCalledWithAnETagOlderThanTheLastChangeThenOkStatusIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        String oldETag = instrumentETags.instrument(instrumentDTO.getName());
+        instrumentETags.modified(instrumentDTO.getName());
+
+        when(instrumentService.findByName(instrumentDTO.getName())).thenReturn(instrumentDTO);
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/" + instrumentDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, oldETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(instrumentDTO.getName())));
+    }
+
+    @Test
+    void whenGETListIsCalledWithTheCurrentCatalogETagThenNotModifiedStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, instrumentETags.catalog()))
+                .andExpect(status().isNotModified());
+
+        verifyNoInteractions(instrumentService);
+    }
+
+    @Test
+    void whenGETStatsByTypeIsCalledThenTheAggregatesOfEachTypeAreReturned() throws Exception {
+        when(instrumentStatsService.statsByType()).thenReturn(List.of(
+                new StockStatsDTO("GUITAR", 2, 30, 100, 1, 0.3, 0.25),
+                new StockStatsDTO("DRUM", 1, 5, 50, 0, 0.1, 0.1)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/stats/types"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].group", is("GUITAR")))
+                .andExpect(jsonPath("$[0].totalQuantity", is(30)))
+                .andExpect(jsonPath("$[0].belowMin", is(1)))
+                .andExpect(jsonPath("$[0].fillRatio", is(0.3)))
+                .andExpect(jsonPath("$[1].group", is("DRUM")));
+
+        verifyNoInteractions(instrumentService);
+    }
+
     @Test
     void whenGETIsCalledWithoutRegisteredNameThenNotFoundStatusIsReturned() throws Exception {
         // given
@@ -125,24 +273,50 @@ public class InstrumentControllerTest {
         InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
 
         //when
-        when(instrumentService.listAll()).thenReturn(Collections.singletonList(instrumentDTO));
+        when(instrumentService.listAfter(null, null)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .build());
 
         // then
         mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
                 .andExpect(jsonPath("$[0].name", is(instrumentDTO.getName())))
                 .andExpect(jsonPath("$[0].brand", is(instrumentDTO.getBrand())))
                 .andExpect(jsonPath("$[0].type", is(instrumentDTO.getType().toString())));
     }
 
+    @Test
+    void whenGETListAcceptsSmileThenTheInstrumentsAreEncodedInSmile() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.listAfter(null, null)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .build());
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
+                .accept(WireFormat.SMILE.getMediaType()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormat.SMILE.getMediaType()))
+                .andExpect(header().string(HttpHeaders.ETAG, instrumentETags.catalog(WireFormat.SMILE)))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+
+        InstrumentDTO[] instrumentDTOs = new ObjectMapper(new SmileFactory())
+                .readValue(mvcResult.getResponse().getContentAsByteArray(), InstrumentDTO[].class);
+        assertThat(instrumentDTOs[0], equalTo(instrumentDTO));
+    }
+
     @Test
     void whenGETListWithoutInstrumentsIsCalledThenOkStatusIsReturned() throws Exception {
         // given
         InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
 
         //when
-        when(instrumentService.listAll()).thenReturn(Collections.singletonList(instrumentDTO));
+        when(instrumentService.listAfter(null, null)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .build());
 
         // then
         mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
@@ -150,6 +324,75 @@ public class InstrumentControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void whenGETListHasANextKeysetPageThenTheLinkHeaderIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.listAfter(null, 1)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .nextCursor(instrumentDTO.getId())
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
+                .param("size", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + instrumentDTO.getId())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")));
+    }
+
+    @Test
+    void whenGETListIsCalledWithAPageThenOffsetPaginationIsUsed() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.listPage(1, 10)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .nextPage(2)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH)
+                .param("page", "1")
+                .param("size", "10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(instrumentDTO.getName())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=2")));
+    }
+
+    @Test
+    void whenGETSearchIsCalledThenTheFilteredPageIsReturned() throws Exception {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        InstrumentFilterDTO instrumentFilterDTO = InstrumentFilterDTO.builder()
+                .brand(instrumentDTO.getBrand())
+                .type(InstrumentType.GUITAR)
+                .lowStockMargin(5)
+                .build();
+
+        when(instrumentService.search(instrumentFilterDTO, null, 1)).thenReturn(InstrumentPageDTO.builder()
+                .instruments(Collections.singletonList(instrumentDTO))
+                .nextCursor(instrumentDTO.getId())
+                .build());
+
+        //in the URI, as a client sends them: the Link header is built from the request's query string
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_SEARCH_URL
+                + "?brand={brand}&type=GUITAR&lowStockMargin=5&size=1", instrumentDTO.getBrand())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(instrumentDTO.getName())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=" + instrumentDTO.getId())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("brand=" + instrumentDTO.getBrand())))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("type=GUITAR")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("lowStockMargin=5")));
+    }
+
+    @Test
+    void whenGETSearchIsCalledWithANegativeMarginThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_SEARCH_URL)
+                .param("lowStockMargin", "-1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void whenDELETEIsCalledWithValidIdThenNoContentStatusIsReturned() throws Exception {
         // given
@@ -195,6 +438,29 @@ public class InstrumentControllerTest {
                 .andExpect(jsonPath("$.quantity", is(instrumentDTO.getQuantity())));
     }
 
+    @Test
+    void whenPATCHIsCalledWithACborBodyThenTheInstrumentIsReturnedInCbor() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        instrumentDTO.setQuantity(instrumentDTO.getQuantity() + quantityDTO.getQuantity());
+
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity())).thenReturn(instrumentDTO);
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .contentType(WireFormat.CBOR.getMediaType())
+                .accept(WireFormat.CBOR.getMediaType())
+                .content(cborMapper.writeValueAsBytes(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormat.CBOR.getMediaType()))
+                .andReturn();
+
+        assertThat(cborMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), InstrumentDTO.class), equalTo(instrumentDTO));
+    }
+
     @Test
     void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
         QuantityDTO quantityDTO = QuantityDTO.builder()
@@ -211,6 +477,33 @@ public class InstrumentControllerTest {
                 .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenPATCHIsCalledToIncrementWithTooManyConflictsThenConflictStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity())).thenThrow(InstrumentConcurrentUpdateException.class);
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isConflict());
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementAndTheOwnerNodeDoesNotAnswerThenServiceUnavailableStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity()))
+                .thenThrow(new InstrumentOwnerUnavailableException(VALID_INSTRUMENT_ID, "127.0.0.1:7001"));
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     void whenPATCHIsCalledWithInvalidInstrumentIdToIncrementThenNotFoundStatusIsReturned() throws Exception {
         QuantityDTO quantityDTO = QuantityDTO.builder()
@@ -272,5 +565,214 @@ public class InstrumentControllerTest {
                 .content(asJsonString(quantityDTO)))
                 .andExpect(status().isNotFound());
     }
-}
 
+    @Test
+    void whenPOSTIsCalledWithACsvImportThenTheRowResultsAreReturned() throws Exception {
+        InstrumentImportResultDTO importResultDTO = new InstrumentImportResultDTO(1, 1, Collections.singletonList(
+                new InstrumentImportErrorDTO(2, "SG", "Instrument with name SG already registered in the system.")));
+
+        when(instrumentImportService.importInstruments(any(InputStream.class), eq(ImportFormat.CSV))).thenReturn(importResultDTO);
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_IMPORT_URL)
+                .contentType("text/csv;charset=UTF-8")
+                .content("name,brand,max,min,quantity,type\nLes Paul,Gibson,50,1,17,GUITAR\nSG,Gibson,50,1,17,GUITAR\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors[0].row", is(2)))
+                .andExpect(jsonPath("$.errors[0].name", is("SG")));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithAStockBatchThenOkStatusIsReturned() throws Exception {
+        StockBatchDTO stockBatchDTO = new StockBatchDTO(StockBatchMode.BEST_EFFORT,
+                Collections.singletonList(new StockAdjustmentDTO(VALID_INSTRUMENT_ID, -5)));
+        StockBatchResultDTO stockBatchResultDTO = new StockBatchResultDTO(1, 0, Collections.singletonList(
+                new StockAdjustmentResultDTO(VALID_INSTRUMENT_ID, -5, StockAdjustmentStatus.APPLIED, 12)));
+
+        when(instrumentService.adjustStock(stockBatchDTO)).thenReturn(stockBatchResultDTO);
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_STOCK_BATCH_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockBatchDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(1)))
+                .andExpect(jsonPath("$.results[0].status", is(StockAdjustmentStatus.APPLIED.toString())))
+                .andExpect(jsonPath("$.results[0].quantity", is(12)));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithAStockBatchOutOfRangeThenBadRequestStatusIsReturned() throws Exception {
+        StockBatchDTO stockBatchDTO = new StockBatchDTO(StockBatchMode.ATOMIC,
+                Collections.singletonList(new StockAdjustmentDTO(VALID_INSTRUMENT_ID, 150)));
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_STOCK_BATCH_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockBatchDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPOSTIsCalledWithARejectedAtomicStockBatchThenBadRequestStatusIsReturned() throws Exception {
+        StockBatchDTO stockBatchDTO = new StockBatchDTO(StockBatchMode.ATOMIC,
+                Collections.singletonList(new StockAdjustmentDTO(VALID_INSTRUMENT_ID, 50)));
+
+        when(instrumentService.adjustStock(stockBatchDTO)).thenThrow(InstrumentStockExceededException.class);
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + INSTRUMENT_API_SUBPATH_STOCK_BATCH_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockBatchDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETAlertStreamIsCalledThenTheSubscriptionIsKeptOpen() throws Exception {
+        when(stockAlertBroadcaster.subscribe()).thenReturn(new SseEmitter());
+
+        mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/alerts/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void whenGETExportIsCalledThenTheCatalogIsStreamed() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(instrumentExportService).export(any(OutputStream.class), eq(ExportFormat.NDJSON));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, ExportFormat.NDJSON.getMediaType()))
+                .andExpect(content().string("{\"id\":1}\n"));
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveStockThenCreatedStatusIsReturned() throws Exception {
+        ReservationRequestDTO reservationRequestDTO = new ReservationRequestDTO(3, 600L);
+        ReservationDTO reservationDTO = new ReservationDTO(7L, VALID_INSTRUMENT_ID, 3, Instant.parse("2020-06-01T10:10:00Z"));
+
+        when(stockReservationService.reserve(VALID_INSTRUMENT_ID, reservationRequestDTO)).thenReturn(reservationDTO);
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + "/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(reservationRequestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(7)))
+                .andExpect(jsonPath("$.quantity", is(3)));
+    }
+
+    @Test
+    void whenPOSTIsCalledToReserveMoreThanAllowedThenBadRequestStatusIsReturned() throws Exception {
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + "/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new ReservationRequestDTO(0, null))))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void whenPOSTIsCalledToConfirmAnExpiredReservationThenNotFoundStatusIsReturned() throws Exception {
+        when(stockReservationService.confirm(7L)).thenThrow(StockReservationNotFoundException.class);
+
+        mockMvc.perform(post(INSTRUMENT_API_URL_PATH + "/reservations/7/confirm"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenDELETEIsCalledToReleaseAReservationThenNoContentStatusIsReturned() throws Exception {
+        doNothing().when(stockReservationService).release(7L);
+
+        mockMvc.perform(MockMvcRequestBuilders.delete(INSTRUMENT_API_URL_PATH + "/reservations/7"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void whenPATCHIsRetriedWithTheSameIdempotencyKeyThenTheFirstResponseIsReplayed() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity())).thenReturn(instrumentDTO);
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .header("Idempotency-Key", "increment-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .header("Idempotency-Key", "increment-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.quantity", is(instrumentDTO.getQuantity())));
+
+        verify(instrumentService, times(1)).increment(VALID_INSTRUMENT_ID, quantityDTO.getQuantity());
+    }
+
+    @Test
+    void whenAnIdempotencyKeyIsReusedWithAnotherBodyThenUnprocessableEntityStatusIsReturned() throws Exception {
+        when(instrumentService.increment(VALID_INSTRUMENT_ID, 10))
+                .thenReturn(InstrumentDTOBuilder.builder().build().toInstrumentDTO());
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .header("Idempotency-Key", "increment-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(QuantityDTO.builder().quantity(10).build())))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_INCREMENT_URL)
+                .header("Idempotency-Key", "increment-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(QuantityDTO.builder().quantity(20).build())))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(instrumentService, times(1)).increment(eq(VALID_INSTRUMENT_ID), anyInt());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithPreferRespondAsyncThenTheOperationIsAccepted() throws Exception {
+        when(operationExecutor.submit(any())).thenReturn(OperationDTO.builder()
+                .id("operation-1")
+                .status(OperationStatus.PENDING)
+                .build());
+
+        mockMvc.perform(patch(INSTRUMENT_API_URL_PATH + "/" + VALID_INSTRUMENT_ID + INSTRUMENT_API_SUBPATH_DECREMENT_URL)
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(QuantityDTO.builder().quantity(5).build())))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost" + INSTRUMENT_API_URL_PATH + "/operations/operation-1"))
+                .andExpect(jsonPath("$.status", is(OperationStatus.PENDING.toString())));
+
+        verifyNoInteractions(instrumentService);
+    }
+
+    @Test
+    void whenGETIsCalledForAnOperationWithAWaitThenItIsReturnedOnceFinished() throws Exception {
+        when(operationExecutor.await("operation-1", Duration.ofSeconds(5))).thenReturn(CompletableFuture.completedFuture(
+                OperationDTO.builder()
+                        .id("operation-1")
+                        .status(OperationStatus.FAILED)
+                        .errorStatus(400)
+                        .error("min exceeded")
+                        .build()));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(INSTRUMENT_API_URL_PATH + "/operations/operation-1")
+                .param("waitSeconds", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is(OperationStatus.FAILED.toString())))
+                .andExpect(jsonPath("$.errorStatus", is(400)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.joao.musicalMarket.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+
+public class StockJournalTest {
+
+    private static final Runnable NOTHING = () -> { };
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void whenDeltasAreAppendedThenTheyAreSummedPerInstrumentOnReplay() {
+        StockJournal stockJournal = new StockJournal(journalDirectory, true);
+        stockJournal.append(1L, 10, NOTHING).join();
+        stockJournal.append(2L, -3, NOTHING).join();
+        stockJournal.append(1L, -4, NOTHING).join();
+        stockJournal.close();
+
+        Map<Long, Integer> deltas = new StockJournal(journalDirectory, true).readDeltasAfter(0);
+
+        assertThat(deltas, aMapWithSize(2));
+        assertThat(deltas, hasEntry(1L, 6));
+        assertThat(deltas, hasEntry(2L, -3));
+    }
+
+    @Test
+    void whenSegmentsAreCheckpointedThenOnlyTheLaterOnesAreReplayed() {
+        StockJournal stockJournal = new StockJournal(journalDirectory, true);
+        stockJournal.append(1L, 10, NOTHING).join();
+        long checkpoint = stockJournal.rotate();
+        stockJournal.append(1L, 5, NOTHING).join();
+        stockJournal.close();
+
+        Map<Long, Integer> deltas = stockJournal.readDeltasAfter(checkpoint);
+
+        assertThat(deltas, hasEntry(1L, 5));
+    }
+
+    @Test
+    void whenTheLastRecordIsTornThenItIsIgnored() throws IOException {
+        StockJournal stockJournal = new StockJournal(journalDirectory, true);
+        stockJournal.append(1L, 10, NOTHING).join();
+        long segment = stockJournal.rotate();
+        byte[] tornRecord = new byte[StockJournal.RECORD_SIZE];
+        tornRecord[7] = 1;
+        try (Stream<Path> segmentFiles = Files.list(journalDirectory)) {
+            Files.write(segmentFiles.findFirst().orElseThrow(), tornRecord, StandardOpenOption.APPEND);
+        }
+
+        Map<Long, Integer> deltas = new StockJournal(journalDirectory, true).readDeltasAfter(segment - 1);
+
+        assertThat(deltas, aMapWithSize(1));
+        assertThat(deltas, hasEntry(1L, 10));
+    }
+
+    @Test
+    void whenSegmentsAreDeletedThenNewSegmentsAreNumberedAfterTheCheckpoint() {
+        StockJournal stockJournal = new StockJournal(journalDirectory, true);
+        stockJournal.append(1L, 10, NOTHING).join();
+        long checkpoint = stockJournal.rotate();
+        stockJournal.deleteSegmentsUpTo(checkpoint);
+
+        StockJournal restartedStockJournal = new StockJournal(journalDirectory, true);
+        restartedStockJournal.startAfter(checkpoint);
+
+        assertThat(restartedStockJournal.readDeltasAfter(checkpoint), anEmptyMap());
+        assertThat(restartedStockJournal.rotate(), equalTo(checkpoint + 1));
+    }
+
+    @Test
+    void whenManyDeltasAreAppendedAtOnceThenEachOneIsDurableBeforeItCompletes() {
+        StockJournal stockJournal = new StockJournal(journalDirectory, true);
+        AtomicInteger durable = new AtomicInteger();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            written.add(stockJournal.append(i % 2, 1, durable::incrementAndGet)
+                    .thenRun(() -> assertThat(durable.get() > 0, equalTo(true))));
+        }
+        CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).join();
+        stockJournal.close();
+
+        Map<Long, Integer> deltas = new StockJournal(journalDirectory, true).readDeltasAfter(0);
+
+        assertThat(durable.get(), equalTo(1000));
+        assertThat(deltas, hasEntry(0L, 500));
+        assertThat(deltas, hasEntry(1L, 500));
+    }
+}
@@ -0,0 +1,72 @@
+package com.joao.musicalMarket.metrics;
+
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class InstrumentServiceMetricsTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InstrumentServiceMetrics instrumentServiceMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        instrumentServiceMetrics = new InstrumentServiceMetrics(meterRegistry);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(signature.getName()).thenReturn("increment");
+    }
+
+    @Test
+    void whenAServiceMethodReturnsThenItIsTimed() throws Throwable {
+        when(joinPoint.proceed()).thenReturn("result");
+
+        Object result = instrumentServiceMetrics.record(joinPoint);
+
+        assertThat(result, equalTo("result"));
+        assertThat(meterRegistry.get(InstrumentServiceMetrics.TIMER_NAME)
+                .tag("method", "increment")
+                .tag("exception", "none")
+                .timer()
+                .count(), equalTo(1L));
+    }
+
+    @Test
+    void whenAServiceMethodThrowsADomainExceptionThenItIsCounted() throws Throwable {
+        when(joinPoint.proceed()).thenThrow(new InstrumentStockExceededException(1L, 10));
+
+        assertThrows(InstrumentStockExceededException.class, () -> instrumentServiceMetrics.record(joinPoint));
+
+        assertThat(meterRegistry.get(InstrumentServiceMetrics.EXCEPTION_COUNTER_NAME)
+                .tag("exception", "InstrumentStockExceededException")
+                .counter()
+                .count(), equalTo(1.0));
+        assertThat(meterRegistry.get(InstrumentServiceMetrics.EXCEPTION_COUNTER_NAME)
+                .tag("exception", "InstrumentNotFoundException")
+                .counter()
+                .count(), equalTo(0.0));
+        assertThat(meterRegistry.get(InstrumentServiceMetrics.TIMER_NAME)
+                .tag("exception", "InstrumentStockExceededException")
+                .timer()
+                .count(), equalTo(1L));
+    }
+}
@@ -0,0 +1,101 @@
+package com.joao.musicalMarket.movement;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.StockMovementRepository;
+import com.joao.musicalMarket.repository.StockSnapshotRepository;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.OptionalInt;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+//runs the movement log against H2; without lag and retention a snapshot covers every movement up to now,
+//and the compaction deletes all of them, one movement per chunk
+@SpringBootTest(properties = {
+        "instrument.movements.snapshot-lag=0s",
+        "instrument.movements.retention=0s",
+        "instrument.movements.compaction-chunk-size=1"
+})
+public class StockMovementLogTest {
+
+    @Autowired
+    private InstrumentService instrumentService;
+
+    @Autowired
+    private StockMovementLog stockMovementLog;
+
+    @Autowired
+    private StockSnapshotter stockSnapshotter;
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @AfterEach
+    void tearDown() {
+        instrumentRepository.deleteAllInBatch();
+        stockMovementRepository.deleteAllInBatch();
+        stockSnapshotRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void whenTheStockChangesThenTheQuantityAtEachPastTimeIsRebuilt() throws Exception {
+        // given
+        Instant beforeCreation = tick();
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder().quantity(17).build().toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+        Instant afterCreation = tick();
+        instrumentService.increment(id, 3);
+        Instant afterIncrement = tick();
+        instrumentService.decrement(id, 5);
+        Instant afterDecrement = tick();
+
+        // then
+        assertThat(stockMovementLog.quantityAt(id, beforeCreation), is(OptionalInt.empty()));
+        assertThat(stockMovementLog.quantityAt(id, afterCreation), is(OptionalInt.of(17)));
+        assertThat(stockMovementLog.quantityAt(id, afterIncrement), is(OptionalInt.of(20)));
+        assertThat(stockMovementLog.quantityAt(id, afterDecrement), is(OptionalInt.of(15)));
+    }
+
+    @Test
+    void whenTheMovementsAreCompactedThenTheSnapshotKeepsTheQuantity() throws Exception {
+        // given
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder().quantity(17).build().toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+        instrumentService.increment(id, 3);
+        tick();
+
+        // when
+        stockSnapshotter.snapshotAndCompact();
+        tick();
+        instrumentService.increment(id, 5);
+        Instant afterLastIncrement = tick();
+
+        // then
+        assertThat(stockMovementRepository.count(), is(1L));
+        assertThat(stockMovementLog.quantityAt(id, afterLastIncrement), is(OptionalInt.of(25)));
+        assertThat(instrumentService.findStockAt(id, afterLastIncrement).getQuantity(), equalTo(25));
+    }
+
+    //timestamps on both sides of a call never collide with the ones the call writes
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(5);
+        Instant now = Instant.now();
+        Thread.sleep(5);
+        return now;
+    }
+}
@@ -0,0 +1,69 @@
+package com.joao.musicalMarket.operation;
+
+import com.joao.musicalMarket.config.OperationProperties;
+import com.joao.musicalMarket.dto.OperationDTO;
+import com.joao.musicalMarket.enums.OperationStatus;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.OperationNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OperationExecutorTest {
+
+    private OperationExecutor operationExecutor;
+
+    @BeforeEach
+    void setUp() {
+        operationExecutor = new OperationExecutor(new OperationProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        operationExecutor.destroy();
+    }
+
+    @Test
+    void whenAnOperationIsAwaitedThenItsResultIsReturnedOnceItFinishes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        OperationDTO acceptedOperationDTO = operationExecutor.submit(() -> {
+            release.await();
+            return "applied";
+        });
+
+        assertThat(acceptedOperationDTO.getStatus(), equalTo(OperationStatus.PENDING));
+        assertThat(operationExecutor.await(acceptedOperationDTO.getId(), Duration.ofMillis(10)).get(1, TimeUnit.SECONDS).getStatus(),
+                equalTo(OperationStatus.PENDING));
+
+        release.countDown();
+        OperationDTO finishedOperationDTO = operationExecutor.await(acceptedOperationDTO.getId(), Duration.ofSeconds(5))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(finishedOperationDTO.getStatus(), equalTo(OperationStatus.SUCCEEDED));
+        assertThat(finishedOperationDTO.getResult(), equalTo("applied"));
+    }
+
+    @Test
+    void whenAnOperationIsRejectedThenItFailsWithTheStatusOfTheRejection() throws Exception {
+        OperationDTO acceptedOperationDTO = operationExecutor.submit(() -> {
+            throw new InstrumentNegativeStockExceededException(1L, 5);
+        });
+
+        OperationDTO finishedOperationDTO = operationExecutor.await(acceptedOperationDTO.getId(), Duration.ofSeconds(5))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(finishedOperationDTO.getStatus(), equalTo(OperationStatus.FAILED));
+        assertThat(finishedOperationDTO.getErrorStatus(), equalTo(400));
+    }
+
+    @Test
+    void whenAnUnknownOperationIsPolledThenAnExceptionIsThrown() {
+        assertThrows(OperationNotFoundException.class, () -> operationExecutor.find("unknown"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.joao.musicalMarket.ratelimit;
+
+import com.joao.musicalMarket.config.RateLimitProperties;
+import com.joao.musicalMarket.controller.InstrumentController;
+import com.joao.musicalMarket.dto.QuantityDTO;
+import com.joao.musicalMarket.enums.RateLimitedEndpoint;
+import com.joao.musicalMarket.exception.InstrumentRateLimitExceededException;
+import com.joao.musicalMarket.exception.InstrumentServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class RateLimitInterceptorTest {
+
+    private static final String API_KEY = "store-1";
+    private static final String OTHER_API_KEY = "store-2";
+
+    private RateLimitProperties rateLimitProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private HandlerMethod increment;
+    private HandlerMethod deleteById;
+
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        rateLimitProperties = new RateLimitProperties();
+        rateLimitProperties.getEndpoints().put(RateLimitedEndpoint.INCREMENT, new RateLimitProperties.Limit(2, 0.1));
+        rateLimitProperties.getApiKeys().put(API_KEY, new RateLimitProperties.Limit(2, 0.1));
+        rateLimitProperties.getApiKeys().put(OTHER_API_KEY, new RateLimitProperties.Limit(2, 0.1));
+        meterRegistry = new SimpleMeterRegistry();
+        InstrumentController instrumentController = mock(InstrumentController.class);
+        increment = new HandlerMethod(instrumentController,
+                InstrumentController.class.getMethod("increment", Long.class, QuantityDTO.class));
+        deleteById = new HandlerMethod(instrumentController,
+                InstrumentController.class.getMethod("deleteById", Long.class));
+    }
+
+    @Test
+    void whenTheBucketOfTheClientIsEmptyThenTooManyRequestsIsThrownWithRetryAfter() throws Exception {
+        RateLimitInterceptor rateLimitInterceptor = interceptor();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(rateLimitInterceptor.preHandle(request(API_KEY), response, increment), is(true));
+        assertThat(rateLimitInterceptor.preHandle(request(API_KEY), response, increment), is(true));
+        assertThrows(InstrumentRateLimitExceededException.class,
+                () -> rateLimitInterceptor.preHandle(request(API_KEY), response, increment));
+
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER), equalTo("10"));
+        assertThat(meterRegistry.get(RateLimitInterceptor.REJECTED_COUNTER_NAME)
+                .tags("endpoint", "INCREMENT", "reason", "rate_limited").counter().count(), equalTo(1.0));
+    }
+
+    @Test
+    void whenOneClientIsLimitedThenOtherClientsAndEndpointsAreNot() throws Exception {
+        RateLimitInterceptor rateLimitInterceptor = interceptor();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitInterceptor.preHandle(request(API_KEY), response, increment);
+        rateLimitInterceptor.preHandle(request(API_KEY), response, increment);
+
+        assertThat(rateLimitInterceptor.preHandle(request(OTHER_API_KEY), response, increment), is(true));
+        //same address, but a request without key has a bucket of its own
+        assertThat(rateLimitInterceptor.preHandle(request(null), response, increment), is(true));
+        assertThat(rateLimitInterceptor.preHandle(request(API_KEY), response, deleteById), is(true));
+    }
+
+    @Test
+    void whenTheApiKeyIsNotListedThenTheClientIsLimitedByItsAddress() throws Exception {
+        RateLimitInterceptor rateLimitInterceptor = interceptor();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitInterceptor.preHandle(request("made-up-1"), response, increment);
+        rateLimitInterceptor.preHandle(request("made-up-2"), response, increment);
+
+        assertThrows(InstrumentRateLimitExceededException.class,
+                () -> rateLimitInterceptor.preHandle(request(null), response, increment));
+        assertThat(rateLimitInterceptor.preHandle(request(API_KEY), new MockHttpServletResponse(), increment), is(true));
+    }
+
+    @Test
+    void whenTooManyMutationsAreInFlightThenNewOnesAreShedUntilOneCompletes() throws Exception {
+        rateLimitProperties.getShedding().setMaxInFlight(1);
+        RateLimitInterceptor rateLimitInterceptor = interceptor();
+        MockHttpServletRequest inFlight = request(OTHER_API_KEY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitInterceptor.preHandle(inFlight, new MockHttpServletResponse(), increment);
+
+        assertThrows(InstrumentServiceOverloadedException.class,
+                () -> rateLimitInterceptor.preHandle(request(API_KEY), response, increment));
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER), equalTo("1"));
+
+        rateLimitInterceptor.afterCompletion(inFlight, new MockHttpServletResponse(), increment, null);
+        assertThat(rateLimitInterceptor.preHandle(request(API_KEY), new MockHttpServletResponse(), increment), is(true));
+    }
+
+    private RateLimitInterceptor interceptor() {
+        return new RateLimitInterceptor(rateLimitProperties, new RateLimiter(rateLimitProperties),
+                new LoadShedder(rateLimitProperties, meterRegistry), meterRegistry);
+    }
+
+    private MockHttpServletRequest request(String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (apiKey != null) {
+            request.addHeader(rateLimitProperties.getApiKeyHeader(), apiKey);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,38 @@
+package com.joao.musicalMarket.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void whenTheBurstIsUsedThenTheNextRequestWaitsForOneRefill() {
+        TokenBucket tokenBucket = new TokenBucket(3, 2, 0);
+
+        assertThat(tokenBucket.tryAcquire(0), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(0), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(0), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(0), equalTo(SECOND / 2));
+        assertThat(tokenBucket.tryAcquire(SECOND / 4), equalTo(SECOND / 4));
+        assertThat(tokenBucket.tryAcquire(SECOND / 2), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(SECOND / 2), equalTo(SECOND / 2));
+    }
+
+    @Test
+    void whenTheBucketIsIdleThenItRefillsUpToItsCapacityOnly() {
+        TokenBucket tokenBucket = new TokenBucket(2, 1, 0);
+        tokenBucket.tryAcquire(0);
+        tokenBucket.tryAcquire(0);
+
+        long later = 60 * SECOND;
+        assertThat(tokenBucket.tryAcquire(later), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(later), equalTo(0L));
+        assertThat(tokenBucket.tryAcquire(later), equalTo(SECOND));
+    }
+}
@@ -0,0 +1,89 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+//runs the Criteria queries against H2
+@DataJpaTest
+@Import(InstrumentFilterRepository.class)
+public class InstrumentFilterRepositoryTest {
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @Autowired
+    private InstrumentFilterRepository instrumentFilterRepository;
+
+    private InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    @BeforeEach
+    void setUp() {
+        save("Les Paul", "Gibson", InstrumentType.GUITAR, 10, 12);
+        save("SG", "Gibson", InstrumentType.GUITAR, 10, 40);
+        save("Stage Custom", "Yamaha", InstrumentType.DRUM, 2, 3);
+        save("Stratocaster", "Fender", InstrumentType.GUITAR, 1, 30);
+    }
+
+    @Test
+    void whenBrandAndTypeAreGivenThenOnlyMatchingInstrumentsAreReturned() {
+        List<String> names = find(InstrumentFilterDTO.builder().brand("Fender").type(InstrumentType.GUITAR).build(), 10);
+
+        assertThat(names, contains("Stratocaster"));
+    }
+
+    @Test
+    void whenLowStockMarginIsGivenThenInstrumentsCloseToTheirMinAreReturned() {
+        List<String> names = find(InstrumentFilterDTO.builder().lowStockMargin(5).build(), 10);
+
+        assertThat(names, contains("Les Paul", "Stage Custom"));
+    }
+
+    @Test
+    void whenMaxQuantityIsGivenThenInstrumentsUpToItAreReturnedInIdOrder() {
+        List<String> names = find(InstrumentFilterDTO.builder().maxQuantity(30).build(), 2);
+
+        assertThat(names, contains("Les Paul", "Stage Custom"));
+    }
+
+    @Test
+    void whenNothingMatchesThenAnEmptyListIsReturned() {
+        List<String> names = find(InstrumentFilterDTO.builder().brand("Ludwig").build(), 10);
+
+        assertThat(names, empty());
+    }
+
+    private List<String> find(InstrumentFilterDTO instrumentFilterDTO, int limit) {
+        return instrumentFilterRepository.findByFilter(instrumentFilterDTO, 0L, limit)
+                .stream()
+                .map(Instrument::getName)
+                .collect(Collectors.toList());
+    }
+
+    private void save(String name, String brand, InstrumentType type, int min, int quantity) {
+        instrumentRepository.save(instrumentMapper.toModel(InstrumentDTOBuilder.builder()
+                .id(null)
+                .name(name)
+                .brand(brand)
+                .type(type)
+                .min(min)
+                .max(100)
+                .quantity(quantity)
+                .build()
+                .toInstrumentDTO()));
+    }
+}
@@ -0,0 +1,116 @@
+package com.joao.musicalMarket.repository;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.InstrumentType;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.projection.BrandStockStats;
+import com.joao.musicalMarket.projection.StockStats;
+import com.joao.musicalMarket.projection.TypeStockStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+//runs the native single statement and aggregate queries against H2
+@DataJpaTest
+public class InstrumentRepositoryTest {
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    private InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    @Test
+    void whenDeleteReturningIsCalledWithValidIdThenTheDeletedInstrumentIsReturned() {
+        Instrument instrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().build().toInstrumentDTO());
+        instrument.setId(null);
+        Instrument savedInstrument = instrumentRepository.saveAndFlush(instrument);
+
+        Optional<Instrument> deletedInstrument = instrumentRepository.deleteReturningById(savedInstrument.getId());
+
+        assertThat(deletedInstrument.map(Instrument::getName), is(equalTo(Optional.of(savedInstrument.getName()))));
+        assertThat(deletedInstrument.map(Instrument::getQuantity), is(equalTo(Optional.of(savedInstrument.getQuantity()))));
+        assertThat(instrumentRepository.existsById(savedInstrument.getId()), is(false));
+    }
+
+    @Test
+    void whenDeleteReturningIsCalledWithInvalidIdThenNothingIsReturned() {
+        assertThat(instrumentRepository.deleteReturningById(1L).isPresent(), is(false));
+    }
+
+    @Test
+    void whenAGuardedIncrementIsWithinMaxThenTheRowIsUpdatedAndItsVersionMoves() {
+        Instrument instrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().build().toInstrumentDTO());
+        instrument.setId(null);
+        Instrument savedInstrument = instrumentRepository.saveAndFlush(instrument);
+
+        int updatedRows = instrumentRepository.incrementQuantity(savedInstrument.getId(), 10);
+
+        Optional<Instrument> incrementedInstrument = instrumentRepository.findById(savedInstrument.getId());
+        assertThat(updatedRows, is(1));
+        assertThat(incrementedInstrument.map(Instrument::getQuantity), is(equalTo(Optional.of(savedInstrument.getQuantity() + 10))));
+        assertThat(incrementedInstrument.map(Instrument::getVersion), is(equalTo(Optional.of(savedInstrument.getVersion() + 1))));
+    }
+
+    @Test
+    void whenAGuardedDecrementWouldGoBelowMinThenNoRowIsUpdated() {
+        Instrument instrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().build().toInstrumentDTO());
+        instrument.setId(null);
+        Instrument savedInstrument = instrumentRepository.saveAndFlush(instrument);
+
+        int updatedRows = instrumentRepository.decrementQuantity(savedInstrument.getId(), savedInstrument.getQuantity());
+
+        assertThat(updatedRows, is(0));
+        assertThat(instrumentRepository.findById(savedInstrument.getId()).map(Instrument::getQuantity),
+                is(equalTo(Optional.of(savedInstrument.getQuantity()))));
+    }
+
+    @Test
+    void whenStockStatsAreQueriedThenEachGroupIsAggregatedByTheDatabase() {
+        instrumentRepository.saveAndFlush(new Instrument(null, "Stratocaster", "Fender", 100, 10, 50, 0, InstrumentType.GUITAR, 0));
+        instrumentRepository.saveAndFlush(new Instrument(null, "Telecaster", "Fender", 100, 10, 5, 0, InstrumentType.GUITAR, 0));
+        instrumentRepository.saveAndFlush(new Instrument(null, "Pearl Export", "Pearl", 50, 1, 25, 0, InstrumentType.DRUM, 0));
+
+        StockStats stockStats = instrumentRepository.stockStats();
+        List<TypeStockStats> stockStatsByType = instrumentRepository.stockStatsByType();
+        List<BrandStockStats> stockStatsByBrand = instrumentRepository.stockStatsByBrand();
+
+        assertThat(stockStats.getInstruments(), is(3L));
+        assertThat(stockStats.getTotalQuantity(), is(80L));
+        assertThat(stockStats.getTotalMax(), is(250L));
+        assertThat(stockStats.getBelowMin(), is(1L));
+        assertThat(stockStats.getFillRatio(), closeTo(0.32, 1e-9));
+        assertThat(stockStats.getAverageFillRatio(), closeTo((0.5 + 0.05 + 0.5) / 3, 1e-9));
+
+        //ordered by type name: DRUM, GUITAR
+        assertThat(stockStatsByType.size(), is(2));
+        assertThat(stockStatsByType.get(0).getType(), is(InstrumentType.DRUM));
+        assertThat(stockStatsByType.get(1).getType(), is(InstrumentType.GUITAR));
+        assertThat(stockStatsByType.get(1).getTotalQuantity(), is(55L));
+        assertThat(stockStatsByType.get(1).getBelowMin(), is(1L));
+
+        assertThat(stockStatsByBrand.get(0).getBrand(), is(equalTo("Fender")));
+        assertThat(stockStatsByBrand.get(0).getInstruments(), is(2L));
+        assertThat(stockStatsByBrand.get(1).getBrand(), is(equalTo("Pearl")));
+        assertThat(stockStatsByBrand.get(1).getFillRatio(), closeTo(0.5, 1e-9));
+    }
+
+    @Test
+    void whenStockStatsAreQueriedWithoutInstrumentsThenTheTotalsAreZero() {
+        StockStats stockStats = instrumentRepository.stockStats();
+
+        assertThat(stockStats.getInstruments(), is(0L));
+        assertThat(stockStats.getTotalQuantity(), is(0L));
+        assertThat(stockStats.getFillRatio(), is(nullValue()));
+        assertThat(instrumentRepository.stockStatsByType().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,92 @@
+package com.joao.musicalMarket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.ExportFormat;
+import com.joao.musicalMarket.ledger.StockLedger;
+import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InstrumentExportServiceTest {
+
+    @Mock
+    private InstrumentRepository instrumentRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
+
+    private InstrumentExportService instrumentExportService;
+
+    @BeforeEach
+    void setUp() {
+        instrumentExportService = new InstrumentExportService(instrumentRepository, entityManager, stockLedger, objectMapper);
+    }
+
+    @Test
+    void whenExportIsCalledWithNdjsonThenOneInstrumentPerLineIsWritten() throws IOException {
+        InstrumentDTO firstInstrumentDTO = InstrumentDTOBuilder.builder().id(1L).name("First").build().toInstrumentDTO();
+        InstrumentDTO secondInstrumentDTO = InstrumentDTOBuilder.builder().id(2L).name("Second").build().toInstrumentDTO();
+
+        when(instrumentRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(
+                instrumentMapper.toModel(firstInstrumentDTO),
+                instrumentMapper.toModel(secondInstrumentDTO)));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        instrumentExportService.export(outputStream, ExportFormat.NDJSON);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, equalTo(2));
+        assertThat(objectMapper.readValue(lines[0], InstrumentDTO.class), equalTo(firstInstrumentDTO));
+        assertThat(objectMapper.readValue(lines[1], InstrumentDTO.class), equalTo(secondInstrumentDTO));
+    }
+
+    @Test
+    void whenExportIsCalledWithJsonThenAnArrayIsWritten() throws IOException {
+        InstrumentDTO instrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(instrumentMapper.toModel(instrumentDTO)));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        instrumentExportService.export(outputStream, ExportFormat.JSON);
+
+        InstrumentDTO[] exportedInstruments = objectMapper.readValue(outputStream.toByteArray(), InstrumentDTO[].class);
+        assertThat(exportedInstruments, arrayContaining(instrumentDTO));
+    }
+
+    @Test
+    void whenExportHasManyRowsThenThePersistenceContextIsClearedPeriodically() throws IOException {
+        int rows = InstrumentExportService.EXPORT_BATCH_SIZE * 3;
+        Stream<Instrument> instruments = IntStream.range(0, rows)
+                .mapToObj(i -> instrumentMapper.toModel(InstrumentDTOBuilder.builder().id((long) i).build().toInstrumentDTO()));
+
+        when(instrumentRepository.streamAllByOrderByIdAsc()).thenReturn(instruments);
+
+        instrumentExportService.export(new ByteArrayOutputStream(), ExportFormat.NDJSON);
+
+        verify(entityManager, times(3)).clear();
+    }
+}
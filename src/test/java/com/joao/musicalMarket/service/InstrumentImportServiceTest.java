@@ -0,0 +1,102 @@
+package com.joao.musicalMarket.service;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentImportErrorDTO;
+import com.joao.musicalMarket.dto.InstrumentImportResultDTO;
+import com.joao.musicalMarket.enums.ImportFormat;
+import com.joao.musicalMarket.exception.InstrumentImportUnreadableException;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//runs the import against H2, so the sequence ids, the JDBC batches and the duplicate check are the real ones
+@SpringBootTest
+public class InstrumentImportServiceTest {
+
+    private static final String CSV_HEADER = "name,brand,max,min,quantity,type\n";
+
+    @Autowired
+    private InstrumentImportService instrumentImportService;
+
+    @Autowired
+    private InstrumentService instrumentService;
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @AfterEach
+    void tearDown() {
+        instrumentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void whenACsvWithInvalidRowsIsImportedThenTheValidRowsAreCreatedAndTheOthersReported() throws Exception {
+        // given
+        instrumentService.createInstrument(InstrumentDTOBuilder.builder().name("SG").build().toInstrumentDTO());
+        String csv = CSV_HEADER +
+                "Les Paul,Gibson,50,1,17,GUITAR\n" +
+                "SG,Gibson,50,1,17,GUITAR\n" +
+                "Stage Custom,Yamaha,50,1,17,BASS\n" +
+                "Les Paul,Epiphone,50,1,17,GUITAR\n" +
+                "Stratocaster,Fender,50,1,170,GUITAR\n" +
+                "Flute,Yamaha,,1,17,FLUTE\n";
+
+        // when
+        InstrumentImportResultDTO result = importInstruments(csv, ImportFormat.CSV);
+
+        // then
+        assertThat(result.getImported(), is(1));
+        assertThat(result.getRejected(), is(5));
+        assertThat(result.getErrors().stream().map(InstrumentImportErrorDTO::getRow).collect(Collectors.toList()),
+                contains(2, 3, 4, 5, 6));
+        assertThat(result.getErrors().get(0).getMessage(), containsString("already registered"));
+        assertThat(result.getErrors().get(2).getMessage(), containsString("row 1"));
+        assertThat(result.getErrors().get(3).getMessage(), containsString("quantity"));
+        assertThat(instrumentService.findByName("Les Paul").getBrand(), is(equalTo("Gibson")));
+    }
+
+    @Test
+    void whenAJsonArrayLargerThanABatchIsImportedThenEveryInstrumentIsCreated() throws Exception {
+        // given
+        int instruments = InstrumentImportService.IMPORT_BATCH_SIZE * 2 + 1;
+        String json = IntStream.rangeClosed(1, instruments)
+                .mapToObj(row -> String.format("{\"name\":\"instrument-%d\",\"brand\":\"Yamaha\",\"max\":50,\"min\":1,\"quantity\":10,\"type\":\"DRUM\"}", row))
+                .collect(Collectors.joining(",", "[", "]"));
+
+        // when
+        InstrumentImportResultDTO result = importInstruments(json, ImportFormat.JSON);
+
+        // then
+        assertThat(result.getImported(), is(instruments));
+        assertThat(result.getErrors(), is(empty()));
+        assertThat(instrumentRepository.count(), is((long) instruments));
+    }
+
+    @Test
+    void whenTheFileIsMalformedThenNothingIsImported() {
+        String json = "[{\"name\":\"Les Paul\",\"brand\":\"Gibson\",\"max\":50,\"min\":1,\"quantity\":17,\"type\":\"GUITAR\"}, {\"name\":";
+
+        assertThrows(InstrumentImportUnreadableException.class, () -> importInstruments(json, ImportFormat.JSON));
+        assertThat(instrumentRepository.count(), is(0L));
+    }
+
+    private InstrumentImportResultDTO importInstruments(String content, ImportFormat format) throws Exception {
+        return instrumentImportService.importInstruments(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format);
+    }
+}
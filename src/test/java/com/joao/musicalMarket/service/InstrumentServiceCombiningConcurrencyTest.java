@@ -0,0 +1,15 @@
+package com.joao.musicalMarket.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+//same contention scenarios, with the instrument turning hot after the first window so its mutations are
+//merged by the combining queue; the retries cover the version conflicts while both paths are in use
+@SpringBootTest(properties = {
+        "instrument.stock.combining.sample-rate=1",
+        "instrument.stock.combining.hot-threshold-per-second=1",
+        "instrument.stock.combining.window-millis=20",
+        "instrument.stock.retry.max-attempts=1000",
+        "instrument.stock.retry.max-backoff=10ms"
+})
+public class InstrumentServiceCombiningConcurrencyTest extends InstrumentServiceConcurrencyTest {
+}
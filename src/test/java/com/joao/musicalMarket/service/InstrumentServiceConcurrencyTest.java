@@ -0,0 +1,202 @@
+package com.joao.musicalMarket.service;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+//runs the real service against H2 with many threads hitting the same instrument,
+//and checks the final stock is the same one a serial execution would produce
+@SpringBootTest
+public class InstrumentServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50;
+    //a mode that stops making progress fails the test instead of hanging it
+    private static final long TIMEOUT_MINUTES = 2;
+
+    @Autowired
+    private InstrumentService instrumentService;
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @AfterEach
+    void tearDown() {
+        instrumentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void whenConcurrentIncrementsAndDecrementsAreCalledThenNoUpdateIsLost() throws Exception {
+        // given
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .max(10000)
+                .min(0)
+                .quantity(5000)
+                .build()
+                .toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+
+        // when
+        runConcurrently(thread -> {
+            for (int operation = 0; operation < OPERATIONS_PER_THREAD; operation++) {
+                if (operation % 2 == 0) {
+                    instrumentService.increment(id, 3);
+                } else {
+                    instrumentService.decrement(id, 2);
+                }
+            }
+            return OPERATIONS_PER_THREAD;
+        });
+
+        // then
+        int expectedQuantity = 5000 + THREADS * (OPERATIONS_PER_THREAD / 2) * (3 - 2);
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(expectedQuantity));
+    }
+
+    @Test
+    void whenConcurrentIncrementsExceedMaxThenOnlyTheAllowedOnesAreApplied() throws Exception {
+        // given
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .max(100)
+                .min(0)
+                .quantity(0)
+                .build()
+                .toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+
+        // when
+        int appliedIncrements = runConcurrently(thread -> {
+            int applied = 0;
+            for (int operation = 0; operation < OPERATIONS_PER_THREAD; operation++) {
+                try {
+                    instrumentService.increment(id, 1);
+                    applied++;
+                } catch (InstrumentStockExceededException e) {
+                    //rejected by the max check, as it would be in a serial execution
+                }
+            }
+            return applied;
+        });
+
+        // then
+        assertThat(appliedIncrements, equalTo(100));
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(100));
+    }
+
+    @Test
+    void whenConcurrentDecrementsExceedMinThenOnlyTheAllowedOnesAreApplied() throws Exception {
+        // given
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .max(500)
+                .min(10)
+                .quantity(110)
+                .build()
+                .toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+
+        // when
+        int appliedDecrements = runConcurrently(thread -> {
+            int applied = 0;
+            for (int operation = 0; operation < OPERATIONS_PER_THREAD; operation++) {
+                try {
+                    instrumentService.decrement(id, 1);
+                    applied++;
+                } catch (InstrumentNegativeStockExceededException e) {
+                    //rejected by the min check, as it would be in a serial execution
+                }
+            }
+            return applied;
+        });
+
+        // then
+        assertThat(appliedDecrements, equalTo(100));
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(10));
+    }
+
+    @Test
+    void whenAWriteReturnsThenFindByNameNeverReturnsTheOldStock() throws Exception {
+        // given
+        InstrumentDTO instrumentDTO = instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .max(10000)
+                .min(0)
+                .quantity(0)
+                .build()
+                .toInstrumentDTO());
+        Long id = instrumentDTO.getId();
+        String name = instrumentDTO.getName();
+
+        // when
+        //thread 0 is the only writer and checks its own reads, the others keep reloading the cached entry
+        int staleReads = runConcurrently(thread -> {
+            int stale = 0;
+            for (int operation = 0; operation < OPERATIONS_PER_THREAD; operation++) {
+                if (thread == 0) {
+                    int quantityAfterIncrement = instrumentService.increment(id, 1).getQuantity();
+                    if (instrumentService.findByName(name).getQuantity() != quantityAfterIncrement) {
+                        stale++;
+                    }
+                } else {
+                    instrumentService.findByName(name);
+                }
+            }
+            return stale;
+        });
+
+        // then
+        assertThat(staleReads, equalTo(0));
+        assertThat(instrumentService.findByName(name).getQuantity(), equalTo(OPERATIONS_PER_THREAD));
+    }
+
+    //starts all threads at the same time and returns the sum of their results
+    private int runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                Callable<Integer> callable = () -> {
+                    startSignal.await();
+                    return task.run(threadNumber);
+                };
+                results.add(executor.submit(callable));
+            }
+            startSignal.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            }
+            return total;
+        } finally {
+            //a failed thread fails the test at once, and the others must not outlive it into the cleanup
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        int run(int thread) throws Exception;
+    }
+}
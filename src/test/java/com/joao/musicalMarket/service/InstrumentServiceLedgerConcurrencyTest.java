@@ -0,0 +1,11 @@
+package com.joao.musicalMarket.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+//same contention scenarios, with the quantities kept in the in-memory ledger
+@SpringBootTest(properties = {
+        "instrument.stock.locking-mode=ledger",
+        "instrument.stock.ledger.journal-directory=target/ledger-test-${random.uuid}"
+})
+public class InstrumentServiceLedgerConcurrencyTest extends InstrumentServiceConcurrencyTest {
+}
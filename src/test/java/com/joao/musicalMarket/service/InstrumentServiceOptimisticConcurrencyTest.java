@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+//same contention scenarios, with version checks and retries instead of the guarded UPDATE
+@SpringBootTest(properties = {
+        "instrument.stock.locking-mode=optimistic",
+        "instrument.stock.retry.max-attempts=200",
+        "instrument.stock.retry.max-backoff=10ms"
+})
+public class InstrumentServiceOptimisticConcurrencyTest extends InstrumentServiceConcurrencyTest {
+}
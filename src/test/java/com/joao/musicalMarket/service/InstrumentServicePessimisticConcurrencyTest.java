@@ -0,0 +1,8 @@
+package com.joao.musicalMarket.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+//same contention scenarios, with the row locked by SELECT ... FOR UPDATE
+@SpringBootTest(properties = "instrument.stock.locking-mode=pessimistic")
+public class InstrumentServicePessimisticConcurrencyTest extends InstrumentServiceConcurrencyTest {
+}
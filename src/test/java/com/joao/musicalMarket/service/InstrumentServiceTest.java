@@ -1,22 +1,70 @@
 package com.joao.musicalMarket.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.alert.StockAlertPublisher;
+import com.joao.musicalMarket.cache.InstrumentETags;
+import com.joao.musicalMarket.cache.InstrumentNameCache;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.cluster.ClusterInvalidations;
+import com.joao.musicalMarket.cluster.ClusterNode;
+import com.joao.musicalMarket.cluster.StockOwnership;
+import com.joao.musicalMarket.combining.HotKeyDetector;
+import com.joao.musicalMarket.combining.StockCombiner;
+import com.joao.musicalMarket.config.AlertProperties;
+import com.joao.musicalMarket.config.CatalogProperties;
+import com.joao.musicalMarket.config.ClusterProperties;
+import com.joao.musicalMarket.config.InstrumentCacheProperties;
+import com.joao.musicalMarket.config.ListingProperties;
+import com.joao.musicalMarket.config.StockProperties;
 import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentFilterDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.dto.StockAdjustmentDTO;
+import com.joao.musicalMarket.dto.StockAlertDTO;
+import com.joao.musicalMarket.dto.StockBatchDTO;
+import com.joao.musicalMarket.dto.StockBatchResultDTO;
 import com.joao.musicalMarket.entity.Instrument;
+import com.joao.musicalMarket.enums.StockAdjustmentStatus;
+import com.joao.musicalMarket.enums.StockAlertType;
+import com.joao.musicalMarket.enums.StockBatchMode;
+import com.joao.musicalMarket.enums.StockLockingMode;
 import com.joao.musicalMarket.exception.InstrumentAlreadyRegisteredException;
+import com.joao.musicalMarket.exception.InstrumentConcurrentUpdateException;
 import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
 import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.exception.InstrumentOwnerUnavailableException;
 import com.joao.musicalMarket.exception.InstrumentStockExceededException;
+import com.joao.musicalMarket.ledger.StockLedger;
 import com.joao.musicalMarket.mapper.InstrumentMapper;
+import com.joao.musicalMarket.metrics.InstrumentQuantityGauges;
+import com.joao.musicalMarket.movement.StockMovementLog;
+import com.joao.musicalMarket.repository.InstrumentFilterRepository;
 import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.InstrumentStockBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.TransactionSystemException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.lessThan;
@@ -28,24 +76,84 @@ import static org.mockito.Mockito.when;
 public class InstrumentServiceTest {
 
     private static final long INVALID_BEER_ID = 1L;
+    private static final int DEFAULT_PAGE_SIZE = 50;
 
     @Mock
     private InstrumentRepository instrumentRepository;
 
     private InstrumentMapper instrumentMapper = InstrumentMapper.INSTANCE;
 
-    @InjectMocks
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private InstrumentStockBatchRepository instrumentStockBatchRepository;
+
+    @Mock
+    private InstrumentFilterRepository instrumentFilterRepository;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Mock
+    private StockMovementLog stockMovementLog;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockProperties stockProperties;
+
+    private ListingProperties listingProperties;
+
+    private InstrumentETags instrumentETags;
+
     private InstrumentService instrumentService;
 
+    @BeforeEach
+    void setUp() {
+        stockProperties = new StockProperties();
+        stockProperties.getRetry().setInitialBackoff(Duration.ZERO);
+        listingProperties = new ListingProperties();
+        instrumentETags = new InstrumentETags();
+        meterRegistry = new SimpleMeterRegistry();
+        InstrumentQuantityGauges instrumentQuantityGauges = new InstrumentQuantityGauges(instrumentRepository, meterRegistry);
+        instrumentQuantityGauges.register();
+        InstrumentNameCache instrumentNameCache = new InstrumentNameCache(new InstrumentCacheProperties(), meterRegistry);
+        InstrumentCatalog instrumentCatalog = new InstrumentCatalog(instrumentRepository, new CatalogProperties());
+        //cluster disabled: nothing is broadcast and every instrument is owned here
+        ClusterNode clusterNode = new ClusterNode(new ClusterProperties(), new ObjectMapper());
+        ClusterInvalidations clusterInvalidations = new ClusterInvalidations(clusterNode, instrumentETags, instrumentNameCache,
+                instrumentCatalog, instrumentQuantityGauges, instrumentRepository);
+        instrumentService = new InstrumentService(instrumentRepository,
+                new InstrumentStockUpdater(instrumentRepository, stockMovementLog),
+                stockProperties,
+                listingProperties,
+                stockLedger,
+                instrumentStockBatchRepository,
+                instrumentNameCache,
+                instrumentFilterRepository,
+                new StockAlertPublisher(applicationEventPublisher, new AlertProperties()),
+                instrumentQuantityGauges,
+                stockMovementLog,
+                instrumentETags,
+                instrumentCatalog,
+                new HotKeyDetector(stockProperties),
+                new StockCombiner(stockProperties),
+                clusterInvalidations,
+                new StockOwnership(clusterNode, clusterInvalidations, stockProperties));
+        //registering the gauges summed the stock, which isn't part of any test
+        clearInvocations(instrumentRepository);
+    }
+
     @Test
     void whenInstrumentInformedThenItShouldBeCreated() throws InstrumentAlreadyRegisteredException {
         // given
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedSavedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        Instrument instrumentToSave = instrumentMapper.toModel(expectedInstrumentDTO);
+        instrumentToSave.setId(null);
 
         // when
-        when(instrumentRepository.findByName(expectedInstrumentDTO.getName())).thenReturn(Optional.empty());
-        when(instrumentRepository.save(expectedSavedInstrument)).thenReturn(expectedSavedInstrument);
+        when(instrumentRepository.saveAndFlush(instrumentToSave)).thenReturn(expectedSavedInstrument);
 
         //then
         InstrumentDTO createdInstrumentDTO = instrumentService.createInstrument(expectedInstrumentDTO);
@@ -53,21 +161,33 @@ public class InstrumentServiceTest {
         assertThat(createdInstrumentDTO.getId(), is(equalTo(expectedInstrumentDTO.getId())));
         assertThat(createdInstrumentDTO.getName(), is(equalTo(expectedInstrumentDTO.getName())));
         assertThat(createdInstrumentDTO.getQuantity(), is(equalTo(expectedInstrumentDTO.getQuantity())));
+        verify(instrumentRepository, never()).findByName(expectedInstrumentDTO.getName());
+        verify(stockMovementLog).record(expectedSavedInstrument.getId(), expectedSavedInstrument.getQuantity(), expectedSavedInstrument.getQuantity());
     }
 
     @Test
     void whenAlreadyRegisteredInstrumentInformedThenAnExceptionShouldBeThrown() {
         // given
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
-        Instrument duplicatedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
         // when
-        when(instrumentRepository.findByName(expectedInstrumentDTO.getName())).thenReturn(Optional.of(duplicatedInstrument));
+        when(instrumentRepository.saveAndFlush(ArgumentMatchers.any(Instrument.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicated name", new SQLException("Unique index violation", "23505")));
 
         // then
         assertThrows(InstrumentAlreadyRegisteredException.class, () -> instrumentService.createInstrument(expectedInstrumentDTO));
     }
 
+    @Test
+    void whenAnotherIntegrityViolationHappensOnCreationThenItIsNotReportedAsADuplicate() {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(instrumentRepository.saveAndFlush(ArgumentMatchers.any(Instrument.class)))
+                .thenThrow(new DataIntegrityViolationException("null brand", new SQLException("NULL not allowed", "23502")));
+
+        assertThrows(DataIntegrityViolationException.class, () -> instrumentService.createInstrument(expectedInstrumentDTO));
+    }
+
     @Test
     void whenValidInstrumentNameIsGivenThenReturnAInstrument() throws InstrumentNotFoundException {
         // given
@@ -95,6 +215,46 @@ public class InstrumentServiceTest {
         assertThrows(InstrumentNotFoundException.class, () -> instrumentService.findByName(expectedFoundInstrumentDTO.getName()));
     }
 
+    @Test
+    void whenInstrumentNameIsSearchedTwiceThenTheSecondSearchIsCached() throws InstrumentNotFoundException {
+        // given
+        InstrumentDTO expectedFoundInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedFoundInstrument = instrumentMapper.toModel(expectedFoundInstrumentDTO);
+
+        // when
+        when(instrumentRepository.findByName(expectedFoundInstrument.getName())).thenReturn(Optional.of(expectedFoundInstrument));
+
+        // then
+        instrumentService.findByName(expectedFoundInstrumentDTO.getName()).setQuantity(0);
+        InstrumentDTO foundInstrumentDTO = instrumentService.findByName(expectedFoundInstrumentDTO.getName());
+
+        assertThat(foundInstrumentDTO, is(equalTo(expectedFoundInstrumentDTO)));
+        verify(instrumentRepository, times(1)).findByName(expectedFoundInstrumentDTO.getName());
+    }
+
+    @Test
+    void whenIncrementIsCalledThenTheCachedInstrumentIsEvicted() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        // given
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument cachedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        Instrument incrementedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        incrementedInstrument.setQuantity(expectedInstrumentDTO.getQuantity() + 10);
+
+        // when
+        when(instrumentRepository.findByName(expectedInstrumentDTO.getName()))
+                .thenReturn(Optional.of(cachedInstrument), Optional.of(incrementedInstrument));
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), 10)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(incrementedInstrument));
+
+        // then
+        instrumentService.findByName(expectedInstrumentDTO.getName());
+        instrumentService.increment(expectedInstrumentDTO.getId(), 10);
+        InstrumentDTO foundInstrumentDTO = instrumentService.findByName(expectedInstrumentDTO.getName());
+
+        assertThat(foundInstrumentDTO.getQuantity(), equalTo(expectedInstrumentDTO.getQuantity() + 10));
+        verify(instrumentRepository, times(2)).findByName(expectedInstrumentDTO.getName());
+    }
+
     @Test
     void whenListInstrumentIsCalledThenReturnAListOfInstruments() {
         // given
@@ -102,24 +262,83 @@ public class InstrumentServiceTest {
         Instrument expectedFoundInstrument = instrumentMapper.toModel(expectedFoundInstrumentDTO);
 
         //when
-        when(instrumentRepository.findAll()).thenReturn(Collections.singletonList(expectedFoundInstrument));
+        when(instrumentRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(Collections.singletonList(expectedFoundInstrument));
 
         //then
-        List<InstrumentDTO> foundListInstrumentsDTO = instrumentService.listAll();
+        InstrumentPageDTO foundInstrumentPageDTO = instrumentService.listAfter(null, null);
 
-        assertThat(foundListInstrumentsDTO, is(not(empty())));
-        assertThat(foundListInstrumentsDTO.get(0), is(equalTo(expectedFoundInstrumentDTO)));
+        assertThat(foundInstrumentPageDTO.getInstruments(), is(not(empty())));
+        assertThat(foundInstrumentPageDTO.getInstruments().get(0), is(equalTo(expectedFoundInstrumentDTO)));
+        assertThat(foundInstrumentPageDTO.getNextCursor(), is(nullValue()));
     }
 
     @Test
     void whenListInstrumentIsCalledThenReturnAnEmptyListOfInstruments() {
         //when
-        when(instrumentRepository.findAll()).thenReturn(Collections.EMPTY_LIST);
+        when(instrumentRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(Collections.emptyList());
 
         //then
-        List<InstrumentDTO> foundListInstrumentsDTO = instrumentService.listAll();
+        InstrumentPageDTO foundInstrumentPageDTO = instrumentService.listAfter(null, null);
 
-        assertThat(foundListInstrumentsDTO, is(empty()));
+        assertThat(foundInstrumentPageDTO.getInstruments(), is(empty()));
+    }
+
+    @Test
+    void whenListInstrumentHasMoreRowsThanThePageSizeThenReturnTheNextCursor() {
+        Instrument firstInstrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().id(11L).build().toInstrumentDTO());
+        Instrument secondInstrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().id(12L).build().toInstrumentDTO());
+
+        when(instrumentRepository.findByIdGreaterThanOrderByIdAsc(10L, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(firstInstrument, secondInstrument));
+
+        InstrumentPageDTO foundInstrumentPageDTO = instrumentService.listAfter(10L, 1);
+
+        assertThat(foundInstrumentPageDTO.getInstruments(), hasSize(1));
+        assertThat(foundInstrumentPageDTO.getNextCursor(), equalTo(11L));
+    }
+
+    @Test
+    void whenListInstrumentIsCalledWithATooBigSizeThenThePageSizeIsCapped() {
+        listingProperties.setMaxPageSize(100);
+
+        when(instrumentRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 101)))
+                .thenReturn(Collections.emptyList());
+
+        instrumentService.listAfter(null, 1_000_000);
+
+        verify(instrumentRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 101));
+    }
+
+    @Test
+    void whenSearchHasMoreRowsThanThePageSizeThenReturnTheNextCursor() {
+        Instrument firstInstrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().id(11L).build().toInstrumentDTO());
+        Instrument secondInstrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().id(12L).build().toInstrumentDTO());
+        InstrumentFilterDTO instrumentFilterDTO = InstrumentFilterDTO.builder().brand("Gibson").build();
+
+        when(instrumentFilterRepository.findByFilter(instrumentFilterDTO, 10L, 2))
+                .thenReturn(Arrays.asList(firstInstrument, secondInstrument));
+
+        InstrumentPageDTO foundInstrumentPageDTO = instrumentService.search(instrumentFilterDTO, 10L, 1);
+
+        assertThat(foundInstrumentPageDTO.getInstruments(), hasSize(1));
+        assertThat(foundInstrumentPageDTO.getInstruments().get(0).getId(), equalTo(11L));
+        assertThat(foundInstrumentPageDTO.getNextCursor(), equalTo(11L));
+    }
+
+    @Test
+    void whenListInstrumentPageIsCalledThenReturnTheNextPageNumber() {
+        Instrument expectedFoundInstrument = instrumentMapper.toModel(InstrumentDTOBuilder.builder().build().toInstrumentDTO());
+        PageRequest pageRequest = PageRequest.of(2, DEFAULT_PAGE_SIZE, Sort.by("id"));
+
+        when(instrumentRepository.findAllBy(pageRequest))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(expectedFoundInstrument), pageRequest, true));
+
+        InstrumentPageDTO foundInstrumentPageDTO = instrumentService.listPage(2, null);
+
+        assertThat(foundInstrumentPageDTO.getInstruments(), hasSize(1));
+        assertThat(foundInstrumentPageDTO.getNextPage(), equalTo(3));
     }
 
     @Test
@@ -129,44 +348,94 @@ public class InstrumentServiceTest {
         Instrument expectedDeletedInstrument = instrumentMapper.toModel(expectedDeletedInstrumentDTO);
 
         // when
-        when(instrumentRepository.findById(expectedDeletedInstrumentDTO.getId())).thenReturn(Optional.of(expectedDeletedInstrument));
-        doNothing().when(instrumentRepository).deleteById(expectedDeletedInstrumentDTO.getId());
+        when(instrumentRepository.deleteReturningById(expectedDeletedInstrumentDTO.getId())).thenReturn(Optional.of(expectedDeletedInstrument));
 
         // then
         instrumentService.deleteById(expectedDeletedInstrumentDTO.getId());
 
-        verify(instrumentRepository, times(1)).findById(expectedDeletedInstrumentDTO.getId());
-        verify(instrumentRepository, times(1)).deleteById(expectedDeletedInstrumentDTO.getId());
+        verify(instrumentRepository, times(1)).deleteReturningById(expectedDeletedInstrumentDTO.getId());
+        verify(instrumentRepository, never()).findById(expectedDeletedInstrumentDTO.getId());
+    }
+
+    @Test
+    void whenExclusionIsCalledWithInvalidIdThenThrowException() {
+        when(instrumentRepository.deleteReturningById(INVALID_BEER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(InstrumentNotFoundException.class, () -> instrumentService.deleteById(INVALID_BEER_ID));
     }
 
     @Test
-    void whenIncrementIsCalledThenIncrementInstrumentStock() throws InstrumentNotFoundException, InstrumentStockExceededException {
+    void whenIncrementIsCalledThenIncrementInstrumentStock() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
         //given
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
-        //when
-        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
-        when(instrumentRepository.save(expectedInstrument)).thenReturn(expectedInstrument);
-
         int quantityToIncrement = 10;
         int expectedQuantityAfterIncrement = expectedInstrumentDTO.getQuantity() + quantityToIncrement;
+        expectedInstrument.setQuantity(expectedQuantityAfterIncrement);
+
+        //when
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), quantityToIncrement)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
 
         // then
         InstrumentDTO incrementedInstrumentDTO = instrumentService.increment(expectedInstrumentDTO.getId(), quantityToIncrement);
 
         assertThat(expectedQuantityAfterIncrement, equalTo(incrementedInstrumentDTO.getQuantity()));
         assertThat(expectedQuantityAfterIncrement, lessThan(expectedInstrumentDTO.getMax()));
+        verify(instrumentRepository, never()).save(ArgumentMatchers.any(Instrument.class));
+        verify(stockMovementLog).record(expectedInstrumentDTO.getId(), quantityToIncrement, expectedQuantityAfterIncrement);
     }
 
     @Test
-    void whenIncrementIsGreatherThanMaxThenThrowException() {
+    void whenIncrementIsCalledThenTheETagsOfTheInstrumentAndOfTheCatalogChange() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        String instrumentETag = instrumentETags.instrument(expectedInstrumentDTO.getName());
+        String otherInstrumentETag = instrumentETags.instrument("Other instrument");
+        String catalogETag = instrumentETags.catalog();
+
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), 10)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
+        instrumentService.increment(expectedInstrumentDTO.getId(), 10);
+
+        assertThat(instrumentETags.instrument(expectedInstrumentDTO.getName()), not(equalTo(instrumentETag)));
+        assertThat(instrumentETags.catalog(), not(equalTo(catalogETag)));
+        assertThat(instrumentETags.instrument("Other instrument"), equalTo(otherInstrumentETag));
+    }
+
+    @Test
+    void whenStockAtATimeWithoutHistoryIsRequestedThenThrowException() {
+        Instant at = Instant.parse("2020-06-01T10:00:00Z");
+        when(stockMovementLog.quantityAt(INVALID_BEER_ID, at)).thenReturn(OptionalInt.empty());
+
+        assertThrows(InstrumentNotFoundException.class, () -> instrumentService.findStockAt(INVALID_BEER_ID, at));
+    }
+
+    @Test
+    void whenIncrementIsCalledThenTheQuantityGaugeOfItsTypeIsIncremented() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), 10)).thenReturn(1);
         when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
 
+        instrumentService.increment(expectedInstrumentDTO.getId(), 10);
+
+        assertThat(meterRegistry.get("instrument.stock.quantity").tag("type", "GUITAR").gauge().value(), equalTo(10.0));
+        assertThat(meterRegistry.get("instrument.stock.quantity").tag("type", "DRUM").gauge().value(), equalTo(0.0));
+    }
+
+    @Test
+    void whenIncrementIsGreatherThanMaxThenThrowException() {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+
         int quantityToIncrement = 80;
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), quantityToIncrement)).thenReturn(0);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
         assertThrows(InstrumentStockExceededException.class, () -> instrumentService.increment(expectedInstrumentDTO.getId(), quantityToIncrement));
     }
 
@@ -175,9 +444,10 @@ public class InstrumentServiceTest {
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
+        int quantityToIncrement = 45;
+        when(instrumentRepository.incrementQuantity(expectedInstrumentDTO.getId(), quantityToIncrement)).thenReturn(0);
         when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
 
-        int quantityToIncrement = 45;
         assertThrows(InstrumentStockExceededException.class, () -> instrumentService.increment(expectedInstrumentDTO.getId(), quantityToIncrement));
     }
 
@@ -185,21 +455,24 @@ public class InstrumentServiceTest {
     void whenIncrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToIncrement = 10;
 
+        when(instrumentRepository.incrementQuantity(INVALID_BEER_ID, quantityToIncrement)).thenReturn(0);
         when(instrumentRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
 
         assertThrows(InstrumentNotFoundException.class, () -> instrumentService.increment(INVALID_BEER_ID, quantityToIncrement));
     }
 
     @Test
-    void whenDecrementIsCalledThenDecrementInstrumentStock() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+    void whenDecrementIsCalledThenDecrementInstrumentStock() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
-        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
-        when(instrumentRepository.save(expectedInstrument)).thenReturn(expectedInstrument);
-
         int quantityToDecrement = 3;
         int expectedQuantityAfterDecrement = expectedInstrumentDTO.getQuantity() - quantityToDecrement;
+        expectedInstrument.setQuantity(expectedQuantityAfterDecrement);
+
+        when(instrumentRepository.decrementQuantity(expectedInstrumentDTO.getId(), quantityToDecrement)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
         InstrumentDTO incrementedInstrumentDTO = instrumentService.decrement(expectedInstrumentDTO.getId(), quantityToDecrement);
 
         assertThat(expectedQuantityAfterDecrement, equalTo(incrementedInstrumentDTO.getQuantity()));
@@ -207,15 +480,51 @@ public class InstrumentServiceTest {
     }
 
     @Test
-    void whenDecrementIsCalledToEmptyStockThenEmptyInstrumentStock() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException {
+    void whenDecrementCrossesTheLowStockThresholdThenAnAlertIsPublished() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        //given (min 1 and the default margin of 5, so the threshold is 6)
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        expectedInstrument.setQuantity(5);
+
+        //when
+        when(instrumentRepository.decrementQuantity(expectedInstrumentDTO.getId(), 12)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
+        //then
+        instrumentService.decrement(expectedInstrumentDTO.getId(), 12);
+
+        ArgumentCaptor<StockAlertDTO> stockAlertCaptor = ArgumentCaptor.forClass(StockAlertDTO.class);
+        verify(applicationEventPublisher, times(1)).publishEvent(stockAlertCaptor.capture());
+        assertThat(stockAlertCaptor.getValue().getType(), equalTo(StockAlertType.LOW_STOCK));
+        assertThat(stockAlertCaptor.getValue().getPreviousQuantity(), equalTo(17));
+        assertThat(stockAlertCaptor.getValue().getQuantity(), equalTo(5));
+    }
+
+    @Test
+    void whenDecrementStaysBelowTheLowStockThresholdThenNoAlertIsPublished() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().quantity(4).build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
+        when(instrumentRepository.decrementQuantity(expectedInstrumentDTO.getId(), 1)).thenReturn(1);
         when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
-        when(instrumentRepository.save(expectedInstrument)).thenReturn(expectedInstrument);
+
+        instrumentService.decrement(expectedInstrumentDTO.getId(), 1);
+
+        verify(applicationEventPublisher, never()).publishEvent(ArgumentMatchers.any(Object.class));
+    }
+
+    @Test
+    void whenDecrementIsCalledToEmptyStockThenEmptyInstrumentStock() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
         int quantityToDecrement = 16;
         int expectedQuantityAfterDecrement = expectedInstrumentDTO.getQuantity() - quantityToDecrement;
+        expectedInstrument.setQuantity(expectedQuantityAfterDecrement);
+
+        when(instrumentRepository.decrementQuantity(expectedInstrumentDTO.getId(), quantityToDecrement)).thenReturn(1);
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
         InstrumentDTO decrementedInstrumentDTO = instrumentService.decrement(expectedInstrumentDTO.getId(), quantityToDecrement);
 
         assertThat(expectedQuantityAfterDecrement, equalTo(decrementedInstrumentDTO.getMin()));
@@ -227,9 +536,10 @@ public class InstrumentServiceTest {
         InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
         Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
 
+        int quantityToDecrement = 19;
+        when(instrumentRepository.decrementQuantity(expectedInstrumentDTO.getId(), quantityToDecrement)).thenReturn(0);
         when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
 
-        int quantityToDecrement = 19;
         assertThrows(InstrumentNegativeStockExceededException.class, () -> instrumentService.decrement(expectedInstrumentDTO.getId(), quantityToDecrement));
     }
 
@@ -237,8 +547,140 @@ public class InstrumentServiceTest {
     void whenDecrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToDecrement = 55;
 
+        when(instrumentRepository.decrementQuantity(INVALID_BEER_ID, quantityToDecrement)).thenReturn(0);
         when(instrumentRepository.findById(INVALID_BEER_ID)).thenReturn(Optional.empty());
 
         assertThrows(InstrumentNotFoundException.class, () -> instrumentService.decrement(INVALID_BEER_ID, quantityToDecrement));
     }
+
+    @Test
+    void whenIncrementConflictsInOptimisticModeThenItIsRetried() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        stockProperties.setLockingMode(StockLockingMode.OPTIMISTIC);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+
+        long version = expectedInstrument.getVersion();
+
+        //the version moved between the read and the write of the first attempt
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+        when(instrumentRepository.addQuantityIfVersion(expectedInstrumentDTO.getId(), 1, version)).thenReturn(0, 1);
+
+        InstrumentDTO incrementedInstrumentDTO = instrumentService.increment(expectedInstrumentDTO.getId(), 1);
+
+        assertThat(incrementedInstrumentDTO.getQuantity(), equalTo(expectedInstrumentDTO.getQuantity() + 1));
+        verify(instrumentRepository, times(2)).addQuantityIfVersion(expectedInstrumentDTO.getId(), 1, version);
+        verify(instrumentRepository, never()).saveAndFlush(expectedInstrument);
+    }
+
+    @Test
+    void whenTheRollbackOfALockTimeoutFailsThenTheUpdateIsRetried() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        stockProperties.setLockingMode(StockLockingMode.PESSIMISTIC);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        TransactionSystemException rollbackFailure = new TransactionSystemException("Could not roll back JPA transaction");
+        rollbackFailure.initApplicationException(new PessimisticLockingFailureException("Timeout trying to lock table"));
+
+        when(instrumentRepository.findByIdForUpdate(expectedInstrumentDTO.getId()))
+                .thenThrow(rollbackFailure)
+                .thenReturn(Optional.of(expectedInstrument));
+        when(instrumentRepository.saveAndFlush(expectedInstrument)).thenReturn(expectedInstrument);
+
+        instrumentService.decrement(expectedInstrumentDTO.getId(), 3);
+
+        verify(instrumentRepository, times(2)).findByIdForUpdate(expectedInstrumentDTO.getId());
+    }
+
+    @Test
+    void whenALockTimeoutHidesACorruptedIndexThenTheUpdateIsNotRetried() {
+        stockProperties.setLockingMode(StockLockingMode.PESSIMISTIC);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        SQLException rowNotFound = new SQLException("Row not found when trying to delete from index", "HY000", 90112);
+        SQLException lockTimeout = new SQLException("Timeout trying to lock table", "HYT00", 50200, rowNotFound);
+        PessimisticLockingFailureException lockFailure = new PessimisticLockingFailureException("Timeout trying to lock table", lockTimeout);
+
+        when(instrumentRepository.findByIdForUpdate(expectedInstrumentDTO.getId())).thenThrow(lockFailure);
+
+        assertThrows(PessimisticLockingFailureException.class, () -> instrumentService.decrement(expectedInstrumentDTO.getId(), 3));
+        verify(instrumentRepository, times(1)).findByIdForUpdate(expectedInstrumentDTO.getId());
+    }
+
+    @Test
+    void whenIncrementKeepsConflictingInOptimisticModeThenThrowException() {
+        stockProperties.setLockingMode(StockLockingMode.OPTIMISTIC);
+        stockProperties.getRetry().setMaxAttempts(3);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+        when(instrumentRepository.addQuantityIfVersion(expectedInstrumentDTO.getId(), 1, expectedInstrument.getVersion())).thenReturn(0);
+
+        assertThrows(InstrumentConcurrentUpdateException.class, () -> instrumentService.increment(expectedInstrumentDTO.getId(), 1));
+        verify(instrumentRepository, times(3)).addQuantityIfVersion(expectedInstrumentDTO.getId(), 1, expectedInstrument.getVersion());
+    }
+
+    @Test
+    void whenDecrementIsCalledInPessimisticModeThenTheRowIsLocked() throws InstrumentNotFoundException, InstrumentNegativeStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        stockProperties.setLockingMode(StockLockingMode.PESSIMISTIC);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+
+        when(instrumentRepository.findByIdForUpdate(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+        when(instrumentRepository.saveAndFlush(expectedInstrument)).thenReturn(expectedInstrument);
+
+        InstrumentDTO decrementedInstrumentDTO = instrumentService.decrement(expectedInstrumentDTO.getId(), 3);
+
+        assertThat(decrementedInstrumentDTO.getQuantity(), equalTo(expectedInstrumentDTO.getQuantity() - 3));
+        verify(instrumentRepository, never()).findById(expectedInstrumentDTO.getId());
+    }
+
+    @Test
+    void whenIncrementIsCalledInLedgerModeThenTheDatabaseIsNotTouched() throws InstrumentNotFoundException, InstrumentStockExceededException, InstrumentConcurrentUpdateException, InstrumentOwnerUnavailableException {
+        stockProperties.setLockingMode(StockLockingMode.LEDGER);
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+
+        when(stockLedger.increment(expectedInstrumentDTO.getId(), 10)).thenReturn(expectedInstrumentDTO);
+
+        InstrumentDTO incrementedInstrumentDTO = instrumentService.increment(expectedInstrumentDTO.getId(), 10);
+
+        assertThat(incrementedInstrumentDTO, is(equalTo(expectedInstrumentDTO)));
+        verifyNoInteractions(instrumentRepository);
+    }
+
+    @Test
+    void whenBestEffortBatchIsCalledThenEachAdjustmentIsReported() throws Exception {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        List<StockAdjustmentDTO> adjustments = Arrays.asList(
+                new StockAdjustmentDTO(expectedInstrumentDTO.getId(), 10),
+                new StockAdjustmentDTO(expectedInstrumentDTO.getId(), -50),
+                new StockAdjustmentDTO(INVALID_BEER_ID + 1, 5));
+        StockBatchDTO stockBatchDTO = new StockBatchDTO(StockBatchMode.BEST_EFFORT, adjustments);
+
+        when(instrumentStockBatchRepository.adjustQuantities(adjustments)).thenReturn(new int[]{1, 0, 0});
+        when(instrumentRepository.findAllById(ArgumentMatchers.anyCollection())).thenReturn(Collections.singletonList(expectedInstrument));
+
+        StockBatchResultDTO stockBatchResultDTO = instrumentService.adjustStock(stockBatchDTO);
+
+        assertThat(stockBatchResultDTO.getApplied(), equalTo(1));
+        assertThat(stockBatchResultDTO.getRejected(), equalTo(2));
+        assertThat(stockBatchResultDTO.getResults().get(0).getStatus(), equalTo(StockAdjustmentStatus.APPLIED));
+        assertThat(stockBatchResultDTO.getResults().get(1).getStatus(), equalTo(StockAdjustmentStatus.MIN_EXCEEDED));
+        assertThat(stockBatchResultDTO.getResults().get(2).getStatus(), equalTo(StockAdjustmentStatus.NOT_FOUND));
+        assertThat(stockBatchResultDTO.getResults().get(0).getQuantity(), equalTo(expectedInstrument.getQuantity()));
+    }
+
+    @Test
+    void whenAtomicBatchHasARejectedAdjustmentThenThrowException() {
+        InstrumentDTO expectedInstrumentDTO = InstrumentDTOBuilder.builder().build().toInstrumentDTO();
+        Instrument expectedInstrument = instrumentMapper.toModel(expectedInstrumentDTO);
+        List<StockAdjustmentDTO> adjustments = Arrays.asList(
+                new StockAdjustmentDTO(expectedInstrumentDTO.getId(), -5),
+                new StockAdjustmentDTO(expectedInstrumentDTO.getId(), 100));
+        StockBatchDTO stockBatchDTO = new StockBatchDTO(StockBatchMode.ATOMIC, adjustments);
+
+        when(instrumentStockBatchRepository.adjustQuantities(adjustments)).thenReturn(new int[]{1, 0});
+        when(instrumentRepository.findById(expectedInstrumentDTO.getId())).thenReturn(Optional.of(expectedInstrument));
+
+        assertThrows(InstrumentStockExceededException.class, () -> instrumentService.adjustStock(stockBatchDTO));
+    }
 }
@@ -0,0 +1,12 @@
+package com.joao.musicalMarket.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+//same holds, checked against the in-memory ledger
+@SpringBootTest(properties = {
+        "instrument.stock.locking-mode=ledger",
+        "instrument.stock.ledger.journal-directory=target/ledger-test-${random.uuid}",
+        "instrument.reservations.expiry-interval-millis=3600000"
+})
+public class StockReservationServiceLedgerTest extends StockReservationServiceTest {
+}
@@ -0,0 +1,101 @@
+package com.joao.musicalMarket.service;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.config.ReservationProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.ReservationDTO;
+import com.joao.musicalMarket.dto.ReservationRequestDTO;
+import com.joao.musicalMarket.exception.InstrumentNegativeStockExceededException;
+import com.joao.musicalMarket.exception.StockReservationNotFoundException;
+import com.joao.musicalMarket.repository.InstrumentRepository;
+import com.joao.musicalMarket.repository.StockHoldRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//runs the holds against H2: a hold keeps the quantity but its units can't be decremented below min,
+//and confirming, releasing or expiring it ends it exactly once. the scheduled sweep is pushed out of the way,
+//the tests call it themselves
+@SpringBootTest(properties = "instrument.reservations.expiry-interval-millis=3600000")
+public class StockReservationServiceTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private InstrumentService instrumentService;
+
+    @Autowired
+    private ReservationProperties reservationProperties;
+
+    @Autowired
+    private InstrumentRepository instrumentRepository;
+
+    @Autowired
+    private StockHoldRepository stockHoldRepository;
+
+    @AfterEach
+    void tearDown() {
+        reservationProperties.setMaxTtl(Duration.ofHours(2));
+        stockHoldRepository.deleteAllInBatch();
+        instrumentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void whenUnitsAreHeldThenTheyCountAgainstMinWithoutChangingTheQuantity() throws Exception {
+        InstrumentDTO instrumentDTO = createInstrument(10, 2);
+
+        stockReservationService.reserve(instrumentDTO.getId(), new ReservationRequestDTO(6, null));
+
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(10));
+        assertThrows(InstrumentNegativeStockExceededException.class, () -> instrumentService.decrement(instrumentDTO.getId(), 3));
+        assertThrows(InstrumentNegativeStockExceededException.class,
+                () -> stockReservationService.reserve(instrumentDTO.getId(), new ReservationRequestDTO(3, null)));
+        assertThat(instrumentService.decrement(instrumentDTO.getId(), 2).getQuantity(), equalTo(8));
+    }
+
+    @Test
+    void whenAHoldIsConfirmedThenItsUnitsLeaveTheStockOnlyOnce() throws Exception {
+        InstrumentDTO instrumentDTO = createInstrument(10, 2);
+        ReservationDTO reservationDTO = stockReservationService.reserve(instrumentDTO.getId(), new ReservationRequestDTO(6, null));
+
+        assertThat(stockReservationService.confirm(reservationDTO.getId()).getQuantity(), equalTo(4));
+        assertThrows(StockReservationNotFoundException.class, () -> stockReservationService.confirm(reservationDTO.getId()));
+        assertThrows(StockReservationNotFoundException.class, () -> stockReservationService.release(reservationDTO.getId()));
+        assertThat(instrumentService.findByName(instrumentDTO.getName()).getQuantity(), equalTo(4));
+        assertThat(instrumentService.decrement(instrumentDTO.getId(), 2).getQuantity(), equalTo(2));
+    }
+
+    @Test
+    void whenHoldsAreReleasedOrExpireThenTheirUnitsCanBeDecrementedAgain() throws Exception {
+        InstrumentDTO instrumentDTO = createInstrument(20, 0);
+        ReservationDTO releasedReservationDTO = stockReservationService.reserve(instrumentDTO.getId(), new ReservationRequestDTO(5, null));
+        //a max TTL of zero makes the next holds due at once
+        reservationProperties.setMaxTtl(Duration.ZERO);
+        for (int hold = 0; hold < 3; hold++) {
+            stockReservationService.reserve(instrumentDTO.getId(), new ReservationRequestDTO(5, null));
+        }
+
+        stockReservationService.release(releasedReservationDTO.getId());
+        stockReservationService.expireHolds();
+
+        assertThat(stockHoldRepository.count(), equalTo(0L));
+        assertThat(instrumentService.decrement(instrumentDTO.getId(), 20).getQuantity(), equalTo(0));
+    }
+
+    private InstrumentDTO createInstrument(int quantity, int min) throws Exception {
+        return instrumentService.createInstrument(InstrumentDTOBuilder.builder()
+                .id(null)
+                .min(min)
+                .quantity(quantity)
+                .build()
+                .toInstrumentDTO());
+    }
+}
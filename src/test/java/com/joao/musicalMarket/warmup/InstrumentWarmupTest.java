@@ -0,0 +1,88 @@
+package com.joao.musicalMarket.warmup;
+
+import com.joao.musicalMarket.builder.InstrumentDTOBuilder;
+import com.joao.musicalMarket.catalog.CatalogSnapshot;
+import com.joao.musicalMarket.catalog.InstrumentCatalog;
+import com.joao.musicalMarket.config.WarmupProperties;
+import com.joao.musicalMarket.dto.InstrumentDTO;
+import com.joao.musicalMarket.dto.InstrumentPageDTO;
+import com.joao.musicalMarket.exception.InstrumentNotFoundException;
+import com.joao.musicalMarket.service.InstrumentService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class InstrumentWarmupTest {
+
+    @Mock
+    private InstrumentService instrumentService;
+
+    @Mock
+    private InstrumentCatalog instrumentCatalog;
+
+    @Test
+    void whenTheWarmupRunsThenTheFirstInstrumentsAreCachedAndOnlyReadPathsAreCalled() throws Exception {
+        // given
+        WarmupProperties warmupProperties = new WarmupProperties();
+        warmupProperties.setPreloadSize(3);
+        warmupProperties.setIterations(4);
+        InstrumentDTO lesPaul = InstrumentDTOBuilder.builder().id(1L).name("Les Paul").build().toInstrumentDTO();
+        InstrumentDTO stratocaster = InstrumentDTOBuilder.builder().id(2L).name("Stratocaster").build().toInstrumentDTO();
+        InstrumentDTO stageCustom = InstrumentDTOBuilder.builder().id(3L).name("Stage Custom").build().toInstrumentDTO();
+
+        // when
+        when(instrumentService.listAfter(null, 3)).thenReturn(new InstrumentPageDTO(Arrays.asList(lesPaul, stratocaster), 2L, null));
+        when(instrumentService.listAfter(2L, 1)).thenReturn(new InstrumentPageDTO(Collections.singletonList(stageCustom), null, null));
+        when(instrumentService.listAfter(null, null)).thenReturn(new InstrumentPageDTO(Collections.emptyList(), null, null));
+        when(instrumentService.findByName("Les Paul")).thenReturn(lesPaul);
+        when(instrumentService.findByName("Stratocaster")).thenReturn(stratocaster);
+        when(instrumentService.findByName("Stage Custom")).thenThrow(new InstrumentNotFoundException("Stage Custom"));
+        new InstrumentWarmup(instrumentService, warmupProperties, instrumentCatalog).run(null);
+
+        // then
+        //preloaded once, then found again by iterations 0 and 2
+        verify(instrumentService, times(3)).findByName("Les Paul");
+        verify(instrumentService, times(3)).findByName("Stratocaster");
+        verify(instrumentService, times(1)).findByName("Stage Custom");
+        verify(instrumentService, times(4)).search(ArgumentMatchers.any(), ArgumentMatchers.isNull(), ArgumentMatchers.isNull());
+        verify(instrumentService, never()).increment(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+        verify(instrumentService, never()).decrement(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    void whenTheCatalogServesTheReadsThenTheWarmupOnlyCallsTheReadPaths() throws Exception {
+        // given
+        WarmupProperties warmupProperties = new WarmupProperties();
+        warmupProperties.setPreloadSize(2);
+        warmupProperties.setIterations(4);
+        InstrumentDTO lesPaul = InstrumentDTOBuilder.builder().id(1L).name("Les Paul").build().toInstrumentDTO();
+        InstrumentDTO stratocaster = InstrumentDTOBuilder.builder().id(2L).name("Stratocaster").build().toInstrumentDTO();
+
+        // when
+        when(instrumentCatalog.snapshot()).thenReturn(CatalogSnapshot.of(Collections.emptyList()));
+        when(instrumentService.listAfter(null, 2)).thenReturn(new InstrumentPageDTO(Arrays.asList(lesPaul, stratocaster), 2L, null));
+        when(instrumentService.listAfter(null, null)).thenReturn(new InstrumentPageDTO(Collections.emptyList(), null, null));
+        when(instrumentService.findByName("Les Paul")).thenReturn(lesPaul);
+        when(instrumentService.findByName("Stratocaster")).thenReturn(stratocaster);
+        new InstrumentWarmup(instrumentService, warmupProperties, instrumentCatalog).run(null);
+
+        // then
+        //no cache to fill, only found by the iterations
+        verify(instrumentService, times(2)).findByName("Les Paul");
+        verify(instrumentService, times(2)).findByName("Stratocaster");
+        verify(instrumentService, times(4)).search(ArgumentMatchers.any(), ArgumentMatchers.isNull(), ArgumentMatchers.isNull());
+        verify(instrumentService, never()).increment(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+        verify(instrumentService, never()).decrement(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+    }
+}